@@ -25,7 +25,7 @@ function UCSBDateForm({ initialUCSBDate, submitAction, buttonLabel="Create" }) {
     const isodate_regex = /(\d{4}-[01]\d-[0-3]\dT[0-2]\d:[0-5]\d:[0-5]\d\.\d+)|(\d{4}-[01]\d-[0-3]\dT[0-2]\d:[0-5]\d:[0-5]\d)|(\d{4}-[01]\d-[0-3]\dT[0-2]\d:[0-5]\d)/i;
 
     // Stryker disable next-line all
-    const yyyyq_regex = /((19)|(20))\d{2}[1-4]/i; // Accepts from 1900-2099 followed by 1-4.  Close enough.
+    const yyyyq_regex = /^((19)|(20))\d{2}[1-4]$/i; // Accepts from 1900-2099 followed by 1-4 and nothing else, as the backend does
 
     return (
 
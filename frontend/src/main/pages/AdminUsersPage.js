@@ -1,22 +1,80 @@
-import React from "react";
+import React, { useEffect, useState } from "react";
+import { Button, Form } from "react-bootstrap";
 import BasicLayout from "main/layouts/BasicLayout/BasicLayout";
 import UsersTable from "main/components/Users/UsersTable"
 
 import { useBackend } from "main/utils/useBackend";
+
+export const PAGE_SIZE = 50;
+// how long typing has to pause before the search box sends a request
+export const SEARCH_DELAY_MS = 300;
+
 const AdminUsersPage = () => {
 
+    const [input, setInput] = useState("");
+    const [query, setQuery] = useState("");
+    const [page, setPage] = useState(0);
+
+    useEffect(() => {
+        if (input === query) {
+            return;
+        }
+        const timer = setTimeout(() => {
+            setQuery(input);
+            setPage(0);
+        }, SEARCH_DELAY_MS);
+        return () => clearTimeout(timer);
+    }, [input, query]);
+
+    // searching and paging happen on the server; see UsersController.searchUsers
     const { data: users, error: _error, status: _status } =
         useBackend(
             // Stryker disable next-line all : don't test internal caching of React Query
-            ["/api/admin/users"],
-            { method: "GET", url: "/api/admin/users" },
-            []
+            ["/api/admin/users/search", query, page],
+            { method: "GET", url: "/api/admin/users/search", params: { q: query, page, size: PAGE_SIZE } },
+            { content: [], number: 0, totalPages: 0, totalElements: 0 }
         );
 
+    const onSearch = (event) => {
+        setInput(event.target.value);
+    };
+
     return (
         <BasicLayout>
             <h2>Users</h2>
-            <UsersTable users={users} />
+            <Form.Group className="mb-3">
+                <Form.Control
+                    data-testid="AdminUsersPage-search"
+                    type="search"
+                    placeholder="Search by email or name"
+                    value={input}
+                    onChange={onSearch}
+                />
+            </Form.Group>
+            <UsersTable users={users.content} />
+            <div>
+                <Button
+                    data-testid="AdminUsersPage-previous"
+                    variant="secondary"
+                    disabled={page === 0}
+                    onClick={() => setPage(page - 1)}
+                >
+                    Previous
+                </Button>
+                {" "}
+                <span data-testid="AdminUsersPage-page">
+                    Page {users.number + 1} of {Math.max(users.totalPages, 1)} ({users.totalElements} users)
+                </span>
+                {" "}
+                <Button
+                    data-testid="AdminUsersPage-next"
+                    variant="secondary"
+                    disabled={page + 1 >= users.totalPages}
+                    onClick={() => setPage(page + 1)}
+                >
+                    Next
+                </Button>
+            </div>
         </BasicLayout>
     );
 };
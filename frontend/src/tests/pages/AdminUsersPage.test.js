@@ -1,7 +1,7 @@
-import { render, waitFor } from "@testing-library/react";
+import { fireEvent, render, waitFor } from "@testing-library/react";
 import { QueryClient, QueryClientProvider } from "react-query";
 import { MemoryRouter } from "react-router-dom";
-import AdminUsersPage from "main/pages/AdminUsersPage";
+import AdminUsersPage, { PAGE_SIZE } from "main/pages/AdminUsersPage";
 import usersFixtures from "fixtures/usersFixtures";
 import { apiCurrentUserFixtures } from "fixtures/currentUserFixtures";
 import { systemInfoFixtures } from "fixtures/systemInfoFixtures";
@@ -16,6 +16,16 @@ describe("AdminUsersPage tests", () => {
 
     const testId = "UsersTable";
 
+    const pageOf = (users, number, totalPages, totalElements) => ({ content: users, number, totalPages, totalElements });
+
+    const renderPage = () => render(
+        <QueryClientProvider client={new QueryClient()}>
+            <MemoryRouter>
+                <AdminUsersPage />
+            </MemoryRouter>
+        </QueryClientProvider>
+    );
+
     beforeEach( () => {
         axiosMock.reset();
         axiosMock.resetHistory();
@@ -24,49 +34,96 @@ describe("AdminUsersPage tests", () => {
     });
 
     test("renders without crashing on three users", async () => {
-        const queryClient = new QueryClient();
-        axiosMock.onGet("/api/admin/users").reply(200, usersFixtures.threeUsers);
+        axiosMock.onGet("/api/admin/users/search").reply(200, pageOf(usersFixtures.threeUsers, 0, 1, 3));
 
-        const { getByText } = render(
-            <QueryClientProvider client={queryClient}>
-                <MemoryRouter>
-                    <AdminUsersPage />
-                </MemoryRouter>
-            </QueryClientProvider>
-        );
+        const { getByText, getByTestId } = renderPage();
 
         await waitFor(() => expect(getByText("Users")).toBeInTheDocument());
+        await waitFor(() => expect(getByTestId(`${testId}-cell-row-0-col-id`)).toHaveTextContent("1"));
+
+        expect(getByTestId(`${testId}-cell-row-2-col-id`)).toHaveTextContent("3");
+        expect(getByTestId("AdminUsersPage-page")).toHaveTextContent("Page 1 of 1 (3 users)");
+        expect(getByTestId("AdminUsersPage-previous")).toBeDisabled();
+        expect(getByTestId("AdminUsersPage-next")).toBeDisabled();
+        expect(axiosMock.history.get.find((r) => r.url === "/api/admin/users/search").params)
+            .toEqual({ q: "", page: 0, size: PAGE_SIZE });
+    });
 
-        await waitFor(() => expect(getByText("Users")).toBeInTheDocument());
+    test("searching asks the server and starts from the first page", async () => {
+        axiosMock.onGet("/api/admin/users/search", { params: { q: "", page: 0, size: PAGE_SIZE } })
+            .reply(200, pageOf(usersFixtures.threeUsers, 0, 2, 53));
+        axiosMock.onGet("/api/admin/users/search", { params: { q: "", page: 1, size: PAGE_SIZE } })
+            .reply(200, pageOf(usersFixtures.threeUsers.slice(2), 1, 2, 53));
+        axiosMock.onGet("/api/admin/users/search", { params: { q: "zz", page: 0, size: PAGE_SIZE } })
+            .reply(200, pageOf(usersFixtures.threeUsers.slice(2), 0, 1, 1));
+
+        const { getByTestId, queryByTestId } = renderPage();
+
+        await waitFor(() => expect(getByTestId("AdminUsersPage-page")).toHaveTextContent("Page 1 of 2 (53 users)"));
+        expect(getByTestId("AdminUsersPage-next")).toBeEnabled();
 
+        fireEvent.click(getByTestId("AdminUsersPage-next"));
+        await waitFor(() => expect(getByTestId("AdminUsersPage-page")).toHaveTextContent("Page 2 of 2 (53 users)"));
+        expect(getByTestId("AdminUsersPage-next")).toBeDisabled();
+        expect(getByTestId("AdminUsersPage-previous")).toBeEnabled();
 
+        fireEvent.change(getByTestId("AdminUsersPage-search"), { target: { value: "zz" } });
+        await waitFor(() => expect(getByTestId("AdminUsersPage-page")).toHaveTextContent("Page 1 of 1 (1 users)"));
+        expect(getByTestId(`${testId}-cell-row-0-col-id`)).toHaveTextContent("3");
+        expect(queryByTestId(`${testId}-cell-row-1-col-id`)).not.toBeInTheDocument();
+    });
+
+    test("typing only searches once the input pauses", async () => {
+        axiosMock.onGet("/api/admin/users/search", { params: { q: "", page: 0, size: PAGE_SIZE } })
+            .reply(200, pageOf(usersFixtures.threeUsers, 0, 1, 3));
+        axiosMock.onGet("/api/admin/users/search", { params: { q: "zz", page: 0, size: PAGE_SIZE } })
+            .reply(200, pageOf(usersFixtures.threeUsers.slice(2), 0, 1, 1));
+
+        const { getByTestId } = renderPage();
+
+        await waitFor(() => expect(getByTestId("AdminUsersPage-page")).toHaveTextContent("Page 1 of 1 (3 users)"));
+
+        fireEvent.change(getByTestId("AdminUsersPage-search"), { target: { value: "z" } });
+        fireEvent.change(getByTestId("AdminUsersPage-search"), { target: { value: "zz" } });
+        expect(getByTestId("AdminUsersPage-search")).toHaveValue("zz");
+
+        await waitFor(() => expect(getByTestId("AdminUsersPage-page")).toHaveTextContent("Page 1 of 1 (1 users)"));
+        const searches = axiosMock.history.get.filter((r) => r.url === "/api/admin/users/search").map((r) => r.params.q);
+        expect(searches).toEqual(["", "zz"]);
+    });
+
+    test("previous goes back a page", async () => {
+        axiosMock.onGet("/api/admin/users/search", { params: { q: "", page: 0, size: PAGE_SIZE } })
+            .reply(200, pageOf(usersFixtures.threeUsers.slice(0, 1), 0, 2, 2));
+        axiosMock.onGet("/api/admin/users/search", { params: { q: "", page: 1, size: PAGE_SIZE } })
+            .reply(200, pageOf(usersFixtures.threeUsers.slice(1, 2), 1, 2, 2));
+
+        const { getByTestId } = renderPage();
+
+        await waitFor(() => expect(getByTestId("AdminUsersPage-next")).toBeEnabled());
+        fireEvent.click(getByTestId("AdminUsersPage-next"));
+        await waitFor(() => expect(getByTestId(`${testId}-cell-row-0-col-id`)).toHaveTextContent("2"));
+
+        fireEvent.click(getByTestId("AdminUsersPage-previous"));
+        await waitFor(() => expect(getByTestId(`${testId}-cell-row-0-col-id`)).toHaveTextContent("1"));
+        expect(getByTestId("AdminUsersPage-previous")).toBeDisabled();
     });
 
     test("renders empty table when backend unavailable", async () => {
-        const queryClient = new QueryClient();
-        axiosMock.onGet("/api/admin/users").timeout();
+        axiosMock.onGet("/api/admin/users/search").timeout();
 
         const restoreConsole = mockConsole();
 
-        const { queryByTestId } = render(
-            <QueryClientProvider client={queryClient}>
-                <MemoryRouter>
-                    <AdminUsersPage />
-                </MemoryRouter>
-            </QueryClientProvider>
-        );
+        const { queryByTestId, getByTestId } = renderPage();
 
         await waitFor(() => { expect(axiosMock.history.get.length).toBeGreaterThanOrEqual(1); });
 
         const errorMessage = console.error.mock.calls[0][0];
-        expect(errorMessage).toMatch("Error communicating with backend via GET on /api/admin/users");
+        expect(errorMessage).toMatch("Error communicating with backend via GET on /api/admin/users/search");
         restoreConsole();
 
         expect(queryByTestId(`${testId}-cell-row-0-col-id`)).not.toBeInTheDocument();
-
+        expect(getByTestId("AdminUsersPage-page")).toHaveTextContent("Page 1 of 1 (0 users)");
     });
 
-
 });
-
-
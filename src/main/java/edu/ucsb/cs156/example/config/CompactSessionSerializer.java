@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.config;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+// Turns session attributes into the bytes stored in spring_session_attributes.
+//
+// Values are Java-serialized as Spring Session does by default; anything of
+// at least minCompressBytes (in practice the security context, with its
+// OAuth2 user attributes) is deflated too, when that makes it smaller.
+// Plain serialized bytes always start with the stream magic 0xACED, which a
+// zlib stream never does, so rows written either way (or before this class
+// existed) read back correctly.
+
+final class CompactSessionSerializer {
+
+  private static final byte MAGIC_0 = (byte) 0xAC;
+  private static final byte MAGIC_1 = (byte) 0xED;
+
+  private final SerializingConverter serializer = new SerializingConverter();
+  private final DeserializingConverter deserializer;
+  private final int minCompressBytes;
+
+  CompactSessionSerializer(ClassLoader classLoader, int minCompressBytes) {
+    this.deserializer = new DeserializingConverter(classLoader);
+    this.minCompressBytes = minCompressBytes;
+  }
+
+  byte[] serialize(Object value) {
+    byte[] plain = serializer.convert(value);
+    if (plain.length < minCompressBytes) {
+      return plain;
+    }
+    byte[] deflated = deflate(plain);
+    return deflated.length < plain.length ? deflated : plain;
+  }
+
+  Object deserialize(byte[] bytes) {
+    if (bytes.length >= 2 && bytes[0] == MAGIC_0 && bytes[1] == MAGIC_1) {
+      return deserializer.convert(bytes);
+    }
+    return deserializer.convert(inflate(bytes));
+  }
+
+  private static byte[] deflate(byte[] input) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+      byte[] buffer = new byte[1024];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(byte[] input) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(input);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+      byte[] buffer = new byte[1024];
+      while (!inflater.finished()) {
+        int n = inflater.inflate(buffer);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IllegalArgumentException("truncated or corrupt session attribute");
+        }
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException e) {
+      throw new IllegalArgumentException("corrupt session attribute", e);
+    } finally {
+      inflater.end();
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import edu.ucsb.cs156.example.services.IdempotencyStore;
+import edu.ucsb.cs156.example.services.InMemoryIdempotencyStore;
+import edu.ucsb.cs156.example.services.JdbcIdempotencyStore;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Installs IdempotencyFilter on /api/*, just inside Spring Security so
+ * keys can be scoped to the logged-in user.
+ *
+ * app.idempotency.store=memory (the default) keeps keys in this process, at
+ * most app.idempotency.maxEntries of them; jdbc keeps them in the
+ * idempotencykey table, so retries that reach another instance are caught.
+ * Keyed requests may carry at most app.idempotency.maxBodyKilobytes of body.
+ */
+
+@Slf4j
+@Configuration
+public class IdempotencyConfig {
+
+  @Value("${app.idempotency.store:memory}")
+  private String store = "memory";
+
+  @Value("${app.idempotency.ttlMinutes:60}")
+  private int ttlMinutes = 60;
+
+  @Value("${app.idempotency.maxEntries:10000}")
+  private int maxEntries = 10000;
+
+  @Value("${app.idempotency.maxBodyKilobytes:1024}")
+  private int maxBodyKilobytes = 1024;
+
+  @Bean
+  public IdempotencyStore idempotencyStore(DataSource dataSource) {
+    log.info("keeping idempotency keys in {} store", store);
+    Duration ttl = Duration.ofMinutes(ttlMinutes);
+    switch (store) {
+      case "memory":
+        return new InMemoryIdempotencyStore(ttl, maxEntries);
+      case "jdbc":
+        return new JdbcIdempotencyStore(new NamedParameterJdbcTemplate(dataSource), ttl);
+      default:
+        throw new IllegalStateException("app.idempotency.store must be memory or jdbc, not " + store);
+    }
+  }
+
+  @Bean
+  public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(IdempotencyStore idempotencyStore,
+      ObjectMapper mapper) {
+    FilterRegistrationBean<IdempotencyFilter> registration =
+        new FilterRegistrationBean<>(new IdempotencyFilter(idempotencyStore, mapper, maxBodyKilobytes * 1024));
+    registration.addUrlPatterns("/api/*");
+    registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+    return registration;
+  }
+}
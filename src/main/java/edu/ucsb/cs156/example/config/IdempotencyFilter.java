@@ -0,0 +1,298 @@
+package edu.ucsb.cs156.example.config;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import edu.ucsb.cs156.example.entities.IdempotencyKey;
+import edu.ucsb.cs156.example.services.IdempotencyStore;
+
+// Makes POSTs to /api safe to retry. A client sends the same
+// Idempotency-Key header with each attempt; the first one runs, and once it
+// succeeds (2xx) every retry gets its response back, marked with
+// Idempotent-Replayed: true, without running the controller again.
+//
+// Keys belong to the logged-in user. A retry whose method, path,
+// parameters or body differ from the original gets a 422, and one that
+// arrives while the original is still running gets a 409. A failed request
+// is forgotten, so it can be retried. The replay carries the original
+// status, body and the REPLAYED_HEADERS (ETag, Location, ...).
+//
+// Only SHA-256 digests of the caller and key, and of the request, are
+// stored, so neither grows with the request nor keeps what the user sent.
+//
+// Form bodies are read by the container into the parameters; any other
+// body is read here, digested, and handed on from memory. Multipart bodies
+// are left alone (no endpoint takes one), so their files aren't compared.
+// A keyed body over maxBodyBytes gets a 413 rather than being held in
+// memory; large CSV imports should be sent without a key, so they stream.
+// Responses that hold secrets, such as a newly issued personal access
+// token, are never stored: those paths skip the filter altogether.
+
+class IdempotencyFilter extends OncePerRequestFilter {
+
+  static final String HEADER = "Idempotency-Key";
+  static final String REPLAYED_HEADER = "Idempotent-Replayed";
+  static final int MAX_KEY_LENGTH = 255;
+
+  static final List<String> REPLAYED_HEADERS = List.of(HttpHeaders.ETAG, HttpHeaders.LOCATION,
+      HttpHeaders.CONTENT_LOCATION, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL);
+
+  private static final RequestMatcher NEVER_STORED = new AntPathRequestMatcher("/api/admin/tokens/**");
+
+  private final IdempotencyStore store;
+  private final ObjectMapper mapper;
+  private final int maxBodyBytes;
+
+  Clock clock = Clock.systemUTC();
+
+  IdempotencyFilter(IdempotencyStore store, ObjectMapper mapper, int maxBodyBytes) {
+    this.store = store;
+    this.mapper = mapper;
+    this.maxBodyBytes = maxBodyBytes;
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return !request.getMethod().equals("POST") || request.getHeader(HEADER) == null || NEVER_STORED.matches(request);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    String key = request.getHeader(HEADER).trim();
+    if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+      sendMessage(response, HttpStatus.BAD_REQUEST,
+          HEADER + " must be 1 to " + MAX_KEY_LENGTH + " characters");
+      return;
+    }
+
+    if (!bodyIsParsedByTheContainer(request)) {
+      byte[] body = readBody(request);
+      if (body == null) {
+        sendMessage(response, HttpStatus.PAYLOAD_TOO_LARGE,
+            "requests sent with an " + HEADER + " may have at most " + maxBodyBytes + " bytes of body");
+        return;
+      }
+      request = new BodyInMemoryRequest(request, body);
+    }
+    IdempotencyKey claimed = IdempotencyKey.builder()
+        .id(sha256(caller() + "\n" + key))
+        .fingerprint(fingerprint(request))
+        .createdAt(clock.instant())
+        .build();
+    IdempotencyKey existing = store.claim(claimed);
+    if (existing != null) {
+      replay(existing, claimed, response);
+      return;
+    }
+
+    ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+    boolean completed = false;
+    try {
+      chain.doFilter(request, wrapper);
+      if (HttpStatus.valueOf(wrapper.getStatus()).is2xxSuccessful()) {
+        claimed.setStatus(wrapper.getStatus());
+        claimed.setContentType(wrapper.getContentType());
+        claimed.setHeaders(replayedHeaders(wrapper));
+        claimed.setBody(wrapper.getContentAsByteArray());
+        store.complete(claimed);
+        completed = true;
+      }
+    } finally {
+      if (!completed) {
+        store.release(claimed.getId());
+      }
+      wrapper.copyBodyToResponse();
+    }
+  }
+
+  private void replay(IdempotencyKey existing, IdempotencyKey retry, HttpServletResponse response) throws IOException {
+    if (!existing.getFingerprint().equals(retry.getFingerprint())) {
+      sendMessage(response, HttpStatus.UNPROCESSABLE_ENTITY,
+          HEADER + " was already used for a different request");
+    } else if (!existing.completed()) {
+      sendMessage(response, HttpStatus.CONFLICT,
+          "a request with this " + HEADER + " is still in progress");
+    } else {
+      response.setStatus(existing.getStatus());
+      if (existing.getContentType() != null) {
+        response.setContentType(existing.getContentType());
+      }
+      if (existing.getHeaders() != null) {
+        for (String line : existing.getHeaders().split("\n")) {
+          int colon = line.indexOf(':');
+          response.addHeader(line.substring(0, colon), line.substring(colon + 1));
+        }
+      }
+      response.setHeader(REPLAYED_HEADER, "true");
+      response.getOutputStream().write(existing.getBody());
+    }
+  }
+
+  private static String caller() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    return authentication == null ? "" : authentication.getName();
+  }
+
+  // one "Name:value" line per header value
+  private static String replayedHeaders(HttpServletResponse response) {
+    StringBuilder sb = new StringBuilder();
+    for (String name : REPLAYED_HEADERS) {
+      for (String value : response.getHeaders(name)) {
+        sb.append(sb.length() == 0 ? "" : "\n").append(name).append(':').append(value);
+      }
+    }
+    return sb.length() == 0 ? null : sb.toString();
+  }
+
+  private static boolean bodyIsParsedByTheContainer(HttpServletRequest request) {
+    String contentType = request.getContentType();
+    if (contentType == null) {
+      return false;
+    }
+    MediaType mediaType;
+    try {
+      mediaType = MediaType.parseMediaType(contentType);
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return MediaType.APPLICATION_FORM_URLENCODED.includes(mediaType) || MediaType.MULTIPART_FORM_DATA.includes(mediaType);
+  }
+
+  // null if the body is longer than maxBodyBytes
+  private byte[] readBody(HttpServletRequest request) throws IOException {
+    if (request.getContentLengthLong() > maxBodyBytes) {
+      return null;
+    }
+    InputStream in = request.getInputStream();
+    byte[] body = in.readNBytes(maxBodyBytes);
+    return in.read() == -1 ? body : null;
+  }
+
+  // parameters are sorted, so their order in the query string doesn't matter
+  private static String fingerprint(HttpServletRequest request) {
+    StringBuilder sb = new StringBuilder(request.getMethod()).append(' ').append(request.getRequestURI());
+    char separator = '?';
+    for (Map.Entry<String, String[]> param : new TreeMap<>(request.getParameterMap()).entrySet()) {
+      for (String value : param.getValue()) {
+        sb.append(separator).append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8))
+            .append('=').append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+        separator = '&';
+      }
+    }
+    MessageDigest digest = sha256();
+    digest.update(sb.append('\n').toString().getBytes(StandardCharsets.UTF_8));
+    if (request instanceof BodyInMemoryRequest) {
+      digest.update(((BodyInMemoryRequest) request).body);
+    }
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  private static String sha256(String s) {
+    return HexFormat.of().formatHex(sha256().digest(s.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void sendMessage(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+    response.setStatus(status.value());
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    mapper.writeValue(response.getOutputStream(), Map.of("message", message));
+  }
+
+  private static final class BodyInMemoryRequest extends HttpServletRequestWrapper {
+    private final byte[] body;
+
+    BodyInMemoryRequest(HttpServletRequest request, byte[] body) {
+      super(request);
+      this.body = body;
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+      ByteArrayInputStream in = new ByteArrayInputStream(body);
+      return new ServletInputStream() {
+        @Override
+        public int read() {
+          return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+          return in.read(b, off, len);
+        }
+
+        @Override
+        public boolean isFinished() {
+          return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+          return true;
+        }
+
+        // the whole body is already here, so there is nothing to wait for
+        @Override
+        public void setReadListener(ReadListener listener) {
+          try {
+            if (!isFinished()) {
+              listener.onDataAvailable();
+            }
+            if (isFinished()) {
+              listener.onAllDataRead();
+            }
+          } catch (IOException e) {
+            listener.onError(e);
+          }
+        }
+      };
+    }
+
+    @Override
+    public BufferedReader getReader() {
+      String encoding = getCharacterEncoding();
+      Charset charset = encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding);
+      return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+    }
+  }
+}
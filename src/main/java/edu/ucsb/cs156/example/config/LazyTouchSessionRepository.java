@@ -0,0 +1,122 @@
+package edu.ucsb.cs156.example.config;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+// Wraps a SessionRepository so that reading a session doesn't write it back.
+//
+// SessionRepositoryFilter moves a session's last-accessed time to "now" on
+// every request, which marks the session dirty and costs the JDBC store an
+// UPDATE per request. Here that move is only passed on once it is at least
+// touchInterval past the stored time; a session whose attributes didn't
+// change in between is then saved without touching the database. Sessions
+// can therefore expire up to touchInterval earlier than they otherwise
+// would, which is fine for intervals much shorter than the timeout.
+
+final class LazyTouchSessionRepository implements SessionRepository<Session> {
+
+  private final SessionRepository<Session> delegate;
+  private final Duration touchInterval;
+
+  @SuppressWarnings("unchecked")
+  LazyTouchSessionRepository(SessionRepository<? extends Session> delegate, Duration touchInterval) {
+    // the delegate only ever gets back sessions it created itself
+    this.delegate = (SessionRepository<Session>) delegate;
+    this.touchInterval = touchInterval;
+  }
+
+  @Override
+  public Session createSession() {
+    return new LazyTouchSession(delegate.createSession());
+  }
+
+  @Override
+  public void save(Session session) {
+    delegate.save(((LazyTouchSession) session).session);
+  }
+
+  @Override
+  public Session findById(String id) {
+    Session session = delegate.findById(id);
+    return session == null ? null : new LazyTouchSession(session);
+  }
+
+  @Override
+  public void deleteById(String id) {
+    delegate.deleteById(id);
+  }
+
+  private final class LazyTouchSession implements Session {
+    private final Session session;
+
+    LazyTouchSession(Session session) {
+      this.session = session;
+    }
+
+    @Override
+    public void setLastAccessedTime(Instant lastAccessedTime) {
+      if (Duration.between(session.getLastAccessedTime(), lastAccessedTime).compareTo(touchInterval) >= 0) {
+        session.setLastAccessedTime(lastAccessedTime);
+      }
+    }
+
+    @Override
+    public String getId() {
+      return session.getId();
+    }
+
+    @Override
+    public String changeSessionId() {
+      return session.changeSessionId();
+    }
+
+    @Override
+    public <T> T getAttribute(String attributeName) {
+      return session.getAttribute(attributeName);
+    }
+
+    @Override
+    public Set<String> getAttributeNames() {
+      return session.getAttributeNames();
+    }
+
+    @Override
+    public void setAttribute(String attributeName, Object attributeValue) {
+      session.setAttribute(attributeName, attributeValue);
+    }
+
+    @Override
+    public void removeAttribute(String attributeName) {
+      session.removeAttribute(attributeName);
+    }
+
+    @Override
+    public Instant getCreationTime() {
+      return session.getCreationTime();
+    }
+
+    @Override
+    public Instant getLastAccessedTime() {
+      return session.getLastAccessedTime();
+    }
+
+    @Override
+    public void setMaxInactiveInterval(Duration interval) {
+      session.setMaxInactiveInterval(interval);
+    }
+
+    @Override
+    public Duration getMaxInactiveInterval() {
+      return session.getMaxInactiveInterval();
+    }
+
+    @Override
+    public boolean isExpired() {
+      return session.isExpired();
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.config;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
+import edu.ucsb.cs156.example.services.PersonalAccessTokenAuthentication;
+import edu.ucsb.cs156.example.services.PersonalAccessTokenCodec;
+
+// Authenticates a request from its "Authorization: Bearer pat_..." header,
+// for the chain in SecurityConfig.PersonalAccessTokenConfig; a token that
+// doesn't check out gets a 401.
+
+class PersonalAccessTokenFilter extends OncePerRequestFilter {
+
+  static final String BEARER = "Bearer ";
+
+  private final PersonalAccessTokenCodec codec;
+
+  PersonalAccessTokenFilter(PersonalAccessTokenCodec codec) {
+    this.codec = codec;
+  }
+
+  static boolean hasToken(HttpServletRequest request) {
+    String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+    return header != null && header.startsWith(BEARER + PersonalAccessTokenCodec.PREFIX);
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+      throws ServletException, IOException {
+    AccessTokenClaims claims = codec.decode(request.getHeader(HttpHeaders.AUTHORIZATION).substring(BEARER.length()).trim());
+    if (claims == null) {
+      response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer error=\"invalid_token\"");
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return;
+    }
+    SecurityContext context = SecurityContextHolder.createEmptyContext();
+    context.setAuthentication(new PersonalAccessTokenAuthentication(claims));
+    SecurityContextHolder.setContext(context);
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      SecurityContextHolder.clearContext();
+    }
+  }
+}
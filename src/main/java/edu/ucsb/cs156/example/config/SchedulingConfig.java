@@ -0,0 +1,14 @@
+package edu.ucsb.cs156.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Turns on @Scheduled methods, e.g. the nightly run of ArchiveService.
+ * Set a job's cron property to "-" to disable it.
+ */
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
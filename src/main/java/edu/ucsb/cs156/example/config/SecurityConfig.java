@@ -13,10 +13,13 @@ import java.util.Set;
 import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.builders.WebSecurity;
@@ -25,14 +28,22 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.oauth2.client.web.HttpSessionOAuth2AuthorizedClientRepository;
 import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
 import org.springframework.security.web.authentication.Http403ForbiddenEntryPoint;
+import org.springframework.security.web.authentication.SavedRequestAwareAuthenticationSuccessHandler;
+import org.springframework.security.web.access.ExceptionTranslationFilter;
 import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 import org.springframework.security.web.util.matcher.RequestMatcher;
 
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache;
+import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.services.LastSeenTracker;
+import edu.ucsb.cs156.example.services.PersonalAccessTokenCodec;
 import lombok.extern.slf4j.Slf4j;
 
 @Configuration
@@ -41,12 +52,74 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
+  // Requests that need nothing from the session: the frontend's static
+  // files, the API docs, and public endpoints such as the calendar feed.
+  public static final String[] PUBLIC_PATHS = {
+      "/static/**", "/favicon.ico", "/manifest.json", "/robots.txt", "/logo*.png",
+      "/api/docs", "/swagger-ui/**", "/swagger-resources/**",
+      "/api/ucsbdates/calendar.ics",
+  };
+
+  /**
+   * Serves PUBLIC_PATHS with a chain of just the security headers: no
+   * session lookup (a database read with the JDBC session store), no CSRF
+   * cookie, no OAuth2 or logout filters. It is ordered before the main
+   * chain, which handles everything else.
+   */
+  @Configuration
+  @Order(1)
+  public static class PublicPathsConfig extends WebSecurityConfigurerAdapter {
+
+    public PublicPathsConfig() {
+      super(true); // start from an empty chain rather than the defaults
+    }
+
+    @Override
+    protected void configure(HttpSecurity http) throws Exception {
+      http.requestMatchers(matchers -> matchers.antMatchers(PUBLIC_PATHS))
+          .headers(Customizer.withDefaults());
+    }
+  }
+
+  /**
+   * Serves requests carrying a personal access token ("Authorization: Bearer
+   * pat_..."). The token is checked by PersonalAccessTokenFilter without a
+   * database read, and nothing is kept in a session. There is no CSRF check
+   * either, since the token is never sent automatically by a browser.
+   */
+  @Configuration
+  @Order(2)
+  public static class PersonalAccessTokenConfig extends WebSecurityConfigurerAdapter {
+
+    @Autowired
+    PersonalAccessTokenCodec personalAccessTokenCodec;
+
+    public PersonalAccessTokenConfig() {
+      super(true);
+    }
+
+    @Override
+    protected void configure(HttpSecurity http) throws Exception {
+      http.requestMatcher(PersonalAccessTokenFilter::hasToken)
+          .headers(Customizer.withDefaults())
+          .exceptionHandling(handlingConfigurer -> handlingConfigurer
+              .authenticationEntryPoint(new Http403ForbiddenEntryPoint()))
+          .addFilterBefore(new PersonalAccessTokenFilter(personalAccessTokenCodec), ExceptionTranslationFilter.class);
+    }
+  }
+
   @Value("${app.admin.emails}")
   private final List<String> adminEmails = new ArrayList<String>();
 
   @Autowired
   UserRepository userRepository;
 
+  @Autowired
+  CurrentUserService currentUserService;
+
+  @Autowired
+  LastSeenTracker lastSeenTracker;
+
   @Override
   protected void configure(HttpSecurity http) throws Exception {
     http.authorizeRequests(authorize -> authorize
@@ -54,7 +127,10 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         .exceptionHandling(handlingConfigurer -> handlingConfigurer
             .authenticationEntryPoint(new Http403ForbiddenEntryPoint()))
         .oauth2Login(
-            oauth2 -> oauth2.userInfoEndpoint(userInfo -> userInfo.userAuthoritiesMapper(this.userAuthoritiesMapper())))
+            oauth2 -> oauth2.userInfoEndpoint(userInfo -> userInfo.userAuthoritiesMapper(this.userAuthoritiesMapper()))
+                // keep the authorized client in the (shared) session rather than in this instance's memory
+                .authorizedClientRepository(new HttpSessionOAuth2AuthorizedClientRepository())
+                .successHandler(this.loginSuccessHandler()))
         .csrf(csrf -> csrf
             .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse()))
         .logout(logout -> logout
@@ -67,6 +143,24 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     web.ignoring().antMatchers("/h2-console/**");
   }
 
+  // records the login (which also creates the users row on a first login),
+  // then redirects as usual. The session keeps its attributes across a login,
+  // so drop the /api/currentUser response cached for whoever was logged in before.
+  private AuthenticationSuccessHandler loginSuccessHandler() {
+    AuthenticationSuccessHandler redirect = new SavedRequestAwareAuthenticationSuccessHandler();
+    return (request, response, authentication) -> {
+      HttpSession session = request.getSession(false);
+      if (session != null) {
+        session.removeAttribute(CurrentUserResponseCache.SESSION_ATTRIBUTE);
+      }
+      User user = currentUserService.getUser();
+      if (user != null) {
+        lastSeenTracker.loggedIn(user.getId());
+      }
+      redirect.onAuthenticationSuccess(request, response, authentication);
+    };
+  }
+
   private GrantedAuthoritiesMapper userAuthoritiesMapper() {
     return (authorities) -> {
       Set<GrantedAuthority> mappedAuthorities = new HashSet<>();
@@ -0,0 +1,135 @@
+package edu.ucsb.cs156.example.config;
+
+import java.sql.DatabaseMetaData;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.MapSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+import org.springframework.session.config.annotation.web.http.EnableSpringHttpSession;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps HTTP sessions, and with them the OAuth2 login, out of Tomcat so that
+ * any instance of the app can serve any request.
+ *
+ * app.session.store=jdbc (the default) keeps sessions in the spring_session
+ * tables of the app's database, creating them on first start; memory keeps
+ * them in this process, for tests and single-instance development.
+ * Attributes are stored compactly (CompactSessionSerializer) and sessions
+ * are only touched every app.session.touchSeconds
+ * (LazyTouchSessionRepository).
+ */
+
+@Slf4j
+@Configuration
+@EnableSpringHttpSession
+public class SessionConfig {
+
+  // serialized attributes at least this big are compressed
+  private static final int MIN_COMPRESS_BYTES = 512;
+
+  @Value("${app.session.store:jdbc}")
+  private String store = "jdbc";
+
+  @Value("${app.session.timeoutMinutes:30}")
+  private int timeoutMinutes = 30;
+
+  @Value("${app.session.touchSeconds:60}")
+  private int touchSeconds = 60;
+
+  @Autowired
+  DataSource dataSource;
+
+  @Autowired
+  PlatformTransactionManager transactionManager;
+
+  private JdbcIndexedSessionRepository jdbcSessions;
+
+  @Bean
+  public SessionRepository<Session> sessionRepository() {
+    SessionRepository<? extends Session> sessions;
+    switch (store) {
+      case "jdbc":
+        createSchemaIfMissing(dataSource);
+        jdbcSessions = jdbcSessionRepository(dataSource, transactionManager, getClass().getClassLoader());
+        jdbcSessions.setDefaultMaxInactiveInterval(timeoutMinutes * 60);
+        sessions = jdbcSessions;
+        break;
+      case "memory":
+        MapSessionRepository map = new MapSessionRepository(new ConcurrentHashMap<>());
+        map.setDefaultMaxInactiveInterval(timeoutMinutes * 60);
+        sessions = map;
+        break;
+      default:
+        throw new IllegalStateException("app.session.store must be jdbc or memory, not " + store);
+    }
+    log.info("keeping sessions in {} store", store);
+    return new LazyTouchSessionRepository(sessions, Duration.ofSeconds(touchSeconds));
+  }
+
+  // the memory store drops expired sessions as they are looked up; the jdbc
+  // store needs sweeping. Every instance may run this, since it is a single DELETE.
+  @Scheduled(cron = "${app.session.cleanupCron:0 * * * * *}")
+  public void cleanUpExpiredSessions() {
+    if (jdbcSessions != null) {
+      jdbcSessions.cleanUpExpiredSessions();
+    }
+  }
+
+  static JdbcIndexedSessionRepository jdbcSessionRepository(DataSource dataSource,
+      PlatformTransactionManager transactionManager, ClassLoader classLoader) {
+    // session writes commit on their own, whatever the request is doing
+    TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+    transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+    CompactSessionSerializer serializer = new CompactSessionSerializer(classLoader, MIN_COMPRESS_BYTES);
+    GenericConversionService conversionService = new GenericConversionService();
+    conversionService.addConverter(Object.class, byte[].class, serializer::serialize);
+    conversionService.addConverter(byte[].class, Object.class, serializer::deserialize);
+
+    JdbcIndexedSessionRepository sessions = new JdbcIndexedSessionRepository(new JdbcTemplate(dataSource), transaction);
+    sessions.setConversionService(conversionService);
+    return sessions;
+  }
+
+  static void createSchemaIfMissing(DataSource dataSource) {
+    try {
+      new JdbcTemplate(dataSource).execute("select 1 from SPRING_SESSION where 1 = 0");
+      return;
+    } catch (DataAccessException e) {
+      log.info("creating session tables");
+    }
+    String product;
+    try {
+      product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+    } catch (MetaDataAccessException e) {
+      throw new IllegalStateException("can't tell which database is in use", e);
+    }
+    // Spring Session ships one script per database, e.g. schema-h2.sql and schema-postgresql.sql
+    String platform = JdbcUtils.commonDatabaseName(product).toLowerCase(Locale.ROOT);
+    new ResourceDatabasePopulator(
+        new ClassPathResource("org/springframework/session/jdbc/schema-" + platform + ".sql")).execute(dataSource);
+  }
+}
@@ -1,23 +1,46 @@
 package edu.ucsb.cs156.example.controllers;
 
+import edu.ucsb.cs156.example.errors.CsvFormatException;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.InvalidQuarterException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
 import net.bytebuddy.implementation.bytecode.Throw;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.Validator;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 @Slf4j
 public abstract class ApiController {
+  public static final String MERGE_PATCH_JSON_VALUE = "application/merge-patch+json";
+
   @Autowired
   private CurrentUserService currentUserService;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private Validator mvcValidator;
+
   protected CurrentUser getCurrentUser() {
     return currentUserService.getCurrentUser();
   }
@@ -26,6 +49,80 @@ public abstract class ApiController {
     return Map.of("message", message);
   }
 
+  // If-Match carries the version from an earlier ETag, e.g. "3" or W/"3".
+  // Returns null when the header is absent or "*" (update unconditionally);
+  // a malformed tag returns -1, which never matches and so yields a 409.
+  //
+  // A matching version costs two statements: the conditional UPDATE, then
+  // a read of the stored row for the response. Folding the read into the
+  // UPDATE needs UPDATE ... RETURNING, which H2 (dev and tests) lacks.
+  protected Long expectedVersion(String ifMatch) {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String tag = ifMatch.trim();
+    if (tag.startsWith("W/")) {
+      tag = tag.substring(2);
+    }
+    try {
+      return Long.parseLong(tag.replace("\"", ""));
+    } catch (NumberFormatException e) {
+      return -1L;
+    }
+  }
+
+  // If-None-Match (RFC 7232 section 3.2) is "*" or a comma-separated list of
+  // tags, any of them possibly weak (W/"..."). It matches etag if it is "*"
+  // or lists etag, compared weakly, i.e. ignoring W/ on either side.
+  protected static boolean ifNoneMatchHits(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+      return false;
+    }
+    String opaque = withoutWeakPrefix(etag);
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.equals("*") || withoutWeakPrefix(tag).equals(opaque)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String withoutWeakPrefix(String tag) {
+    return tag.startsWith("W/") ? tag.substring(2) : tag;
+  }
+
+  protected <T> ResponseEntity<T> withETag(T body, long version) {
+    return ResponseEntity.ok().eTag(Long.toString(version)).body(body);
+  }
+
+  // Applies a JSON merge patch (RFC 7396) to entity in place: properties present in the
+  // patch replace the entity's values and everything else is left alone. The version and
+  // the fields listed in ignored (the key, plus anything only the server sets) can't be
+  // patched. The merged entity then goes through the same validator as a @Valid body.
+  protected <T> T applyMergePatch(T entity, JsonNode patch, String... ignored) {
+    if (patch == null || !patch.isObject()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "merge patch must be a JSON object");
+    }
+    ObjectNode fields = ((ObjectNode) patch).deepCopy();
+    fields.remove("version");
+    fields.remove(Arrays.asList(ignored));
+    T merged;
+    try {
+      merged = objectMapper.readerForUpdating(entity).readValue(fields);
+    } catch (IOException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+    }
+    BeanPropertyBindingResult errors = new BeanPropertyBindingResult(merged, "patch");
+    mvcValidator.validate(merged, errors);
+    if (errors.hasErrors()) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, errors.getFieldErrors().stream()
+          .map(error -> error.getField() + " " + error.getDefaultMessage())
+          .collect(Collectors.joining(", ")));
+    }
+    return merged;
+  }
+
   @ExceptionHandler({ EntityNotFoundException.class })
   @ResponseStatus(HttpStatus.NOT_FOUND)
   public Object handleGenericException(Throwable e) {
@@ -34,4 +131,22 @@ public abstract class ApiController {
       "message", e.getMessage()
     );
   }
+
+  @ExceptionHandler({ InvalidQuarterException.class, CsvFormatException.class })
+  @ResponseStatus(HttpStatus.BAD_REQUEST)
+  public Object handleBadRequestException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
+
+  @ExceptionHandler({ VersionConflictException.class, ObjectOptimisticLockingFailureException.class })
+  @ResponseStatus(HttpStatus.CONFLICT)
+  public Object handleConflictException(Throwable e) {
+    return Map.of(
+      "type", e.getClass().getSimpleName(),
+      "message", e.getMessage()
+    );
+  }
 }
@@ -2,6 +2,7 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.Articles;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
 import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -10,14 +11,20 @@ import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -25,6 +32,7 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.Set;
 
 @Api(description = "Articles")
 @RequestMapping("/api/articles")
@@ -46,12 +54,12 @@ public class ArticlesController extends ApiController {
     @ApiOperation(value = "Get a single article")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Articles getById(
+    public ResponseEntity<Articles> getById(
             @ApiParam("id") @RequestParam Long id) {
         Articles articles = articlesRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
 
-        return articles;
+        return withETag(articles, articles.getVersion());
     }
 
     @ApiOperation(value = "Create a new article")
@@ -83,20 +91,42 @@ public class ArticlesController extends ApiController {
     @DeleteMapping("")
     public Object deleteArticles(
             @ApiParam("id") @RequestParam Long id) {
-        Articles articles = articlesRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
-
-        articlesRepository.delete(articles);
+        if (articlesRepository.deleteByIdReturningCount(id) == 0) {
+            throw new EntityNotFoundException(Articles.class, id);
+        }
         return genericMessage("Article with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete several articles at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteArticlesBulk(
+            @ApiParam("ids, comma separated") @RequestParam Set<Long> ids) {
+        int deleted = ids.isEmpty() ? 0 : articlesRepository.deleteByIdIn(ids);
+        return genericMessage("Deleted %d of %d Articles records".formatted(deleted, ids.size()));
+    }
+
     @ApiOperation(value = "Update a single article")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public Articles updateArticles(
+    public ResponseEntity<Articles> updateArticles(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the Articles has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid Articles incoming) {
 
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (articlesRepository.updateIfVersionMatches(id, version, incoming) == 0) {
+                if (!articlesRepository.existsById(id)) {
+                    throw new EntityNotFoundException(Articles.class, id);
+                }
+                throw new VersionConflictException(Articles.class, id, version);
+            }
+            Articles updated = articlesRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
+            return withETag(updated, updated.getVersion());
+        }
+
         Articles articles = articlesRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
 
@@ -108,6 +138,28 @@ public class ArticlesController extends ApiController {
 
         articlesRepository.save(articles);
 
-        return articles;
+        return ResponseEntity.ok(articles);
+    }
+
+    @ApiOperation(value = "Update only the fields present in the body of a single article (JSON merge patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<Articles> patchArticles(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the Articles has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        Articles articles = articlesRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(Articles.class, id));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != articles.getVersion()) {
+            throw new VersionConflictException(Articles.class, id, version);
+        }
+
+        applyMergePatch(articles, patch, "id");
+        Articles saved = articlesRepository.save(articles);
+
+        return withETag(saved, saved.getVersion());
     }
 }
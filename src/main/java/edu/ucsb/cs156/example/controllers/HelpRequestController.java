@@ -2,7 +2,11 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpRequestClaimService;
+import edu.ucsb.cs156.example.services.HelpRequestDeleteService;
+import edu.ucsb.cs156.example.services.HelpRequestEventService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -10,21 +14,30 @@ import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import javax.validation.Valid;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 
 @Api(description = "HelpRequests")
 @RequestMapping("/api/HelpRequest")
@@ -35,6 +48,15 @@ public class HelpRequestController extends ApiController {
     @Autowired
     HelpRequestRepository helpRequestRepository;
 
+    @Autowired
+    HelpRequestEventService helpRequestEventService;
+
+    @Autowired
+    HelpRequestClaimService helpRequestClaimService;
+
+    @Autowired
+    HelpRequestDeleteService helpRequestDeleteService;
+
     @ApiOperation(value = "List all help requests")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -46,12 +68,19 @@ public class HelpRequestController extends ApiController {
     @ApiOperation(value = "Get a single request")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public HelpRequest getById(
+    public ResponseEntity<HelpRequest> getById(
             @ApiParam("id") @RequestParam Long id) {
         HelpRequest helpRequest = helpRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
-        return helpRequest;
+        return withETag(helpRequest, helpRequest.getVersion());
+    }
+
+    @ApiOperation(value = "Subscribe to created/updated/deleted help requests as server-sent events")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamHelpRequests() {
+        return helpRequestEventService.subscribe();
     }
 
     @ApiOperation(value = "Create a new request")
@@ -81,29 +110,64 @@ public class HelpRequestController extends ApiController {
         helpRequest.setSolved(solved);
 
         HelpRequest savedHelpRequest = helpRequestRepository.save(helpRequest);
+        helpRequestEventService.publishCreated(savedHelpRequest);
 
         return savedHelpRequest;
     }
 
+    @ApiOperation(value = "Claim the oldest unsolved request that no one else has claimed (204 if the queue is empty)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping("/claim")
+    public ResponseEntity<HelpRequest> claimNextHelpRequest() {
+        return helpRequestClaimService.claimNext(getCurrentUser().getUser().getEmail())
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.noContent().build());
+    }
+
     @ApiOperation(value = "Delete a request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteHelpRequest(
             @ApiParam("id") @RequestParam Long id) {
-        HelpRequest helpRequest = helpRequestRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
-
-        helpRequestRepository.delete(helpRequest);
+        if (helpRequestRepository.deleteByIdReturningCount(id) == 0) {
+            throw new EntityNotFoundException(HelpRequest.class, id);
+        }
+        helpRequestEventService.publishDeleted(id);
         return genericMessage("HelpRequest with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete several requests at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteHelpRequestBulk(
+            @ApiParam("ids, comma separated") @RequestParam Set<Long> ids) {
+        List<Long> deleted = helpRequestDeleteService.deleteAll(ids);
+        return genericMessage("Deleted %d of %d HelpRequest records".formatted(deleted.size(), ids.size()));
+    }
+
     @ApiOperation(value = "Update a single request")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public HelpRequest updateHelpRequest(
+    public ResponseEntity<HelpRequest> updateHelpRequest(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the HelpRequest has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid HelpRequest incoming) {
 
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (helpRequestRepository.updateIfVersionMatches(id, version, incoming) == 0) {
+                if (!helpRequestRepository.existsById(id)) {
+                    throw new EntityNotFoundException(HelpRequest.class, id);
+                }
+                throw new VersionConflictException(HelpRequest.class, id, version);
+            }
+            // re-read, so server-owned fields come back as stored rather than as sent
+            HelpRequest updated = helpRequestRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+            helpRequestEventService.publishUpdated(updated);
+            return withETag(updated, updated.getVersion());
+        }
+
         HelpRequest helpRequest = helpRequestRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
 
@@ -115,7 +179,32 @@ public class HelpRequestController extends ApiController {
         helpRequest.setSolved(incoming.getSolved());
 
         helpRequestRepository.save(helpRequest);
+        helpRequestEventService.publishUpdated(helpRequest);
+
+        return ResponseEntity.ok(helpRequest);
+    }
+
+    @ApiOperation(value = "Update only the fields present in the body of a single request (JSON merge patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<HelpRequest> patchHelpRequest(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the HelpRequest has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        HelpRequest helpRequest = helpRequestRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(HelpRequest.class, id));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != helpRequest.getVersion()) {
+            throw new VersionConflictException(HelpRequest.class, id, version);
+        }
+
+        // entities use @DynamicUpdate, so the UPDATE only sets the columns the patch changed
+        applyMergePatch(helpRequest, patch, "id", "claimedBy", "claimedTime", "solvedTime");
+        HelpRequest saved = helpRequestRepository.save(helpRequest);
+        helpRequestEventService.publishUpdated(saved);
 
-        return helpRequest;
+        return withETag(saved, saved.getVersion());
     }
 }
@@ -2,7 +2,11 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
+import edu.ucsb.cs156.example.models.MenuItemRating;
+import edu.ucsb.cs156.example.models.MenuItemReviewPage;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboardService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -10,20 +14,34 @@ import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
+
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Set;
 
 @Api(description = "MenuItemReview")
 @RequestMapping("/api/MenuItemReview")
@@ -31,9 +49,16 @@ import java.time.LocalDateTime;
 @Slf4j
 public class MenuItemReviewController extends ApiController {
 
+    private static final int MAX_LEADERBOARD_DAYS = 366;
+    private static final int MAX_LEADERBOARD_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     MenuItemReviewRepository menuItemReviewRepository;
 
+    @Autowired
+    MenuItemLeaderboardService menuItemLeaderboardService;
+
     @ApiOperation(value = "List all menu item reviews")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -45,12 +70,56 @@ public class MenuItemReviewController extends ApiController {
     @ApiOperation(value = "Get a single review")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public MenuItemReview getById(
+    public ResponseEntity<MenuItemReview> getById(
             @ApiParam("id") @RequestParam Long id) {
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
-        return menuItemReview;
+        return withETag(menuItemReview, menuItemReview.getVersion());
+    }
+
+    @ApiOperation(value = "One page of a menu item's reviews, newest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/item")
+    public MenuItemReviewPage reviewsForItem(
+            @ApiParam("itemId") @RequestParam long itemId,
+            @ApiParam("nextCursor from the previous page; omit for the first page") @RequestParam(required = false) String after,
+            @ApiParam("page size, at most " + MAX_PAGE_SIZE) @RequestParam(defaultValue = "20") int size) {
+        int pageSize = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        // one extra row tells us whether there is a next page
+        Pageable pageable = PageRequest.of(0, pageSize + 1);
+        List<MenuItemReview> reviews;
+        if (after == null || after.isBlank()) {
+            reviews = menuItemReviewRepository.findNewestForItem(itemId, pageable);
+        } else {
+            String[] cursor = after.split(",", 2);
+            LocalDateTime date;
+            long id;
+            try {
+                date = LocalDateTime.parse(cursor[0]);
+                id = Long.parseLong(cursor[1]);
+            } catch (DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "invalid cursor: " + after);
+            }
+            reviews = menuItemReviewRepository.findNewestForItemAfter(itemId, date, id, pageable);
+        }
+        if (reviews.size() <= pageSize) {
+            return new MenuItemReviewPage(reviews, null);
+        }
+        List<MenuItemReview> page = reviews.subList(0, pageSize);
+        MenuItemReview last = page.get(pageSize - 1);
+        return new MenuItemReviewPage(page, last.getDateReviewed() + "," + last.getId());
+    }
+
+    @ApiOperation(value = "Top rated menu items, by average stars, over all time or the last few days")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/leaderboard")
+    public List<MenuItemRating> leaderboard(
+            @ApiParam("only count reviews from the last this many days (including today), at most " + MAX_LEADERBOARD_DAYS + "; omit for all time") @RequestParam(required = false) Integer days,
+            @ApiParam("how many items to return, at most " + MAX_LEADERBOARD_SIZE) @RequestParam(defaultValue = "10") int limit,
+            @ApiParam("leave out items with fewer reviews than this in the window") @RequestParam(defaultValue = "1") int minReviews) {
+        Integer window = days == null ? null : Math.min(Math.max(days, 1), MAX_LEADERBOARD_DAYS);
+        return menuItemLeaderboardService.top(window, Math.min(Math.max(limit, 1), MAX_LEADERBOARD_SIZE), minReviews);
     }
 
     @ApiOperation(value = "Create a new review")
@@ -74,6 +143,7 @@ public class MenuItemReviewController extends ApiController {
     menuItemReview.setDateReviewed(dateReviewed);
 
     MenuItemReview savedMenuItemReview = menuItemReviewRepository.save(menuItemReview);
+    menuItemLeaderboardService.record(savedMenuItemReview);
 
     return savedMenuItemReview;
 }
@@ -83,20 +153,45 @@ public class MenuItemReviewController extends ApiController {
     @DeleteMapping("")
     public Object deleteMenuItemReview(
             @ApiParam("id") @RequestParam Long id) {
-        MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
-
-        menuItemReviewRepository.delete(menuItemReview);
+        if (menuItemReviewRepository.deleteByIdReturningCount(id) == 0) {
+            throw new EntityNotFoundException(MenuItemReview.class, id);
+        }
+        menuItemLeaderboardService.remove(id);
         return genericMessage("MenuItemReview with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete several reviews at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteMenuItemReviewBulk(
+            @ApiParam("ids, comma separated") @RequestParam Set<Long> ids) {
+        int deleted = ids.isEmpty() ? 0 : menuItemReviewRepository.deleteByIdIn(ids);
+        menuItemLeaderboardService.removeAll(ids);
+        return genericMessage("Deleted %d of %d MenuItemReview records".formatted(deleted, ids.size()));
+    }
+
     @ApiOperation(value = "Update a review")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public MenuItemReview updateMenuItemReview(
+    public ResponseEntity<MenuItemReview> updateMenuItemReview(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the MenuItemReview has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid MenuItemReview incoming) {
 
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (menuItemReviewRepository.updateIfVersionMatches(id, version, incoming) == 0) {
+                if (!menuItemReviewRepository.existsById(id)) {
+                    throw new EntityNotFoundException(MenuItemReview.class, id);
+                }
+                throw new VersionConflictException(MenuItemReview.class, id, version);
+            }
+            MenuItemReview updated = menuItemReviewRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+            menuItemLeaderboardService.record(updated);
+            return withETag(updated, updated.getVersion());
+        }
+
         MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
 
@@ -106,9 +201,34 @@ public class MenuItemReviewController extends ApiController {
         menuItemReview.setComments(incoming.getComments());
         menuItemReview.setDateReviewed(incoming.getDateReviewed());
 
-        menuItemReviewRepository.save(menuItemReview);
+        // record the saved copy: it carries the version this write committed
+        MenuItemReview saved = menuItemReviewRepository.save(menuItemReview);
+        menuItemLeaderboardService.record(saved);
 
-        return menuItemReview;
+        return ResponseEntity.ok(menuItemReview);
 
         }
-}
\ No newline at end of file
+
+    @ApiOperation(value = "Update only the fields present in the body of a single review (JSON merge patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<MenuItemReview> patchMenuItemReview(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the MenuItemReview has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        MenuItemReview menuItemReview = menuItemReviewRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(MenuItemReview.class, id));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != menuItemReview.getVersion()) {
+            throw new VersionConflictException(MenuItemReview.class, id, version);
+        }
+
+        applyMergePatch(menuItemReview, patch, "id");
+        MenuItemReview saved = menuItemReviewRepository.save(menuItemReview);
+        menuItemLeaderboardService.record(saved);
+
+        return withETag(saved, saved.getVersion());
+    }
+}
@@ -0,0 +1,61 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.entities.PersonalAccessToken;
+import edu.ucsb.cs156.example.models.IssuedAccessToken;
+import edu.ucsb.cs156.example.services.PersonalAccessTokenService;
+import io.swagger.annotations.Api;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@Api(description = "Personal access tokens for scripts (admin only)")
+@RequestMapping("/api/admin/tokens")
+@RestController
+@Slf4j
+public class PersonalAccessTokensController extends ApiController {
+
+    // an admin signed in with OAuth; a personal access token can't be used to mint or revoke tokens
+    static final String ADMIN_SESSION = "hasRole('ROLE_ADMIN') and "
+            + "!(authentication instanceof T(edu.ucsb.cs156.example.services.PersonalAccessTokenAuthentication))";
+
+    @Autowired
+    PersonalAccessTokenService personalAccessTokenService;
+
+    @ApiOperation(value = "List personal access tokens, newest first")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("")
+    public List<PersonalAccessToken> listTokens(
+            @ApiParam("userId (omit for everyone's tokens)") @RequestParam(required = false) Long userId) {
+        return personalAccessTokenService.list(userId);
+    }
+
+    @ApiOperation(value = "Issue a personal access token for a user; send it as \"Authorization: Bearer <token>\"")
+    @PreAuthorize(ADMIN_SESSION)
+    @PostMapping("/post")
+    public IssuedAccessToken issueToken(
+            @ApiParam("userId") @RequestParam long userId,
+            @ApiParam("name, e.g. what the token is for") @RequestParam String name,
+            @ApiParam("days until it expires") @RequestParam(defaultValue = "90") int days) {
+        return personalAccessTokenService.issue(userId, name, days, getCurrentUser().getUser().getEmail());
+    }
+
+    @ApiOperation(value = "Revoke a personal access token")
+    @PreAuthorize(ADMIN_SESSION)
+    @DeleteMapping("")
+    public Object revokeToken(
+            @ApiParam("id") @RequestParam long id) {
+        personalAccessTokenService.revoke(id);
+        return genericMessage("Personal access token with id %s revoked".formatted(id));
+    }
+}
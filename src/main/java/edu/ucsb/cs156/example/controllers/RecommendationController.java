@@ -1,25 +1,39 @@
 package edu.ucsb.cs156.example.controllers;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 
 import javax.validation.Valid;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 
 
 import edu.ucsb.cs156.example.entities.Recommendation;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
+import edu.ucsb.cs156.example.models.ProfessorWorkload;
 import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+import edu.ucsb.cs156.example.services.RecommendationWorkloadService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -31,9 +45,14 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class RecommendationController extends ApiController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     RecommendationRepository recommendationRepository;
 
+    @Autowired
+    RecommendationWorkloadService recommendationWorkloadService;
+
     @ApiOperation(value = "List all recommendations")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -45,12 +64,31 @@ public class RecommendationController extends ApiController {
     @ApiOperation(value = "Get a single recommendation")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public Recommendation getById(
+    public ResponseEntity<Recommendation> getById(
             @ApiParam("id") @RequestParam Long id) {
         Recommendation recommendation = recommendationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
 
-        return recommendation;
+        return withETag(recommendation, recommendation.getVersion());
+    }
+
+    @ApiOperation(value = "List a professor's recommendations that are not done yet, soonest deadline first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/pending")
+    public Page<Recommendation> pendingRecommendations(
+            @ApiParam("professorEmail (defaults to the current user's email)") @RequestParam(required = false) String professorEmail,
+            @ApiParam("page number, starting from 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("page size, at most " + MAX_PAGE_SIZE) @RequestParam(defaultValue = "20") int size) {
+        String email = professorEmail != null ? professorEmail : getCurrentUser().getUser().getEmail();
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE));
+        return recommendationRepository.findByProfessorEmailAndDoneFalseOrderByDateNeededAsc(email, pageable);
+    }
+
+    @ApiOperation(value = "Count each professor's pending, overdue and done recommendations")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/workload")
+    public List<ProfessorWorkload> workloads() {
+        return recommendationWorkloadService.getWorkloads();
     }
 
     @ApiOperation(value = "Create a new recommendation")
@@ -78,6 +116,7 @@ public class RecommendationController extends ApiController {
         recommendation.setDone(done);
 
         Recommendation savedRecommendation = recommendationRepository.save(recommendation);
+        recommendationWorkloadService.refresh(professorEmail);
 
         return savedRecommendation;
     }
@@ -87,23 +126,51 @@ public class RecommendationController extends ApiController {
     @DeleteMapping("")
     public Object deleteRecommendation(
             @ApiParam("id") @RequestParam Long id) {
-        Recommendation recommendation = recommendationRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
-
-        recommendationRepository.delete(recommendation);
+        if (recommendationRepository.deleteByIdReturningCount(id) == 0) {
+            throw new EntityNotFoundException(Recommendation.class, id);
+        }
+        recommendationWorkloadService.invalidateAll();
         return genericMessage("Recommendation with id %s deleted".formatted(id));
     }
 
+    @ApiOperation(value = "Delete several recommendations at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteRecommendationBulk(
+            @ApiParam("ids, comma separated") @RequestParam Set<Long> ids) {
+        int deleted = ids.isEmpty() ? 0 : recommendationRepository.deleteByIdIn(ids);
+        if (deleted > 0) {
+            recommendationWorkloadService.invalidateAll();
+        }
+        return genericMessage("Deleted %d of %d Recommendation records".formatted(deleted, ids.size()));
+    }
+
     @ApiOperation(value = "Update a single recommendation")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public Recommendation updateRecommendation(
+    public ResponseEntity<Recommendation> updateRecommendation(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the Recommendation has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid Recommendation incoming) {
 
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (recommendationRepository.updateIfVersionMatches(id, version, incoming) == 0) {
+                if (!recommendationRepository.existsById(id)) {
+                    throw new EntityNotFoundException(Recommendation.class, id);
+                }
+                throw new VersionConflictException(Recommendation.class, id, version);
+            }
+            Recommendation updated = recommendationRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
+            // the previous professorEmail wasn't read, so we can't tell whose counts changed
+            recommendationWorkloadService.invalidateAll();
+            return withETag(updated, updated.getVersion());
+        }
+
         Recommendation recommendation = recommendationRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
-
+        String previousProfessorEmail = recommendation.getProfessorEmail();
 
         recommendation.setRequesterEmail(incoming.getRequesterEmail());  
         recommendation.setProfessorEmail(incoming.getProfessorEmail());
@@ -112,7 +179,32 @@ public class RecommendationController extends ApiController {
         recommendation.setDateNeeded(incoming.getDateNeeded());
         recommendation.setDone(incoming.getDone());
         recommendationRepository.save(recommendation);
+        recommendationWorkloadService.refresh(previousProfessorEmail, recommendation.getProfessorEmail());
 
-        return recommendation;
+        return ResponseEntity.ok(recommendation);
+    }
+
+    @ApiOperation(value = "Update only the fields present in the body of a single recommendation (JSON merge patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<Recommendation> patchRecommendation(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the Recommendation has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        Recommendation recommendation = recommendationRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(Recommendation.class, id));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != recommendation.getVersion()) {
+            throw new VersionConflictException(Recommendation.class, id, version);
+        }
+
+        String previousProfessorEmail = recommendation.getProfessorEmail();
+        applyMergePatch(recommendation, patch, "id");
+        Recommendation saved = recommendationRepository.save(recommendation);
+        recommendationWorkloadService.refresh(previousProfessorEmail, saved.getProfessorEmail());
+
+        return withETag(saved, saved.getVersion());
     }
-}  
+}
@@ -2,7 +2,9 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.UCSBDateCalendarService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
@@ -10,21 +12,31 @@ import lombok.extern.slf4j.Slf4j;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
 
 @Api(description = "UCSBDates")
 @RequestMapping("/api/ucsbdates")
@@ -32,9 +44,16 @@ import java.time.LocalDateTime;
 @Slf4j
 public class UCSBDatesController extends ApiController {
 
+    private static final int MAX_UPCOMING_DAYS = 366;
+
     @Autowired
     UCSBDateRepository ucsbDateRepository;
 
+    @Autowired
+    UCSBDateCalendarService ucsbDateCalendarService;
+
+    Clock clock = Clock.systemDefaultZone();
+
     @ApiOperation(value = "List all ucsb dates")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -46,19 +65,65 @@ public class UCSBDatesController extends ApiController {
     @ApiOperation(value = "Get a single date")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDate getById(
+    public ResponseEntity<UCSBDate> getById(
             @ApiParam("id") @RequestParam Long id) {
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
-        return ucsbDate;
+        return withETag(ucsbDate, ucsbDate.getVersion());
     }
 
-    @ApiOperation(value = "Create a new date")
+    @ApiOperation(value = "List the dates between start and end (inclusive), earliest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/range")
+    public List<UCSBDate> datesInRange(
+            @ApiParam("start (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam("start") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @ApiParam("end (in iso format, e.g. YYYY-mm-ddTHH:MM:SS)") @RequestParam("end") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end) {
+        return ucsbDateRepository.findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(start, end);
+    }
+
+    @ApiOperation(value = "List the dates in quarters from through to (inclusive), in date order")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/quarters")
+    public List<UCSBDate> datesInQuarters(
+            @ApiParam("first quarter, in YYYYQ format (e.g. 20214)") @RequestParam String from,
+            @ApiParam("last quarter, in YYYYQ format (e.g. 20223)") @RequestParam String to) {
+        return ucsbDateRepository.findAllByQuarterBetweenOrderByQuarterAscLocalDateTimeAsc(
+                UCSBDate.quarterNumber(from), UCSBDate.quarterNumber(to));
+    }
+
+    @ApiOperation(value = "List the dates in the next N days, earliest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/upcoming")
+    public List<UCSBDate> upcomingDates(
+            @ApiParam("days, at most " + MAX_UPCOMING_DAYS) @RequestParam(defaultValue = "30") int days) {
+        LocalDateTime now = LocalDateTime.now(clock);
+        return ucsbDateRepository.findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(
+                now, now.plusDays(Math.min(Math.max(days, 0), MAX_UPCOMING_DAYS)));
+    }
+
+    // No @PreAuthorize: calendar apps subscribe to this URL without logging in.
+    @ApiOperation(value = "iCalendar feed of recent and upcoming dates")
+    @GetMapping(value = "/calendar.ics", produces = UCSBDateCalendarService.MEDIA_TYPE)
+    public ResponseEntity<String> calendarFeed(
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
+        UCSBDateCalendarService.Feed feed = ucsbDateCalendarService.getFeed();
+        if (ifNoneMatchHits(ifNoneMatch, feed.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(feed.getEtag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(feed.getEtag())
+                .contentType(MediaType.parseMediaType(UCSBDateCalendarService.MEDIA_TYPE + ";charset=UTF-8"))
+                .body(feed.getBody());
+    }
+
+    @ApiOperation(value = "Create a new date",
+            notes = "quarterYYYYQ must be a four digit year followed by a quarter 1-4 (e.g. 20224 for Fall 2022); "
+                    + "anything else is rejected with 400 InvalidQuarterException.")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PostMapping("/post")
     public UCSBDate postUCSBDate(
-            @ApiParam("quarterYYYYQ") @RequestParam String quarterYYYYQ,
+            @ApiParam("quarterYYYYQ, e.g. 20224 for Fall 2022") @RequestParam String quarterYYYYQ,
             @ApiParam("name") @RequestParam String name,
             @ApiParam("date (in iso format, e.g. YYYY-mm-ddTHH:MM:SS; see https://en.wikipedia.org/wiki/ISO_8601)") @RequestParam("localDateTime") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime localDateTime)
             throws JsonProcessingException {
@@ -67,6 +132,7 @@ public class UCSBDatesController extends ApiController {
         // See: https://www.baeldung.com/spring-date-parameters
 
         log.info("localDateTime={}", localDateTime);
+        UCSBDate.quarterNumber(quarterYYYYQ); // reject anything that isn't YYYYQ
 
         UCSBDate ucsbDate = new UCSBDate();
         ucsbDate.setQuarterYYYYQ(quarterYYYYQ);
@@ -74,6 +140,7 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(localDateTime);
 
         UCSBDate savedUcsbDate = ucsbDateRepository.save(ucsbDate);
+        ucsbDateCalendarService.invalidate();
 
         return savedUcsbDate;
     }
@@ -83,20 +150,51 @@ public class UCSBDatesController extends ApiController {
     @DeleteMapping("")
     public Object deleteUCSBDate(
             @ApiParam("id") @RequestParam Long id) {
-        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
-
-        ucsbDateRepository.delete(ucsbDate);
+        if (ucsbDateRepository.deleteByIdReturningCount(id) == 0) {
+            throw new EntityNotFoundException(UCSBDate.class, id);
+        }
+        ucsbDateCalendarService.invalidate();
         return genericMessage("UCSBDate with id %s deleted".formatted(id));
     }
 
-    @ApiOperation(value = "Update a single date")
+    @ApiOperation(value = "Delete several dates at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteUCSBDateBulk(
+            @ApiParam("ids, comma separated") @RequestParam Set<Long> ids) {
+        int deleted = ids.isEmpty() ? 0 : ucsbDateRepository.deleteByIdIn(ids);
+        if (deleted > 0) {
+            ucsbDateCalendarService.invalidate();
+        }
+        return genericMessage("Deleted %d of %d UCSBDate records".formatted(deleted, ids.size()));
+    }
+
+    @ApiOperation(value = "Update a single date",
+            notes = "The body's quarterYYYYQ must be YYYYQ with Q in 1-4, or the update is rejected with 400 "
+                    + "InvalidQuarterException.")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDate updateUCSBDate(
+    public ResponseEntity<UCSBDate> updateUCSBDate(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBDate has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBDate incoming) {
 
+        UCSBDate.quarterNumber(incoming.getQuarterYYYYQ());
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (ucsbDateRepository.updateIfVersionMatches(id, version, incoming) == 0) {
+                if (!ucsbDateRepository.existsById(id)) {
+                    throw new EntityNotFoundException(UCSBDate.class, id);
+                }
+                throw new VersionConflictException(UCSBDate.class, id, version);
+            }
+            UCSBDate updated = ucsbDateRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+            ucsbDateCalendarService.invalidate();
+            return withETag(updated, updated.getVersion());
+        }
+
         UCSBDate ucsbDate = ucsbDateRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
 
@@ -105,7 +203,35 @@ public class UCSBDatesController extends ApiController {
         ucsbDate.setLocalDateTime(incoming.getLocalDateTime());
 
         ucsbDateRepository.save(ucsbDate);
+        ucsbDateCalendarService.invalidate();
+
+        return ResponseEntity.ok(ucsbDate);
+    }
+
+    @ApiOperation(value = "Update only the fields present in the body of a single date (JSON merge patch)",
+            notes = "The quarterYYYYQ after the patch must be YYYYQ with Q in 1-4, so a date stored before this was "
+                    + "checked must have its quarter corrected in the same patch; otherwise the result is 400 "
+                    + "InvalidQuarterException.")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<UCSBDate> patchUCSBDate(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBDate has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        UCSBDate ucsbDate = ucsbDateRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(UCSBDate.class, id));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != ucsbDate.getVersion()) {
+            throw new VersionConflictException(UCSBDate.class, id, version);
+        }
+
+        applyMergePatch(ucsbDate, patch, "id", "quarter");
+        UCSBDate.quarterNumber(ucsbDate.getQuarterYYYYQ());
+        UCSBDate saved = ucsbDateRepository.save(ucsbDate);
+        ucsbDateCalendarService.invalidate();
 
-        return ucsbDate;
+        return withETag(saved, saved.getVersion());
     }
 }
@@ -2,25 +2,39 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
+import edu.ucsb.cs156.example.models.CommonsDistance;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsLocationService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import javax.validation.Valid;
 
+import java.util.List;
+import java.util.Set;
+
 
 @Api(description = "UCSBDiningCommons")
 @RequestMapping("/api/ucsbdiningcommons")
@@ -28,9 +42,14 @@ import javax.validation.Valid;
 @Slf4j
 public class UCSBDiningCommonsController extends ApiController {
 
+    private static final int MAX_NEAREST = 20;
+
     @Autowired
     UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
 
+    @Autowired
+    UCSBDiningCommonsLocationService ucsbDiningCommonsLocationService;
+
     @ApiOperation(value = "List all ucsb dining commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -42,12 +61,41 @@ public class UCSBDiningCommonsController extends ApiController {
     @ApiOperation(value = "Get a single commons")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommons getById(
+    public ResponseEntity<UCSBDiningCommons> getById(
             @ApiParam("code") @RequestParam String code) {
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
-        return commons;
+        return withETag(commons, commons.getVersion());
+    }
+
+    @ApiOperation(value = "List the commons nearest to a point, closest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/nearest")
+    public List<CommonsDistance> nearestCommons(
+            @ApiParam("latitude") @RequestParam double latitude,
+            @ApiParam("longitude") @RequestParam double longitude,
+            @ApiParam("how many commons to return, at most " + MAX_NEAREST) @RequestParam(defaultValue = "1") int count) {
+        checkCoordinates(latitude, longitude);
+        return ucsbDiningCommonsLocationService.nearest(latitude, longitude, Math.min(Math.max(count, 1), MAX_NEAREST));
+    }
+
+    @ApiOperation(value = "List the commons within a radius of a point, closest first")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/within")
+    public List<CommonsDistance> commonsWithin(
+            @ApiParam("latitude") @RequestParam double latitude,
+            @ApiParam("longitude") @RequestParam double longitude,
+            @ApiParam("radius in meters") @RequestParam double radiusMeters) {
+        checkCoordinates(latitude, longitude);
+        return ucsbDiningCommonsLocationService.within(latitude, longitude, radiusMeters);
+    }
+
+    private void checkCoordinates(double latitude, double longitude) {
+        if (!(latitude >= -90 && latitude <= 90 && longitude >= -180 && longitude <= 180)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "latitude must be in [-90, 90] and longitude in [-180, 180]");
+        }
     }
 
     @ApiOperation(value = "Create a new commons")
@@ -74,6 +122,7 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(longitude);
 
         UCSBDiningCommons savedCommons = ucsbDiningCommonsRepository.save(commons);
+        ucsbDiningCommonsLocationService.invalidate();
 
         return savedCommons;
     }
@@ -83,20 +132,47 @@ public class UCSBDiningCommonsController extends ApiController {
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("code") @RequestParam String code) {
-        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
-
-        ucsbDiningCommonsRepository.delete(commons);
+        if (ucsbDiningCommonsRepository.deleteByIdReturningCount(code) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+        }
+        ucsbDiningCommonsLocationService.invalidate();
         return genericMessage("UCSBDiningCommons with id %s deleted".formatted(code));
     }
 
+    @ApiOperation(value = "Delete several commons at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteCommonsBulk(
+            @ApiParam("codes, comma separated") @RequestParam Set<String> codes) {
+        int deleted = codes.isEmpty() ? 0 : ucsbDiningCommonsRepository.deleteByIdIn(codes);
+        if (deleted > 0) {
+            ucsbDiningCommonsLocationService.invalidate();
+        }
+        return genericMessage("Deleted %d of %d UCSBDiningCommons records".formatted(deleted, codes.size()));
+    }
+
     @ApiOperation(value = "Update a single commons")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDiningCommons updateCommons(
+    public ResponseEntity<UCSBDiningCommons> updateCommons(
             @ApiParam("code") @RequestParam String code,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBDiningCommons has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBDiningCommons incoming) {
 
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (ucsbDiningCommonsRepository.updateIfVersionMatches(code, version, incoming) == 0) {
+                if (!ucsbDiningCommonsRepository.existsById(code)) {
+                    throw new EntityNotFoundException(UCSBDiningCommons.class, code);
+                }
+                throw new VersionConflictException(UCSBDiningCommons.class, code, version);
+            }
+            UCSBDiningCommons updated = ucsbDiningCommonsRepository.findById(code)
+                    .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+            ucsbDiningCommonsLocationService.invalidate();
+            return withETag(updated, updated.getVersion());
+        }
+
         UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
 
@@ -109,7 +185,31 @@ public class UCSBDiningCommonsController extends ApiController {
         commons.setLongitude(incoming.getLongitude());
 
         ucsbDiningCommonsRepository.save(commons);
+        ucsbDiningCommonsLocationService.invalidate();
 
-        return commons;
+        return ResponseEntity.ok(commons);
+    }
+
+    @ApiOperation(value = "Update only the fields present in the body of a single commons (JSON merge patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<UCSBDiningCommons> patchCommons(
+            @ApiParam("code") @RequestParam String code,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBDiningCommons has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        UCSBDiningCommons commons = ucsbDiningCommonsRepository.findById(code)
+                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommons.class, code));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != commons.getVersion()) {
+            throw new VersionConflictException(UCSBDiningCommons.class, code, version);
+        }
+
+        applyMergePatch(commons, patch, "code");
+        UCSBDiningCommons saved = ucsbDiningCommonsRepository.save(commons);
+        ucsbDiningCommonsLocationService.invalidate();
+
+        return withETag(saved, saved.getVersion());
     }
 }
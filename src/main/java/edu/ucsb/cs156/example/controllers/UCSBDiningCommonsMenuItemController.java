@@ -2,25 +2,42 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import edu.ucsb.cs156.example.services.DiningCommonsMenuImportService;
+import edu.ucsb.cs156.example.services.DiningCommonsMenuService;
+import edu.ucsb.cs156.example.services.MenuItemAutocompleteService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
 
 @Api(description = "UCSBDiningCommonsMenuItem")
 @RequestMapping("/api/UCSBDiningCommonsMenuItem")
@@ -28,9 +45,20 @@ import javax.validation.Valid;
 @Slf4j
 public class UCSBDiningCommonsMenuItemController extends ApiController {
 
+    private static final int MAX_SUGGESTIONS = 25;
+
     @Autowired
     UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
 
+    @Autowired
+    DiningCommonsMenuService diningCommonsMenuService;
+
+    @Autowired
+    MenuItemAutocompleteService menuItemAutocompleteService;
+
+    @Autowired
+    DiningCommonsMenuImportService diningCommonsMenuImportService;
+
     @ApiOperation(value = "List all the ~very tasty~ ucsb dining commons menu items")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -42,12 +70,48 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     @ApiOperation(value = "Get a single ucsb dining commons menu item")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBDiningCommonsMenuItem getById(
+    public ResponseEntity<UCSBDiningCommonsMenuItem> getById(
             @ApiParam("id") @RequestParam Long id) {
         UCSBDiningCommonsMenuItem menuitems = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
-        return menuitems;
+        return withETag(menuitems, menuitems.getVersion());
+    }
+
+    @ApiOperation(value = "Get the menu for one dining commons, grouped by station")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/menu")
+    public ResponseEntity<String> menuForCommons(
+            @ApiParam("diningCommonsCode") @RequestParam String diningCommonsCode) {
+        String body = diningCommonsMenuService.getMenuJson(diningCommonsCode);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    @ApiOperation(value = "Replace the whole menu for one dining commons from a CSV file with station and name columns",
+            notes = "A menu item is identified by its station and name, so a row either matches an existing item "
+                    + "(unchanged), is new (inserted), or is missing from the file (deleted). updated is always 0.")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PutMapping(value = "/menu", consumes = "text/csv")
+    public BulkWriteResult replaceMenu(
+            @ApiParam("diningCommonsCode") @RequestParam String diningCommonsCode,
+            InputStream csv) {
+        BulkWriteResult result = diningCommonsMenuImportService.replaceMenu(
+                diningCommonsCode, new InputStreamReader(csv, StandardCharsets.UTF_8));
+        if (result.getInserted() + result.getDeleted() > 0) {
+            diningCommonsMenuService.invalidate(diningCommonsCode);
+            menuItemAutocompleteService.invalidate();
+        }
+        return result;
+    }
+
+    @ApiOperation(value = "Suggest menu item names starting with what the user has typed (ignoring case and accents)")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/autocomplete")
+    public List<String> autocomplete(
+            @ApiParam("prefix") @RequestParam String prefix,
+            @ApiParam("only suggest items from this dining commons") @RequestParam(required = false) String diningCommonsCode,
+            @ApiParam("how many names to return, at most " + MAX_SUGGESTIONS) @RequestParam(defaultValue = "10") int limit) {
+        return menuItemAutocompleteService.complete(prefix, diningCommonsCode, Math.min(Math.max(limit, 1), MAX_SUGGESTIONS));
     }
 
     @ApiOperation(value = "Create a new ucsb dining commons menu item")
@@ -66,6 +130,8 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
         menuitem.setStation(station);
 
         UCSBDiningCommonsMenuItem savedMenuItem = ucsbDiningCommonsMenuItemRepository.save(menuitem);
+        diningCommonsMenuService.invalidate(diningCommonsCode);
+        menuItemAutocompleteService.invalidate();
 
         return savedMenuItem;
     }
@@ -75,30 +141,88 @@ public class UCSBDiningCommonsMenuItemController extends ApiController {
     @DeleteMapping("")
     public Object deleteMenuItem(
             @ApiParam("id") @RequestParam Long id) {
-        UCSBDiningCommonsMenuItem menuitem = ucsbDiningCommonsMenuItemRepository.findById(id)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
-
-        ucsbDiningCommonsMenuItemRepository.delete(menuitem);
+        if (ucsbDiningCommonsMenuItemRepository.deleteByIdReturningCount(id) == 0) {
+            throw new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id);
+        }
+        diningCommonsMenuService.invalidateAll();
+        menuItemAutocompleteService.invalidate();
         return genericMessage("UCSBDiningCommonsMenuItem with id %s deleted".formatted(id));
     }
+
+    @ApiOperation(value = "Delete several menu items at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteMenuItemBulk(
+            @ApiParam("ids, comma separated") @RequestParam Set<Long> ids) {
+        int deleted = ids.isEmpty() ? 0 : ucsbDiningCommonsMenuItemRepository.deleteByIdIn(ids);
+        if (deleted > 0) {
+            diningCommonsMenuService.invalidateAll();
+            menuItemAutocompleteService.invalidate();
+        }
+        return genericMessage("Deleted %d of %d UCSBDiningCommonsMenuItem records".formatted(deleted, ids.size()));
+    }
     
     @ApiOperation(value = "Update a single ucsb dining commons menu item")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBDiningCommonsMenuItem updateMenuItem(
+    public ResponseEntity<UCSBDiningCommonsMenuItem> updateMenuItem(
             @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBDiningCommonsMenuItem has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBDiningCommonsMenuItem incoming) {
 
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (ucsbDiningCommonsMenuItemRepository.updateIfVersionMatches(id, version, incoming) == 0) {
+                if (!ucsbDiningCommonsMenuItemRepository.existsById(id)) {
+                    throw new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id);
+                }
+                throw new VersionConflictException(UCSBDiningCommonsMenuItem.class, id, version);
+            }
+            UCSBDiningCommonsMenuItem updated = ucsbDiningCommonsMenuItemRepository.findById(id)
+                    .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+            diningCommonsMenuService.invalidateAll();
+            menuItemAutocompleteService.invalidate();
+            return withETag(updated, updated.getVersion());
+        }
+
         UCSBDiningCommonsMenuItem menuitem = ucsbDiningCommonsMenuItemRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
 
+        String previousCommonsCode = menuitem.getDiningCommonsCode();
 
         menuitem.setDiningCommonsCode(incoming.getDiningCommonsCode());
         menuitem.setName(incoming.getName());
         menuitem.setStation(incoming.getStation());
 
         ucsbDiningCommonsMenuItemRepository.save(menuitem);
+        diningCommonsMenuService.invalidate(previousCommonsCode, menuitem.getDiningCommonsCode());
+        menuItemAutocompleteService.invalidate();
+
+        return ResponseEntity.ok(menuitem);
+    }
+
+    @ApiOperation(value = "Update only the fields present in the body of a single ucsb dining commons menu item (JSON merge patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<UCSBDiningCommonsMenuItem> patchMenuItem(
+            @ApiParam("id") @RequestParam Long id,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBDiningCommonsMenuItem has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        UCSBDiningCommonsMenuItem menuitem = ucsbDiningCommonsMenuItemRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException(UCSBDiningCommonsMenuItem.class, id));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != menuitem.getVersion()) {
+            throw new VersionConflictException(UCSBDiningCommonsMenuItem.class, id, version);
+        }
+
+        String previousCommonsCode = menuitem.getDiningCommonsCode();
+        applyMergePatch(menuitem, patch, "id");
+        UCSBDiningCommonsMenuItem saved = ucsbDiningCommonsMenuItemRepository.save(menuitem);
+        diningCommonsMenuService.invalidate(previousCommonsCode, saved.getDiningCommonsCode());
+        menuItemAutocompleteService.invalidate();
 
-        return menuitem;
+        return withETag(saved, saved.getVersion());
     }
 }
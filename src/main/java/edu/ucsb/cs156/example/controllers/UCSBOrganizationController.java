@@ -2,25 +2,41 @@ package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.errors.VersionConflictException;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.UCSBOrganizationImportService;
+import edu.ucsb.cs156.example.services.UCSBOrganizationSearchService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import lombok.extern.slf4j.Slf4j;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import javax.validation.Valid;
 
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
 
 @Api(description = "UCSBOrganization")
 @RequestMapping("/api/UCSBOrganization")
@@ -28,9 +44,17 @@ import javax.validation.Valid;
 @Slf4j
 public class UCSBOrganizationController extends ApiController {
 
+    private static final int MAX_SEARCH_RESULTS = 25;
+
     @Autowired
     UCSBOrganizationRepository ucsbOrganizationRepository;
 
+    @Autowired
+    UCSBOrganizationSearchService ucsbOrganizationSearchService;
+
+    @Autowired
+    UCSBOrganizationImportService ucsbOrganizationImportService;
+
     @ApiOperation(value = "List all ucsb organization")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("/all")
@@ -42,12 +66,22 @@ public class UCSBOrganizationController extends ApiController {
     @ApiOperation(value = "Get a single organization")
     @PreAuthorize("hasRole('ROLE_USER')")
     @GetMapping("")
-    public UCSBOrganization getById(
+    public ResponseEntity<UCSBOrganization> getById(
             @ApiParam("orgCode") @RequestParam String orgCode) {
         UCSBOrganization organizations = ucsbOrganizationRepository.findById(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
-        return organizations;
+        return withETag(organizations, organizations.getVersion());
+    }
+
+    @ApiOperation(value = "Find organizations whose code or names have words starting with each word typed")
+    @PreAuthorize("hasRole('ROLE_USER')")
+    @GetMapping("/search")
+    public List<UCSBOrganization> searchOrganizations(
+            @ApiParam("q") @RequestParam String q,
+            @ApiParam("includeInactive") @RequestParam(defaultValue = "false") boolean includeInactive,
+            @ApiParam("how many organizations to return, at most " + MAX_SEARCH_RESULTS) @RequestParam(defaultValue = "10") int limit) {
+        return ucsbOrganizationSearchService.search(q, includeInactive, Math.min(Math.max(limit, 1), MAX_SEARCH_RESULTS));
     }
 
     @ApiOperation(value = "Create a new organization")
@@ -68,29 +102,68 @@ public class UCSBOrganizationController extends ApiController {
         org.setInactive(inactive);
 
         UCSBOrganization savedCommons = ucsbOrganizationRepository.save(org);
+        ucsbOrganizationSearchService.rebuild();
 
         return savedCommons;
     }
 
+    @ApiOperation(value = "Insert or update organizations from a CSV file with orgCode, orgTranslationShort, orgTranslation and inactive columns")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public BulkWriteResult importOrganizations(InputStream csv) {
+        BulkWriteResult result = ucsbOrganizationImportService.importCsv(new InputStreamReader(csv, StandardCharsets.UTF_8));
+        if (result.getInserted() + result.getUpdated() > 0) {
+            ucsbOrganizationSearchService.rebuild();
+        }
+        return result;
+    }
+
     @ApiOperation(value = "Delete a UCSBOrganization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @DeleteMapping("")
     public Object deleteCommons(
             @ApiParam("orgCode") @RequestParam String orgCode) {
-        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
-                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
-
-        ucsbOrganizationRepository.delete(org);
+        if (ucsbOrganizationRepository.deleteByIdReturningCount(orgCode) == 0) {
+            throw new EntityNotFoundException(UCSBOrganization.class, orgCode);
+        }
+        ucsbOrganizationSearchService.rebuild();
         return genericMessage("UCSBOrganization with id %s deleted".formatted(orgCode));
     }
 
+    @ApiOperation(value = "Delete several organizations at once")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @DeleteMapping("/bulk")
+    public Object deleteCommonsBulk(
+            @ApiParam("orgCodes, comma separated") @RequestParam Set<String> orgCodes) {
+        int deleted = orgCodes.isEmpty() ? 0 : ucsbOrganizationRepository.deleteByIdIn(orgCodes);
+        if (deleted > 0) {
+            ucsbOrganizationSearchService.rebuild();
+        }
+        return genericMessage("Deleted %d of %d UCSBOrganization records".formatted(deleted, orgCodes.size()));
+    }
+
     @ApiOperation(value = "Update a single organization")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
     @PutMapping("")
-    public UCSBOrganization updateCommons(
+    public ResponseEntity<UCSBOrganization> updateCommons(
             @ApiParam("orgCode") @RequestParam String orgCode,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBOrganization has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
             @RequestBody @Valid UCSBOrganization incoming) {
 
+        Long version = expectedVersion(ifMatch);
+        if (version != null) {
+            if (ucsbOrganizationRepository.updateIfVersionMatches(orgCode, version, incoming) == 0) {
+                if (!ucsbOrganizationRepository.existsById(orgCode)) {
+                    throw new EntityNotFoundException(UCSBOrganization.class, orgCode);
+                }
+                throw new VersionConflictException(UCSBOrganization.class, orgCode, version);
+            }
+            UCSBOrganization updated = ucsbOrganizationRepository.findById(orgCode)
+                    .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
+            ucsbOrganizationSearchService.rebuild();
+            return withETag(updated, updated.getVersion());
+        }
+
         UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
                 .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
 
@@ -99,7 +172,31 @@ public class UCSBOrganizationController extends ApiController {
         org.setInactive(incoming.getInactive());
 
         ucsbOrganizationRepository.save(org);
+        ucsbOrganizationSearchService.rebuild();
+
+        return ResponseEntity.ok(org);
+    }
+
+    @ApiOperation(value = "Update only the fields present in the body of a single organization (JSON merge patch)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @PatchMapping(value = "", consumes = { MERGE_PATCH_JSON_VALUE, MediaType.APPLICATION_JSON_VALUE })
+    public ResponseEntity<UCSBOrganization> patchOrganization(
+            @ApiParam("orgCode") @RequestParam String orgCode,
+            @ApiParam("If-Match: ETag from a previous GET; if the UCSBOrganization has changed since, the update is rejected with 409") @RequestHeader(value = "If-Match", required = false) String ifMatch,
+            @RequestBody JsonNode patch) {
+
+        UCSBOrganization org = ucsbOrganizationRepository.findById(orgCode)
+                .orElseThrow(() -> new EntityNotFoundException(UCSBOrganization.class, orgCode));
+
+        Long version = expectedVersion(ifMatch);
+        if (version != null && version != org.getVersion()) {
+            throw new VersionConflictException(UCSBOrganization.class, orgCode, version);
+        }
+
+        applyMergePatch(org, patch, "orgCode");
+        UCSBOrganization saved = ucsbOrganizationRepository.save(org);
+        ucsbOrganizationSearchService.rebuild();
 
-        return org;
+        return withETag(saved, saved.getVersion());
     }
 }
@@ -1,13 +1,20 @@
 package edu.ucsb.cs156.example.controllers;
 
-import edu.ucsb.cs156.example.entities.User;
-import edu.ucsb.cs156.example.models.CurrentUser;
-import edu.ucsb.cs156.example.services.CurrentUserService;
+import edu.ucsb.cs156.example.models.CurrentUserSnapshot;
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -15,11 +22,27 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api/currentUser")
 @RestController
 public class UserInfoController extends ApiController {
- 
+
+  @Autowired
+  CurrentUserResponseCache currentUserResponseCache;
+
+  // no-cache makes the browser revalidate with If-None-Match each time,
+  // which is answered from the session without reading the database
   @ApiOperation(value = "Get information about current user")
   @PreAuthorize("hasRole('ROLE_USER')")
   @GetMapping("")
-  public CurrentUser getCurrentUser() {
-    return super.getCurrentUser();
+  public ResponseEntity<String> currentUser(
+      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+      HttpServletRequest request) {
+    CurrentUserSnapshot snapshot = currentUserResponseCache.get(request.getSession(false));
+    CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+    if (ifNoneMatchHits(ifNoneMatch, snapshot.getEtag())) {
+      return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).cacheControl(cacheControl).build();
+    }
+    return ResponseEntity.ok()
+        .eTag(snapshot.getEtag())
+        .cacheControl(cacheControl)
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(snapshot.getJson());
   }
 }
@@ -4,21 +4,40 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
 import edu.ucsb.cs156.example.entities.User;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+
+import java.util.Map;
 
 @Api(description="User information (admin only)")
 @RequestMapping("/api/admin/users")
 @RestController
 public class UsersController extends ApiController {
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // sortable fields; the text ones sort on their lower-cased, indexed copies
+    private static final Map<String, String> SORT_PROPERTIES = Map.of(
+            "id", "id",
+            "email", "emailSearch",
+            "fullName", "fullNameSearch",
+            "familyName", "familyNameSearch");
+
     @Autowired
     UserRepository userRepository;
 
@@ -34,4 +53,30 @@ public class UsersController extends ApiController {
         String body = mapper.writeValueAsString(users);
         return ResponseEntity.ok().body(body);
     }
-}
\ No newline at end of file
+
+    @ApiOperation(value = "Get one page of the users whose email, full name or family name starts with q (ignoring case)")
+    @PreAuthorize("hasRole('ROLE_ADMIN')")
+    @GetMapping("/search")
+    public Page<User> searchUsers(
+            @ApiParam("q (omit to list everyone)") @RequestParam(required = false) String q,
+            @ApiParam("page number, starting from 0") @RequestParam(defaultValue = "0") int page,
+            @ApiParam("page size, at most " + MAX_PAGE_SIZE) @RequestParam(defaultValue = "20") int size,
+            @ApiParam("sort by id, email, fullName or familyName") @RequestParam(defaultValue = "email") String sort,
+            @ApiParam("asc or desc") @RequestParam(defaultValue = "asc") String direction) {
+        String property = SORT_PROPERTIES.get(sort);
+        if (property == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "can't sort users by " + sort);
+        }
+        Sort.Direction dir = Sort.Direction.fromOptionalString(direction)
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.BAD_REQUEST, "direction must be asc or desc"));
+        // id breaks ties so that paging through users with the same name is stable
+        Sort order = property.equals("id") ? Sort.by(dir, "id") : Sort.by(dir, property).and(Sort.by("id"));
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), MAX_PAGE_SIZE), order);
+
+        String prefix = User.searchKey(q);
+        if (prefix == null || prefix.isEmpty()) {
+            return userRepository.findAll(pageable);
+        }
+        return userRepository.search(prefix, pageable);
+    }
+}
@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// Solved help requests moved out of helprequests by ArchiveService.
+// Rows are only ever written by a bulk INSERT ... SELECT, so the id is the
+// original request's id rather than a generated one.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "helprequests_archive")
+public class ArchivedHelpRequest {
+  @Id
+  private long id;
+
+  private String requesterEmail;
+  private String teamId;
+  private String tableOrBreakoutRoom;
+  private LocalDateTime requestTime;
+  private String explanation;
+  private boolean solved;
+  private String claimedBy;
+  private LocalDateTime claimedTime;
+  private LocalDateTime solvedTime;
+
+  private LocalDateTime archivedTime;
+}
@@ -5,8 +5,12 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,6 +21,7 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "articles")
+@DynamicUpdate
 public class Articles {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,4 +33,7 @@ public class Articles {
   private String email;
   private LocalDateTime dateAdded;
 
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+package edu.ucsb.cs156.example.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// How many times an in-memory cache has been invalidated, across all
+// instances; see CacheVersionService.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "cacheversion")
+public class CacheVersion {
+  @Id
+  private String name;
+
+  private long version;
+}
@@ -5,8 +5,16 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,6 +25,11 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "helprequests")
+@DynamicUpdate
+@Table(indexes = {
+    @Index(name = "helprequests_queue_idx", columnList = "solved, claimed_by, request_time"),
+    @Index(name = "helprequests_solved_time_idx", columnList = "solved, solved_time")
+})
 public class HelpRequest {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,4 +41,26 @@ public class HelpRequest {
   private LocalDateTime requestTime;
   private String explanation;
   private boolean solved;
+
+  // set by /api/HelpRequest/claim; null while the request is still in the queue
+  private String claimedBy;
+  private LocalDateTime claimedTime;
+
+  // when solved last became true, null while unsolved; ArchiveService ages
+  // solved requests by this rather than by when they were asked
+  private LocalDateTime solvedTime;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
+
+  @PrePersist
+  @PreUpdate
+  void syncSolvedTime() {
+    if (!solved) {
+      solvedTime = null;
+    } else if (solvedTime == null) {
+      solvedTime = LocalDateTime.now();
+    }
+  }
 }
\ No newline at end of file
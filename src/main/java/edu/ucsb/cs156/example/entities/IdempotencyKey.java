@@ -0,0 +1,50 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.Instant;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// A POST made with an Idempotency-Key header, and (once it succeeded) the
+// response to replay when the client retries it. Kept by an IdempotencyStore;
+// the table is only used by JdbcIdempotencyStore, which writes it with SQL.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "idempotencykey")
+@Table(indexes = @Index(name = "idempotencykey_created_idx", columnList = "created_at"))
+public class IdempotencyKey {
+  // hex SHA-256 of the caller's name and their key
+  @Id
+  @Column(length = 64)
+  private String id;
+
+  // hex SHA-256 of the method, path, sorted parameters and body; a retry must match
+  @Column(length = 64)
+  private String fingerprint;
+
+  // null while the first request is still running
+  private Integer status;
+  private String contentType;
+  // the response's IdempotencyFilter.REPLAYED_HEADERS, one "Name:value" per line
+  @Column(length = 4000)
+  private String headers;
+  @Column(length = 1_000_000)
+  private byte[] body;
+
+  private Instant createdAt;
+
+  public boolean completed() {
+    return status != null;
+  }
+}
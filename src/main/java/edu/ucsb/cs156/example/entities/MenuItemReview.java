@@ -5,8 +5,14 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,6 +23,8 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "menuitemreview")
+@DynamicUpdate
+@Table(indexes = @Index(name = "menuitemreview_item_date_idx", columnList = "item_id, date_reviewed, id"))
 public class MenuItemReview {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -27,4 +35,8 @@ public class MenuItemReview {
     private int stars;
     private LocalDateTime dateReviewed;
     private String comments;
+
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private long version;
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.entities;
+
+import java.time.Instant;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+// A personal access token an admin issued for a user's scripts. The token
+// itself is signed and self-contained (see PersonalAccessTokenCodec) and is
+// not stored; this row records who has one and whether it was revoked.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Entity(name = "personalaccesstoken")
+@Table(indexes = @Index(name = "personalaccesstoken_user_idx", columnList = "user_id"))
+public class PersonalAccessToken {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private long id;
+
+  private long userId;
+  private String name;
+  private String createdBy;
+  private Instant createdAt;
+  private Instant expiresAt;
+  private Instant revokedAt;
+}
@@ -6,6 +6,12 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.DynamicUpdate;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +23,8 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "recommendation")
+@DynamicUpdate
+@Table(indexes = @Index(name = "recommendation_pending_idx", columnList = "professor_email, done, date_needed"))
 public class Recommendation {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -28,4 +36,8 @@ public class Recommendation {
   private LocalDateTime dateRequested;
   private LocalDateTime dateNeeded;
   private Boolean done;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
 }
\ No newline at end of file
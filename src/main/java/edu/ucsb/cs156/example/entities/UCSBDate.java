@@ -5,8 +5,18 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 
+import org.hibernate.annotations.DynamicUpdate;
+
+import edu.ucsb.cs156.example.errors.InvalidQuarterException;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,6 +27,11 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdates")
+@DynamicUpdate
+@Table(indexes = {
+    @Index(name = "ucsbdates_local_date_time_idx", columnList = "local_date_time"),
+    @Index(name = "ucsbdates_quarter_idx", columnList = "quarter, local_date_time")
+})
 public class UCSBDate {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -25,4 +40,30 @@ public class UCSBDate {
   private String quarterYYYYQ;
   private String name;  
   private LocalDateTime localDateTime;
+
+  // quarterYYYYQ as a number (e.g. 20222), kept in sync on every save so that
+  // "20214 through 20223" is an index range scan rather than string compares.
+  // Null for legacy rows whose quarterYYYYQ isn't valid.
+  private Integer quarter;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
+
+  @PrePersist
+  @PreUpdate
+  void syncQuarter() {
+    quarter = isValidQuarter(quarterYYYYQ) ? Integer.valueOf(quarterYYYYQ) : null;
+  }
+
+  public static boolean isValidQuarter(String quarterYYYYQ) {
+    return quarterYYYYQ != null && quarterYYYYQ.matches("\\d{4}[1-4]");
+  }
+
+  public static int quarterNumber(String quarterYYYYQ) {
+    if (!isValidQuarter(quarterYYYYQ)) {
+      throw new InvalidQuarterException(quarterYYYYQ);
+    }
+    return Integer.parseInt(quarterYYYYQ);
+  }
 }
\ No newline at end of file
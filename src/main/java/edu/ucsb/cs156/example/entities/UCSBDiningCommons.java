@@ -2,6 +2,10 @@ package edu.ucsb.cs156.example.entities;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
+
+import org.hibernate.annotations.DynamicUpdate;
 
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,6 +17,7 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommons")
+@DynamicUpdate
 public class UCSBDiningCommons {
   @Id
   private String code;
@@ -22,4 +27,8 @@ public class UCSBDiningCommons {
   private boolean hasDiningCam;
   private Double latitude;
   private Double longitude;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
 }
\ No newline at end of file
@@ -5,8 +5,14 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
+import javax.persistence.Index;
+import javax.persistence.Table;
 import javax.persistence.GeneratedValue;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,6 +23,8 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "ucsbdiningcommonsmenuitem")
+@DynamicUpdate
+@Table(indexes = @Index(name = "ucsbdiningcommonsmenuitem_commons_idx", columnList = "dining_commons_code, station, name"))
 public class UCSBDiningCommonsMenuItem {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -24,4 +32,8 @@ public class UCSBDiningCommonsMenuItem {
   private String diningCommonsCode;
   private String name;
   private String station;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
 }
\ No newline at end of file
@@ -5,8 +5,12 @@ import java.time.LocalDateTime;
 import javax.persistence.Entity;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 
+import org.hibernate.annotations.DynamicUpdate;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -17,10 +21,15 @@ import lombok.Builder;
 @NoArgsConstructor
 @Builder
 @Entity(name = "UCSBOrganization")
+@DynamicUpdate
 public class UCSBOrganization {
     @Id
     private String orgCode;
     private String orgTranslationShort;
     private String orgTranslation;
     private boolean inactive;
+
+    @Version
+    @Column(columnDefinition = "bigint default 0")
+    private long version;
 }
\ No newline at end of file
@@ -1,5 +1,9 @@
 package edu.ucsb.cs156.example.entities;
 
+import org.hibernate.annotations.DynamicUpdate;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -7,14 +11,29 @@ import lombok.Builder;
 import lombok.AccessLevel;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Version;
+import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
+import javax.persistence.Index;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+
+import java.time.Instant;
+import java.util.Locale;
 
 @Data
 @AllArgsConstructor
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @Builder
 @Entity(name = "users")
+@DynamicUpdate
+@Table(indexes = {
+  @Index(name = "users_email_search_idx", columnList = "email_search"),
+  @Index(name = "users_full_name_search_idx", columnList = "full_name_search"),
+  @Index(name = "users_family_name_search_idx", columnList = "family_name_search")
+})
 public class User {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -29,4 +48,35 @@ public class User {
   private String locale;
   private String hostedDomain;
   private boolean admin;
+
+  // Lower-cased copies of email and the names, so the admin user search can
+  // match and sort case-insensitively on plain indexed columns.
+  @JsonIgnore
+  private String emailSearch;
+  @JsonIgnore
+  private String fullNameSearch;
+  @JsonIgnore
+  private String familyNameSearch;
+
+  // written in batches by LastSeenTracker, not through this entity
+  @Column(insertable = false, updatable = false)
+  private Instant lastSeen;
+  @Column(insertable = false, updatable = false)
+  private Instant lastLogin;
+
+  @Version
+  @Column(columnDefinition = "bigint default 0")
+  private long version;
+
+  @PrePersist
+  @PreUpdate
+  void syncSearchColumns() {
+    emailSearch = searchKey(email);
+    fullNameSearch = searchKey(fullName);
+    familyNameSearch = searchKey(familyName);
+  }
+
+  public static String searchKey(String text) {
+    return text == null ? null : text.trim().toLowerCase(Locale.ROOT);
+  }
 }
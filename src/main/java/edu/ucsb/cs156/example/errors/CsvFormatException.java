@@ -0,0 +1,7 @@
+package edu.ucsb.cs156.example.errors;
+
+public class CsvFormatException extends RuntimeException {
+  public CsvFormatException(long line, String message) {
+    super("CSV line %d: %s".formatted(line, message));
+  }
+}
@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.errors;
+
+public class InvalidQuarterException extends RuntimeException {
+  public InvalidQuarterException(String quarterYYYYQ) {
+    super("quarterYYYYQ must be a four digit year followed by 1-4 (e.g. 20222 for S22), not %s"
+      .formatted(quarterYYYYQ));
+  }
+}
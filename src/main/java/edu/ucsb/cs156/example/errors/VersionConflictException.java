@@ -0,0 +1,8 @@
+package edu.ucsb.cs156.example.errors;
+
+public class VersionConflictException extends RuntimeException {
+  public VersionConflictException(Class<?> entityType, Object id, long expectedVersion) {
+    super("%s with id %s has been modified since version %d"
+      .formatted(entityType.getSimpleName(), id.toString(), expectedVersion));
+  }
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.time.Instant;
+
+// What a personal access token says about its holder, signed by
+// PersonalAccessTokenCodec. admin is signed in when the token is issued, and
+// only honored while the user is still an admin.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class AccessTokenClaims {
+  private long tokenId;
+  private long userId;
+  private String email;
+  private boolean admin;
+  private Instant expiresAt;
+}
@@ -0,0 +1,22 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// What a bulk import did with the rows it was given: inserted new ones,
+// updated ones whose values differed, left identical ones alone, and (for
+// imports that replace a whole set of rows) deleted the ones not given.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class BulkWriteResult {
+  private int inserted;
+  private int updated;
+  private int unchanged;
+  private int deleted;
+}
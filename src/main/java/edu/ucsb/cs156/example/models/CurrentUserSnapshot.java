@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+// /api/currentUser as last rendered for a session, kept in the session by
+// CurrentUserResponseCache (so it must be Serializable for the JDBC store).
+// principal is the authentication name it was rendered for.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class CurrentUserSnapshot implements Serializable {
+  private String principal;
+  private String json;
+  private String etag;
+  private String roles;
+  private Instant checkedAt;
+}
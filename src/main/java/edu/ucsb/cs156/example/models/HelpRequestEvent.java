@@ -0,0 +1,26 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class HelpRequestEvent {
+  public static final String CREATED = "created";
+  public static final String UPDATED = "updated";
+  public static final String DELETED = "deleted";
+  // sent instead of the dropped events when a subscriber falls behind;
+  // the client should re-fetch /api/HelpRequest/all
+  public static final String RESYNC = "resync";
+
+  private String type;
+  private Long id;
+  private HelpRequest helpRequest;
+}
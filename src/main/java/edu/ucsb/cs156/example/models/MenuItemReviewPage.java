@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.models;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+
+import java.util.List;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// One page of an item's reviews, newest first. nextCursor is passed back as
+// "after" to get the following page, and is null on the last page.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class MenuItemReviewPage {
+  private List<MenuItemReview> reviews;
+  private String nextCursor;
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.models;
+
+import lombok.Data;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import lombok.Builder;
+import lombok.AccessLevel;
+
+// Counts of one professor's recommendation requests; overdue requests are
+// not done and past dateNeeded, and are not also counted as pending.
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@Builder
+public class ProfessorWorkload {
+  private String professorEmail;
+  private Long pending;
+  private Long overdue;
+  private Long done;
+}
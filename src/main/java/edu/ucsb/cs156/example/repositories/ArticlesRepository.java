@@ -2,11 +2,42 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Articles;
 
+import java.util.Collection;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Repository
 public interface ArticlesRepository extends CrudRepository<Articles, Long> {
-  
-}
\ No newline at end of file
+
+  // Applies a PUT in a single statement, only if the row is still at the given version.
+  // Returns the number of rows updated: 0 means the row is missing or was changed by someone else.
+  @Modifying
+  @Transactional
+  @Query("update articles a set "
+      + "a.title = :#{#incoming.title}, "
+      + "a.url = :#{#incoming.url}, "
+      + "a.explanation = :#{#incoming.explanation}, "
+      + "a.email = :#{#incoming.email}, "
+      + "a.dateAdded = :#{#incoming.dateAdded}, "
+      + "a.version = a.version + 1 "
+      + "where a.id = :id and a.version = :version")
+  int updateIfVersionMatches(@Param("id") Long id, @Param("version") long version, @Param("incoming") Articles incoming);
+
+  // Bulk JPQL deletes run as a single DELETE without loading the entity first;
+  // the returned row count tells the caller whether anything was there.
+  @Modifying
+  @Transactional
+  @Query("delete from articles a where a.id = :id")
+  int deleteByIdReturningCount(@Param("id") Long id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from articles a where a.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
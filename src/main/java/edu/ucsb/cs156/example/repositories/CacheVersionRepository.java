@@ -0,0 +1,19 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.CacheVersion;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface CacheVersionRepository extends CrudRepository<CacheVersion, String> {
+
+  @Modifying
+  @Transactional
+  @Query("update cacheversion c set c.version = c.version + 1 where c.name = :name")
+  int increment(@Param("name") String name);
+}
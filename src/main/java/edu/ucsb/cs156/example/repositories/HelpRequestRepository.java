@@ -2,11 +2,89 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.HelpRequest;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Repository
 public interface HelpRequestRepository extends CrudRepository<HelpRequest, Long> {
   //Iterable<HelpRequest> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+
+  // Oldest request still waiting for a TA, locked for the rest of the caller's transaction.
+  // A lock timeout of -2 is Hibernate's SKIP_LOCKED: on Postgres this becomes
+  // "for update skip locked", so concurrent claims each get a different row instead of
+  // queueing up behind one another. H2 has no skip locked and falls back to "for update".
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+  Optional<HelpRequest> findFirstBySolvedFalseAndClaimedByIsNullOrderByRequestTimeAsc();
+
+  @Modifying
+  @Transactional
+  @Query("update helprequests h set "
+      + "h.requesterEmail = :#{#incoming.requesterEmail}, "
+      + "h.teamId = :#{#incoming.teamId}, "
+      + "h.tableOrBreakoutRoom = :#{#incoming.tableOrBreakoutRoom}, "
+      + "h.requestTime = :#{#incoming.requestTime}, "
+      + "h.explanation = :#{#incoming.explanation}, "
+      + "h.solved = :#{#incoming.solved}, "
+      + "h.solvedTime = case when :#{#incoming.solved} = true then coalesce(h.solvedTime, current_timestamp) else null end, "
+      + "h.version = h.version + 1 "
+      + "where h.id = :id and h.version = :version")
+  int updateIfVersionMatches(@Param("id") Long id, @Param("version") long version, @Param("incoming") HelpRequest incoming);
+
+  @Modifying
+  @Transactional
+  @Query("delete from helprequests h where h.id = :id")
+  int deleteByIdReturningCount(@Param("id") Long id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from helprequests h where h.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+  // The rows among ids that still exist, locked for the rest of the caller's transaction:
+  // a concurrent bulk delete of the same ids waits for this one and then finds them gone.
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select h from helprequests h where h.id in :ids")
+  List<HelpRequest> lockAllByIdIn(@Param("ids") Collection<Long> ids);
+
+  // Requests solved before solvedTime existed count as solved now, so they are
+  // kept for a full retention period rather than aged by their request time.
+  @Modifying
+  @Transactional
+  @Query("update helprequests h set h.solvedTime = current_timestamp where h.solved = true and h.solvedTime is null")
+  int stampMissingSolvedTimes();
+
+  // Used by ArchiveService: one batch is locked, copied and then deleted inside
+  // the caller's transaction, so a row is never in both tables or in neither.
+  // Like the claim queue this skips rows that are already locked on Postgres, so
+  // archive jobs running on several instances at once each take different rows.
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+  @Query("select h from helprequests h where h.solved = true and h.solvedTime < :cutoff order by h.id")
+  List<HelpRequest> lockArchivable(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+  @Modifying
+  @Transactional(propagation = Propagation.MANDATORY)
+  @Query(nativeQuery = true, value = "insert into helprequests_archive "
+      + "(id, requester_email, team_id, table_or_breakout_room, request_time, explanation, solved, claimed_by, claimed_time, solved_time, archived_time) "
+      + "select id, requester_email, team_id, table_or_breakout_room, request_time, explanation, solved, claimed_by, claimed_time, solved_time, current_timestamp "
+      + "from helprequests where id in (:ids)")
+  int copyToArchive(@Param("ids") Collection<Long> ids);
+}
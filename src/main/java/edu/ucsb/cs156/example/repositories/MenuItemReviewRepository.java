@@ -2,11 +2,56 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface MenuItemReviewRepository extends CrudRepository<MenuItemReview, Long> {
-  
-}
\ No newline at end of file
+
+  // Keyset pagination over menuitemreview_item_date_idx: each page starts
+  // just after the (dateReviewed, id) of the last row of the previous one, so
+  // later pages cost the same as the first instead of skipping OFFSET rows.
+  // Pass a Pageable of page 0 to limit the row count. Reviews without a date
+  // have no place in the order and are left out.
+  @Query("select m from menuitemreview m where m.itemId = :itemId and m.dateReviewed is not null "
+      + "order by m.dateReviewed desc, m.id desc")
+  List<MenuItemReview> findNewestForItem(@Param("itemId") long itemId, Pageable pageable);
+
+  @Query("select m from menuitemreview m where m.itemId = :itemId and m.dateReviewed is not null "
+      + "and (m.dateReviewed < :date or (m.dateReviewed = :date and m.id < :id)) "
+      + "order by m.dateReviewed desc, m.id desc")
+  List<MenuItemReview> findNewestForItemAfter(@Param("itemId") long itemId, @Param("date") LocalDateTime date,
+      @Param("id") long id, Pageable pageable);
+
+  @Modifying
+  @Transactional
+  @Query("update menuitemreview m set "
+      + "m.itemId = :#{#incoming.itemId}, "
+      + "m.reviewerEmail = :#{#incoming.reviewerEmail}, "
+      + "m.stars = :#{#incoming.stars}, "
+      + "m.comments = :#{#incoming.comments}, "
+      + "m.dateReviewed = :#{#incoming.dateReviewed}, "
+      + "m.version = m.version + 1 "
+      + "where m.id = :id and m.version = :version")
+  int updateIfVersionMatches(@Param("id") Long id, @Param("version") long version, @Param("incoming") MenuItemReview incoming);
+
+  @Modifying
+  @Transactional
+  @Query("delete from menuitemreview m where m.id = :id")
+  int deleteByIdReturningCount(@Param("id") Long id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from menuitemreview m where m.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
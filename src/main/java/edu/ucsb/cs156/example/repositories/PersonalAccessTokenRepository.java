@@ -0,0 +1,23 @@
+package edu.ucsb.cs156.example.repositories;
+
+import edu.ucsb.cs156.example.entities.PersonalAccessToken;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface PersonalAccessTokenRepository extends CrudRepository<PersonalAccessToken, Long> {
+
+  List<PersonalAccessToken> findAllByOrderByIdDesc();
+
+  List<PersonalAccessToken> findByUserIdOrderByIdDesc(long userId);
+
+  // revoked tokens that would otherwise still pass the signature and expiry checks
+  @Query("select t.id from personalaccesstoken t where t.revokedAt is not null and t.expiresAt > :now")
+  List<Long> findRevokedIdsExpiringAfter(@Param("now") Instant now);
+}
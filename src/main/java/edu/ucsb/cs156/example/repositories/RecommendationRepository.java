@@ -1,12 +1,88 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.models.ProfessorWorkload;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Repository
 public interface RecommendationRepository extends CrudRepository<Recommendation, Long>{
-    
+
+  // served by recommendation_pending_idx (professor_email, done, date_needed)
+  Page<Recommendation> findByProfessorEmailAndDoneFalseOrderByDateNeededAsc(String professorEmail, Pageable pageable);
+
+  // Per-professor counts for RecommendationWorkloadService. Every column read
+  // here is in recommendation_pending_idx, so the database can answer these
+  // from the index without touching the table.
+  String WORKLOAD_SELECT = "select new edu.ucsb.cs156.example.models.ProfessorWorkload(r.professorEmail, "
+      + "sum(case when r.done = true then 0 when r.dateNeeded < :now then 0 else 1 end), "
+      + "sum(case when r.done = true then 0 when r.dateNeeded < :now then 1 else 0 end), "
+      + "sum(case when r.done = true then 1 else 0 end)) "
+      + "from recommendation r ";
+
+  @Query(WORKLOAD_SELECT + "group by r.professorEmail")
+  List<ProfessorWorkload> countWorkloads(@Param("now") LocalDateTime now);
+
+  @Query(WORKLOAD_SELECT + "where r.professorEmail = :professorEmail group by r.professorEmail")
+  List<ProfessorWorkload> countWorkload(@Param("professorEmail") String professorEmail, @Param("now") LocalDateTime now);
+
+  // the next time some request becomes overdue, i.e. when the counts above go stale on their own
+  @Query("select min(r.dateNeeded) from recommendation r "
+      + "where (r.done = false or r.done is null) and r.dateNeeded >= :now")
+  Optional<LocalDateTime> findNextDeadlineAfter(@Param("now") LocalDateTime now);
+
+  @Modifying
+  @Transactional
+  @Query("update recommendation r set "
+      + "r.requesterEmail = :#{#incoming.requesterEmail}, "
+      + "r.professorEmail = :#{#incoming.professorEmail}, "
+      + "r.explanation = :#{#incoming.explanation}, "
+      + "r.dateRequested = :#{#incoming.dateRequested}, "
+      + "r.dateNeeded = :#{#incoming.dateNeeded}, "
+      + "r.done = :#{#incoming.done}, "
+      + "r.version = r.version + 1 "
+      + "where r.id = :id and r.version = :version")
+  int updateIfVersionMatches(@Param("id") Long id, @Param("version") long version, @Param("incoming") Recommendation incoming);
+
+  @Modifying
+  @Transactional
+  @Query("delete from recommendation r where r.id = :id")
+  int deleteByIdReturningCount(@Param("id") Long id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from recommendation r where r.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+  // Used by ArchiveService; locked and skipped like HelpRequestRepository.lockArchivable.
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+  @Query("select r from recommendation r where r.done = true and r.dateRequested < :cutoff order by r.id")
+  List<Recommendation> lockArchivable(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+  @Modifying
+  @Transactional(propagation = Propagation.MANDATORY)
+  @Query(nativeQuery = true, value = "insert into recommendation_archive "
+      + "(id, requester_email, professor_email, explanation, date_requested, date_needed, done, archived_time) "
+      + "select id, requester_email, professor_email, explanation, date_requested, date_needed, done, current_timestamp "
+      + "from recommendation where id in (:ids)")
+  int copyToArchive(@Param("ids") Collection<Long> ids);
 }
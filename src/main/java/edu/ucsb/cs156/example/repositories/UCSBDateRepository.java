@@ -2,11 +2,55 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDate;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Repository
 public interface UCSBDateRepository extends CrudRepository<UCSBDate, Long> {
   Iterable<UCSBDate> findAllByQuarterYYYYQ(String quarterYYYYQ);
-}
\ No newline at end of file
+
+  // start and end are both inclusive; served by ucsbdates_local_date_time_idx
+  List<UCSBDate> findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(LocalDateTime start, LocalDateTime end);
+
+  // from and to are both inclusive; served by ucsbdates_quarter_idx
+  List<UCSBDate> findAllByQuarterBetweenOrderByQuarterAscLocalDateTimeAsc(int from, int to);
+
+  // used once per startup by UCSBDateQuarterBackfill for rows saved before the quarter column existed
+  @Query("select distinct u.quarterYYYYQ from ucsbdates u where u.quarter is null and u.quarterYYYYQ is not null")
+  List<String> findQuarterCodesMissingQuarter();
+
+  @Modifying
+  @Transactional
+  @Query("update ucsbdates u set u.quarter = :quarter where u.quarterYYYYQ = :quarterYYYYQ and u.quarter is null")
+  int backfillQuarter(@Param("quarterYYYYQ") String quarterYYYYQ, @Param("quarter") int quarter);
+
+  @Modifying
+  @Transactional
+  @Query("update ucsbdates u set "
+      + "u.quarterYYYYQ = :#{#incoming.quarterYYYYQ}, "
+      + "u.name = :#{#incoming.name}, "
+      + "u.localDateTime = :#{#incoming.localDateTime}, "
+      + "u.quarter = :#{T(edu.ucsb.cs156.example.entities.UCSBDate).quarterNumber(#incoming.quarterYYYYQ)}, "
+      + "u.version = u.version + 1 "
+      + "where u.id = :id and u.version = :version")
+  int updateIfVersionMatches(@Param("id") Long id, @Param("version") long version, @Param("incoming") UCSBDate incoming);
+
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdates u where u.id = :id")
+  int deleteByIdReturningCount(@Param("id") Long id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdates u where u.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
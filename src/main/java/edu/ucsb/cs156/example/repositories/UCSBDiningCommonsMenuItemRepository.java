@@ -2,12 +2,41 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
 
+import java.util.Collection;
+import java.util.List;
+
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Repository
 public interface UCSBDiningCommonsMenuItemRepository extends CrudRepository<UCSBDiningCommonsMenuItem, Long> {
- 
-}
\ No newline at end of file
+
+  // served (including the sort) by ucsbdiningcommonsmenuitem_commons_idx
+  List<UCSBDiningCommonsMenuItem> findAllByDiningCommonsCodeOrderByStationAscNameAsc(String diningCommonsCode);
+
+  @Modifying
+  @Transactional
+  @Query("update ucsbdiningcommonsmenuitem u set "
+      + "u.diningCommonsCode = :#{#incoming.diningCommonsCode}, "
+      + "u.name = :#{#incoming.name}, "
+      + "u.station = :#{#incoming.station}, "
+      + "u.version = u.version + 1 "
+      + "where u.id = :id and u.version = :version")
+  int updateIfVersionMatches(@Param("id") Long id, @Param("version") long version, @Param("incoming") UCSBDiningCommonsMenuItem incoming);
+
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommonsmenuitem u where u.id = :id")
+  int deleteByIdReturningCount(@Param("id") Long id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommonsmenuitem u where u.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<Long> ids);
+}
@@ -2,12 +2,40 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
 
+import java.util.Collection;
+
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Repository
 public interface UCSBDiningCommonsRepository extends CrudRepository<UCSBDiningCommons, String> {
- 
-}
\ No newline at end of file
+
+  @Modifying
+  @Transactional
+  @Query("update ucsbdiningcommons u set "
+      + "u.name = :#{#incoming.name}, "
+      + "u.hasSackMeal = :#{#incoming.hasSackMeal}, "
+      + "u.hasTakeOutMeal = :#{#incoming.hasTakeOutMeal}, "
+      + "u.hasDiningCam = :#{#incoming.hasDiningCam}, "
+      + "u.latitude = :#{#incoming.latitude}, "
+      + "u.longitude = :#{#incoming.longitude}, "
+      + "u.version = u.version + 1 "
+      + "where u.code = :id and u.version = :version")
+  int updateIfVersionMatches(@Param("id") String id, @Param("version") long version, @Param("incoming") UCSBDiningCommons incoming);
+
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommons u where u.code = :id")
+  int deleteByIdReturningCount(@Param("id") String id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from ucsbdiningcommons u where u.code in :ids")
+  int deleteByIdIn(@Param("ids") Collection<String> ids);
+}
@@ -2,12 +2,37 @@ package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
 
+import java.util.Collection;
+
 import org.springframework.beans.propertyeditors.StringArrayPropertyEditor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 
 @Repository
 public interface UCSBOrganizationRepository extends CrudRepository<UCSBOrganization, String> {
- 
-}
\ No newline at end of file
+
+  @Modifying
+  @Transactional
+  @Query("update UCSBOrganization u set "
+      + "u.orgTranslationShort = :#{#incoming.orgTranslationShort}, "
+      + "u.orgTranslation = :#{#incoming.orgTranslation}, "
+      + "u.inactive = :#{#incoming.inactive}, "
+      + "u.version = u.version + 1 "
+      + "where u.orgCode = :id and u.version = :version")
+  int updateIfVersionMatches(@Param("id") String id, @Param("version") long version, @Param("incoming") UCSBOrganization incoming);
+
+  @Modifying
+  @Transactional
+  @Query("delete from UCSBOrganization u where u.orgCode = :id")
+  int deleteByIdReturningCount(@Param("id") String id);
+
+  @Modifying
+  @Transactional
+  @Query("delete from UCSBOrganization u where u.orgCode in :ids")
+  int deleteByIdIn(@Param("ids") Collection<String> ids);
+}
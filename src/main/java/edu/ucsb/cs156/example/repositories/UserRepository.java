@@ -1,12 +1,37 @@
 package edu.ucsb.cs156.example.repositories;
 
 import edu.ucsb.cs156.example.entities.User;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends CrudRepository<User, Long> {
+public interface UserRepository extends PagingAndSortingRepository<User, Long> {
   Optional<User> findByEmail(String email);
+
+  @Query("select u.id from users u where u.admin = true")
+  List<Long> findAdminIds();
+
+  // prefix matches (LIKE 'x%') on the users_*_search_idx columns; prefix must already be a User.searchKey
+  Page<User> findByEmailSearchStartingWithOrFullNameSearchStartingWithOrFamilyNameSearchStartingWith(
+      String emailPrefix, String fullNamePrefix, String familyNamePrefix, Pageable pageable);
+
+  default Page<User> search(String prefix, Pageable pageable) {
+    return findByEmailSearchStartingWithOrFullNameSearchStartingWithOrFamilyNameSearchStartingWith(
+        prefix, prefix, prefix, pageable);
+  }
+
+  // used once per startup by UserSearchBackfill for users saved before the search columns existed
+  @Modifying
+  @Transactional
+  @Query("update users u set u.emailSearch = lower(trim(u.email)), u.fullNameSearch = lower(trim(u.fullName)), "
+      + "u.familyNameSearch = lower(trim(u.familyName)) where u.emailSearch is null and u.email is not null")
+  int backfillSearchColumns();
 }
@@ -0,0 +1,114 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Moves help requests solved more than app.archive.retentionDays ago, and
+// completed recommendations requested before then, into the
+// helprequests_archive and recommendation_archive tables, so the live tables
+// (and their indexes) only hold the current quarter or so.
+//
+// Rows are moved batchSize at a time, each batch in its own short
+// transaction (lock, INSERT ... SELECT, then DELETE by id), so the job never
+// holds locks on a large part of the table while the app is in use. Every
+// instance runs the schedule; the batch query skips rows another instance has
+// locked, so concurrent runs split the work instead of repeating it.
+//
+// Archived help requests leave the live table, so /api/HelpRequest/stream
+// subscribers get a delete for each one once its batch has committed.
+
+@Slf4j
+@Service
+public class ArchiveService {
+
+  @Value("${app.archive.retentionDays:120}")
+  private int retentionDays = 120;
+
+  @Value("${app.archive.batchSize:500}")
+  private int batchSize = 500;
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  RecommendationRepository recommendationRepository;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  @Autowired
+  RecommendationWorkloadService recommendationWorkloadService;
+
+  @Autowired
+  HelpRequestEventService helpRequestEventService;
+
+  @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+  public void archiveOldRows() {
+    LocalDateTime cutoff = LocalDateTime.now().minusDays(retentionDays);
+    int helpRequests = archiveSolvedHelpRequests(cutoff);
+    int recommendations = archiveCompletedRecommendations(cutoff);
+    if (recommendations > 0) {
+      recommendationWorkloadService.invalidateAll();
+    }
+    log.info("archived {} help requests and {} recommendations older than {}", helpRequests, recommendations, cutoff);
+  }
+
+  public int archiveSolvedHelpRequests(LocalDateTime cutoff) {
+    helpRequestRepository.stampMissingSolvedTimes();
+    return moveInBatches(
+        page -> helpRequestRepository.lockArchivable(cutoff, page).stream()
+            .map(HelpRequest::getId).collect(Collectors.toList()),
+        ids -> {
+          helpRequestRepository.copyToArchive(ids);
+          return helpRequestRepository.deleteByIdIn(ids);
+        },
+        ids -> ids.forEach(helpRequestEventService::publishDeleted));
+  }
+
+  public int archiveCompletedRecommendations(LocalDateTime cutoff) {
+    return moveInBatches(
+        page -> recommendationRepository.lockArchivable(cutoff, page).stream()
+            .map(Recommendation::getId).collect(Collectors.toList()),
+        ids -> {
+          recommendationRepository.copyToArchive(ids);
+          return recommendationRepository.deleteByIdIn(ids);
+        },
+        ids -> { });
+  }
+
+  private int moveInBatches(Function<Pageable, List<Long>> nextBatch, ToIntFunction<List<Long>> move,
+      Consumer<List<Long>> afterCommit) {
+    Pageable firstPage = PageRequest.of(0, batchSize);
+    int total = 0;
+    while (true) {
+      // moved rows leave the table, so the next batch is always the first page again
+      List<Long> moved = transactionTemplate.execute(status -> {
+        List<Long> ids = nextBatch.apply(firstPage);
+        return ids.isEmpty() || move.applyAsInt(ids) == 0 ? List.<Long>of() : ids;
+      });
+      if (moved == null || moved.isEmpty()) {
+        return total;
+      }
+      afterCommit.accept(moved);
+      total += moved.size();
+    }
+  }
+}
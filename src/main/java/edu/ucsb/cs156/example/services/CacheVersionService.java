@@ -0,0 +1,102 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.CacheVersion;
+import edu.ucsb.cs156.example.repositories.CacheVersionRepository;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+// Lets the in-memory caches (menus, search indexes, the leaderboard, ...)
+// hear about writes handled by other instances.
+//
+// Each cache has a row in cacheversion that is bumped after every write that
+// invalidates it. Before answering from memory, a cache asks
+// changedElsewhere(), which compares the version this instance last saw with
+// the table, read at most every app.cache.versionPollMillis for all caches
+// at once; so another instance's write reaches this instance's caches within
+// that long. A bump made here, with no one else's in between, isn't a change
+// elsewhere: the cache that made it has already applied the write itself.
+
+@Service
+public class CacheVersionService {
+
+  @Autowired
+  CacheVersionRepository cacheVersionRepository;
+
+  @Value("${app.cache.versionPollMillis:5000}")
+  private long pollMillis = 5000;
+
+  Clock clock = Clock.systemUTC();
+
+  // the version of each cache that this instance's copy reflects
+  private final Map<String, AtomicLong> seen = new ConcurrentHashMap<>();
+
+  private volatile Map<String, Long> versions = Map.of();
+  private volatile Instant polledAt;
+
+  // call once the write has committed
+  public void bump(String cache) {
+    if (cacheVersionRepository.increment(cache) == 0) {
+      try {
+        cacheVersionRepository.save(new CacheVersion(cache, 1));
+      } catch (DataIntegrityViolationException e) {
+        // another instance created the row first
+        cacheVersionRepository.increment(cache);
+      }
+    }
+    long version = cacheVersionRepository.findById(cache).map(CacheVersion::getVersion).orElse(0L);
+    seen(cache).compareAndSet(version - 1, version);
+  }
+
+  // true once for each batch of bumps from elsewhere; the caller should then
+  // throw away what it has
+  public boolean changedElsewhere(String cache) {
+    long version = polledVersions().getOrDefault(cache, 0L);
+    AtomicLong mine = seen(cache);
+    while (true) {
+      long last = mine.get();
+      if (version <= last) {
+        return false;
+      }
+      if (mine.compareAndSet(last, version)) {
+        return true;
+      }
+    }
+  }
+
+  private AtomicLong seen(String cache) {
+    return seen.computeIfAbsent(cache, c -> new AtomicLong());
+  }
+
+  private boolean pollIsDue() {
+    Instant last = polledAt;
+    return last == null || !clock.instant().isBefore(last.plusMillis(pollMillis));
+  }
+
+  private Map<String, Long> polledVersions() {
+    if (pollIsDue()) {
+      poll();
+    }
+    return versions;
+  }
+
+  private synchronized void poll() {
+    if (!pollIsDue()) {
+      return; // another thread polled while we waited for the lock
+    }
+    Instant now = clock.instant();
+    Map<String, Long> next = new HashMap<>();
+    cacheVersionRepository.findAll().forEach(v -> next.put(v.getName(), v.getVersion()));
+    versions = next;
+    polledAt = now;
+  }
+}
@@ -0,0 +1,168 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.CommonsDistance;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// An immutable 3-d tree over dining commons locations.
+//
+// Each latitude/longitude is stored as a point on the unit sphere, so the
+// straight-line (chord) distance between two points grows with their
+// great-circle distance. Nearest-neighbour and radius searches can then use
+// ordinary k-d tree pruning on x/y/z, with no special cases at the poles or
+// the antimeridian. Commons without a location are left out.
+
+class CommonsKdTree {
+
+  static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+  private static final class Node {
+    final UCSBDiningCommons commons;
+    final double[] point;
+    final int axis;
+    Node left;
+    Node right;
+
+    Node(UCSBDiningCommons commons, double[] point, int axis) {
+      this.commons = commons;
+      this.point = point;
+      this.axis = axis;
+    }
+  }
+
+  private static final class Candidate {
+    final Node node;
+    final double chordSquared;
+
+    Candidate(Node node, double chordSquared) {
+      this.node = node;
+      this.chordSquared = chordSquared;
+    }
+  }
+
+  private final Node root;
+  private final int size;
+
+  CommonsKdTree(Iterable<UCSBDiningCommons> commons) {
+    List<Node> nodes = new ArrayList<>();
+    for (UCSBDiningCommons c : commons) {
+      if (c.getLatitude() != null && c.getLongitude() != null) {
+        nodes.add(new Node(c, toUnitVector(c.getLatitude(), c.getLongitude()), 0));
+      }
+    }
+    this.size = nodes.size();
+    this.root = build(nodes, 0);
+  }
+
+  int size() {
+    return size;
+  }
+
+  private static Node build(List<Node> nodes, int depth) {
+    if (nodes.isEmpty()) {
+      return null;
+    }
+    int axis = depth % 3;
+    nodes.sort(Comparator.comparingDouble(n -> n.point[axis]));
+    int median = nodes.size() / 2;
+    Node m = nodes.get(median);
+    Node node = new Node(m.commons, m.point, axis);
+    node.left = build(new ArrayList<>(nodes.subList(0, median)), depth + 1);
+    node.right = build(new ArrayList<>(nodes.subList(median + 1, nodes.size())), depth + 1);
+    return node;
+  }
+
+  List<CommonsDistance> nearest(double latitude, double longitude, int count) {
+    double[] target = toUnitVector(latitude, longitude);
+    // max-heap on distance, so the worst of the best `count` so far is on top
+    PriorityQueue<Candidate> best = new PriorityQueue<>(
+        Comparator.comparingDouble((Candidate c) -> c.chordSquared).reversed());
+    nearest(root, target, count, best);
+
+    List<Candidate> sorted = new ArrayList<>(best);
+    sorted.sort(Comparator.comparingDouble(c -> c.chordSquared));
+    return toResults(sorted);
+  }
+
+  private static void nearest(Node node, double[] target, int count, PriorityQueue<Candidate> best) {
+    if (node == null || count <= 0) {
+      return;
+    }
+    double d = chordSquared(node.point, target);
+    if (best.size() < count) {
+      best.add(new Candidate(node, d));
+    } else if (d < best.peek().chordSquared) {
+      best.poll();
+      best.add(new Candidate(node, d));
+    }
+
+    double diff = target[node.axis] - node.point[node.axis];
+    Node near = diff < 0 ? node.left : node.right;
+    Node far = diff < 0 ? node.right : node.left;
+    nearest(near, target, count, best);
+    if (best.size() < count || diff * diff < best.peek().chordSquared) {
+      nearest(far, target, count, best);
+    }
+  }
+
+  List<CommonsDistance> within(double latitude, double longitude, double radiusMeters) {
+    double[] target = toUnitVector(latitude, longitude);
+    double angle = Math.min(Math.max(radiusMeters, 0) / EARTH_RADIUS_METERS, Math.PI);
+    double chord = 2 * Math.sin(angle / 2);
+
+    List<Candidate> found = new ArrayList<>();
+    within(root, target, chord, found);
+    found.sort(Comparator.comparingDouble(c -> c.chordSquared));
+    return toResults(found);
+  }
+
+  private static void within(Node node, double[] target, double chord, List<Candidate> found) {
+    if (node == null) {
+      return;
+    }
+    double d = chordSquared(node.point, target);
+    if (d <= chord * chord) {
+      found.add(new Candidate(node, d));
+    }
+    double diff = target[node.axis] - node.point[node.axis];
+    if (diff - chord <= 0) {
+      within(node.left, target, chord, found);
+    }
+    if (diff + chord >= 0) {
+      within(node.right, target, chord, found);
+    }
+  }
+
+  private static List<CommonsDistance> toResults(List<Candidate> candidates) {
+    List<CommonsDistance> results = new ArrayList<>(candidates.size());
+    for (Candidate c : candidates) {
+      results.add(new CommonsDistance(c.node.commons, chordToMeters(Math.sqrt(c.chordSquared))));
+    }
+    return results;
+  }
+
+  static double[] toUnitVector(double latitude, double longitude) {
+    double lat = Math.toRadians(latitude);
+    double lon = Math.toRadians(longitude);
+    return new double[] {
+        Math.cos(lat) * Math.cos(lon),
+        Math.cos(lat) * Math.sin(lon),
+        Math.sin(lat)
+    };
+  }
+
+  static double chordToMeters(double chord) {
+    return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, chord / 2));
+  }
+
+  private static double chordSquared(double[] a, double[] b) {
+    double dx = a[0] - b[0];
+    double dy = a[1] - b[1];
+    double dz = a[2] - b[2];
+    return dx * dx + dy * dy + dz * dz;
+  }
+}
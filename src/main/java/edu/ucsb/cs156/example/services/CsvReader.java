@@ -0,0 +1,138 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Reads RFC 4180 CSV one record at a time, so an upload is never held in
+// memory all at once. The first record is the header; each later record is
+// returned as a map from the required column names to their values. Header
+// names are matched ignoring case, extra columns are ignored, and quoted
+// fields may contain commas, doubled quotes and line breaks.
+
+class CsvReader {
+
+  private final BufferedReader in;
+  private final List<String> columns;
+  private final int[] positions;
+  private long line = 1;
+  private long recordLine;
+  private boolean eof;
+
+  CsvReader(Reader reader, List<String> columns) {
+    this.in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    this.columns = columns;
+    this.positions = new int[columns.size()];
+    List<String> header = readRecord();
+    if (header == null) {
+      throw new CsvFormatException(1, "missing header row");
+    }
+    Map<String, Integer> byName = new HashMap<>();
+    for (int i = 0; i < header.size(); i++) {
+      byName.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+    }
+    for (int i = 0; i < columns.size(); i++) {
+      Integer position = byName.get(columns.get(i).toLowerCase(Locale.ROOT));
+      if (position == null) {
+        throw new CsvFormatException(1, "missing column " + columns.get(i));
+      }
+      positions[i] = position;
+    }
+  }
+
+  // the next record, or null after the last one; blank lines are skipped
+  Map<String, String> next() {
+    List<String> fields;
+    do {
+      fields = readRecord();
+      if (fields == null) {
+        return null;
+      }
+    } while (fields.size() == 1 && fields.get(0).isEmpty());
+    Map<String, String> record = new HashMap<>();
+    for (int i = 0; i < columns.size(); i++) {
+      if (positions[i] >= fields.size()) {
+        throw new CsvFormatException(recordLine, "expected at least %d fields, found %d"
+            .formatted(positions[i] + 1, fields.size()));
+      }
+      record.put(columns.get(i), fields.get(positions[i]));
+    }
+    return record;
+  }
+
+  // the line the last record returned by next() started on
+  long lineNumber() {
+    return recordLine;
+  }
+
+  private List<String> readRecord() {
+    if (eof) {
+      return null;
+    }
+    recordLine = line;
+    List<String> fields = new ArrayList<>();
+    StringBuilder field = new StringBuilder();
+    boolean quoted = false;
+    boolean started = false;
+    try {
+      while (true) {
+        int c = in.read();
+        if (c == -1) {
+          if (quoted) {
+            throw new CsvFormatException(recordLine, "unterminated quoted field");
+          }
+          eof = true;
+          if (!started && fields.isEmpty()) {
+            return null;
+          }
+          fields.add(field.toString());
+          return fields;
+        }
+        started = true;
+        if (quoted) {
+          if (c == '"') {
+            in.mark(1);
+            if (in.read() == '"') {
+              field.append('"');
+            } else {
+              in.reset();
+              quoted = false;
+            }
+          } else {
+            if (c == '\n') {
+              line++;
+            }
+            field.append((char) c);
+          }
+        } else if (c == '"' && field.length() == 0) {
+          quoted = true;
+        } else if (c == ',') {
+          fields.add(field.toString());
+          field.setLength(0);
+        } else if (c == '\n' || c == '\r') {
+          if (c == '\r') {
+            in.mark(1);
+            if (in.read() != '\n') {
+              in.reset();
+            }
+          }
+          line++;
+          fields.add(field.toString());
+          return fields;
+        } else {
+          field.append((char) c);
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
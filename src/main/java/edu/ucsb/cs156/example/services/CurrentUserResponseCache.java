@@ -0,0 +1,92 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.CurrentUserSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+import javax.servlet.http.HttpSession;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+// Keeps the rendered /api/currentUser response in the session.
+//
+// The frontend asks for it on every page, and building it reads the users
+// table. The cached copy is served as long as it was rendered for the same
+// principal (a session outlives a login as someone else, see SecurityConfig)
+// and the session's roles are unchanged, re-reading the user every app.currentUser.maxAgeSeconds to
+// notice a change to the admin flag. The ETag is a digest of the whole
+// response except the user's lastSeen, so a changed name or picture gets a
+// new ETag, while lastSeen moving on its own still leaves the browser with
+// 304s.
+
+@Slf4j
+@Service
+public class CurrentUserResponseCache {
+
+  public static final String SESSION_ATTRIBUTE = CurrentUserResponseCache.class.getName();
+
+  @Value("${app.currentUser.maxAgeSeconds:60}")
+  int maxAgeSeconds = 60;
+
+  @Autowired
+  CurrentUserService currentUserService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  Clock clock = Clock.systemUTC();
+
+  // session may be null (e.g. for personal access tokens), in which case nothing is cached
+  public CurrentUserSnapshot get(HttpSession session) {
+    String roles = currentUserService.getRoles().stream()
+        .map(GrantedAuthority::getAuthority)
+        .sorted()
+        .collect(Collectors.joining(","));
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    String principal = authentication == null ? null : authentication.getName();
+    Instant now = clock.instant();
+
+    CurrentUserSnapshot cached = session == null ? null : (CurrentUserSnapshot) session.getAttribute(SESSION_ATTRIBUTE);
+    if (cached != null && Objects.equals(cached.getPrincipal(), principal) && cached.getRoles().equals(roles)
+        && now.isBefore(cached.getCheckedAt().plusSeconds(maxAgeSeconds))) {
+      return cached;
+    }
+
+    CurrentUser currentUser = currentUserService.getCurrentUser();
+    String json;
+    String tagged;
+    try {
+      json = mapper.writeValueAsString(currentUser);
+      JsonNode tree = mapper.valueToTree(currentUser);
+      if (tree.get("user") instanceof ObjectNode) {
+        ((ObjectNode) tree.get("user")).remove("lastSeen");
+      }
+      tagged = mapper.writeValueAsString(tree);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+    String etag = "\"" + DigestUtils.md5DigestAsHex(tagged.getBytes(StandardCharsets.UTF_8)) + "\"";
+    CurrentUserSnapshot snapshot = new CurrentUserSnapshot(principal, json, etag, roles, now);
+    if (session != null) {
+      session.setAttribute(SESSION_ATTRIBUTE, snapshot);
+    }
+    return snapshot;
+  }
+}
@@ -1,6 +1,7 @@
 package edu.ucsb.cs156.example.services;
 
 import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +31,9 @@ public class CurrentUserServiceImpl extends CurrentUserService {
   @Autowired
   GrantedAuthoritiesService grantedAuthoritiesService;
 
+  @Autowired
+  LastSeenTracker lastSeenTracker;
+
   @Value("${app.admin.emails}")
   final private List<String> adminEmails = new ArrayList<String>();
 
@@ -65,6 +69,7 @@ public class CurrentUserServiceImpl extends CurrentUserService {
         u.setAdmin(true);
         userRepository.save(u);
       }
+      lastSeenTracker.seen(u.getId());
       return u;
     }
 
@@ -81,9 +86,22 @@ public class CurrentUserServiceImpl extends CurrentUserService {
         .admin(adminEmails.contains(email))
         .build();
     userRepository.save(u);
+    lastSeenTracker.seen(u.getId());
     return u;
   }
 
+  // Built from the token's signed claims rather than read from the
+  // database, so only id, email and admin are filled in.
+  public User getTokenAuthenticatedUser(PersonalAccessTokenAuthentication authentication) {
+    AccessTokenClaims claims = authentication.getPrincipal();
+    lastSeenTracker.seen(claims.getUserId());
+    return User.builder()
+        .id(claims.getUserId())
+        .email(claims.getEmail())
+        .admin(claims.getAdmin())
+        .build();
+  }
+
   public User getUser() {
     SecurityContext securityContext = SecurityContextHolder.getContext();
     Authentication authentication = securityContext.getAuthentication();
@@ -91,6 +109,9 @@ public class CurrentUserServiceImpl extends CurrentUserService {
     if (authentication instanceof OAuth2AuthenticationToken) {
       return getOAuth2AuthenticatedUser(securityContext, authentication);
     }
+    if (authentication instanceof PersonalAccessTokenAuthentication) {
+      return getTokenAuthenticatedUser((PersonalAccessTokenAuthentication) authentication);
+    }
     return null;
   }
 
@@ -0,0 +1,124 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Replaces one dining commons' whole menu from a CSV with station and name
+// columns.
+//
+// A menu item is identified by its station and name, so rather than deleting
+// the old menu and inserting the new one, the upload is diffed against what
+// is there: items on both keep their rows (and ids), new items are inserted
+// and items no longer listed are deleted. The upload is read a record at a
+// time, inserts and deletes go out as JDBC batches of batchSize, and the
+// whole replacement is one transaction, so readers see the old menu or the
+// new one and never a mix.
+
+@Slf4j
+@Service
+public class DiningCommonsMenuImportService {
+
+  static final List<String> COLUMNS = List.of("station", "name");
+
+  private static final String SELECT = "select id, station, name from ucsbdiningcommonsmenuitem "
+      + "where dining_commons_code = :diningCommonsCode";
+
+  private static final String INSERT = "insert into ucsbdiningcommonsmenuitem "
+      + "(dining_commons_code, station, name, version) values (:diningCommonsCode, :station, :name, 0)";
+
+  private static final String DELETE = "delete from ucsbdiningcommonsmenuitem where id in (:ids)";
+
+  @Value("${app.import.batchSize:500}")
+  int batchSize = 500;
+
+  @Autowired
+  NamedParameterJdbcTemplate jdbcTemplate;
+
+  private static String key(String station, String name) {
+    return station + "\n" + name;
+  }
+
+  @Transactional
+  public BulkWriteResult replaceMenu(String diningCommonsCode, Reader csv) {
+    // station + name -> ids of the rows already on the menu (normally one)
+    Map<String, Deque<Long>> existing = new HashMap<>();
+    jdbcTemplate.query(SELECT, Map.of("diningCommonsCode", diningCommonsCode), rs -> {
+      existing.computeIfAbsent(key(rs.getString("station"), rs.getString("name")), k -> new ArrayDeque<>())
+          .add(rs.getLong("id"));
+    });
+
+    CsvReader reader = new CsvReader(csv, COLUMNS);
+    Set<String> seen = new HashSet<>();
+    List<SqlParameterSource> inserts = new ArrayList<>();
+    int inserted = 0;
+    int unchanged = 0;
+    Map<String, String> record;
+    while ((record = reader.next()) != null) {
+      String station = record.get("station").trim();
+      String name = record.get("name").trim();
+      if (name.isEmpty()) {
+        throw new CsvFormatException(reader.lineNumber(), "name is empty");
+      }
+      String key = key(station, name);
+      if (!seen.add(key)) {
+        continue;
+      }
+      Deque<Long> ids = existing.get(key);
+      if (ids != null) {
+        // keep one row; any duplicates of it are deleted with the dropped items
+        ids.pop();
+        if (ids.isEmpty()) {
+          existing.remove(key);
+        }
+        unchanged++;
+        continue;
+      }
+      inserts.add(new MapSqlParameterSource()
+          .addValue("diningCommonsCode", diningCommonsCode)
+          .addValue("station", station)
+          .addValue("name", name));
+      inserted++;
+      if (inserts.size() >= batchSize) {
+        insertBatch(inserts);
+      }
+    }
+    insertBatch(inserts);
+
+    List<Long> dropped = new ArrayList<>();
+    existing.values().forEach(dropped::addAll);
+    for (int from = 0; from < dropped.size(); from += batchSize) {
+      jdbcTemplate.update(DELETE, Map.of("ids", dropped.subList(from, Math.min(from + batchSize, dropped.size()))));
+    }
+
+    // station and name are the whole item, so there is nothing to update in place
+    BulkWriteResult result = new BulkWriteResult(inserted, 0, unchanged, dropped.size());
+    log.info("replaced menu for {}: {}", diningCommonsCode, result);
+    return result;
+  }
+
+  private void insertBatch(List<SqlParameterSource> inserts) {
+    if (!inserts.isEmpty()) {
+      jdbcTemplate.batchUpdate(INSERT, inserts.toArray(new SqlParameterSource[0]));
+      inserts.clear();
+    }
+  }
+}
@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.StationMenu;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// Serves each dining commons' menu, grouped by station, as JSON text that is
+// built once and then reused until a menu item write invalidates it.
+//
+// Invalidation removes the entry from a ConcurrentHashMap, which waits for any
+// computeIfAbsent that is building the same entry, so a menu read from the
+// database before a write can't outlive that write's invalidate().
+//
+// Writes made through other instances are picked up through
+// CacheVersionService; since it doesn't say which commons changed, every
+// cached menu is dropped.
+
+@Slf4j
+@Service
+public class DiningCommonsMenuService {
+
+  static final String CACHE = "dining-commons-menus";
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  CacheVersionService cacheVersionService;
+
+  @Autowired
+  ObjectMapper mapper;
+
+  private final Map<String, String> menus = new ConcurrentHashMap<>();
+
+  public String getMenuJson(String diningCommonsCode) {
+    if (cacheVersionService.changedElsewhere(CACHE)) {
+      menus.clear();
+    }
+    String cached = menus.get(diningCommonsCode);
+    if (cached != null) {
+      return cached;
+    }
+    // an empty menu maps to null, which computeIfAbsent doesn't store, so
+    // requests for made-up codes can't grow the map
+    String json = menus.computeIfAbsent(diningCommonsCode, code -> {
+      List<StationMenu> stations = loadMenu(code);
+      return stations.isEmpty() ? null : toJson(stations);
+    });
+    return json != null ? json : "[]";
+  }
+
+  public void invalidate(String... diningCommonsCodes) {
+    for (String code : diningCommonsCodes) {
+      if (code != null) {
+        menus.remove(code);
+      }
+    }
+    cacheVersionService.bump(CACHE);
+  }
+
+  public void invalidateAll() {
+    menus.clear();
+    cacheVersionService.bump(CACHE);
+  }
+
+  List<StationMenu> loadMenu(String diningCommonsCode) {
+    Map<String, List<UCSBDiningCommonsMenuItem>> byStation = new LinkedHashMap<>();
+    for (UCSBDiningCommonsMenuItem item : ucsbDiningCommonsMenuItemRepository
+        .findAllByDiningCommonsCodeOrderByStationAscNameAsc(diningCommonsCode)) {
+      byStation.computeIfAbsent(item.getStation(), s -> new ArrayList<>()).add(item);
+    }
+    List<StationMenu> stations = new ArrayList<>(byStation.size());
+    byStation.forEach((station, items) -> stations.add(new StationMenu(station, items)));
+    return stations;
+  }
+
+  private String toJson(List<StationMenu> stations) {
+    try {
+      return mapper.writeValueAsString(stations);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Hands the oldest unsolved, unclaimed help request to a TA.
+//
+// The claim runs in its own transaction: the locking query keeps the row to
+// this TA until the commit (on Postgres other TAs skip the locked row rather
+// than wait for it). Subscribers are only told about the claim once that
+// transaction has committed, so they never see one that was rolled back.
+
+@Service
+public class HelpRequestClaimService {
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  HelpRequestEventService helpRequestEventService;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  Clock clock = Clock.systemDefaultZone();
+
+  public Optional<HelpRequest> claimNext(String claimedBy) {
+    HelpRequest claimed = transactionTemplate.execute(status -> {
+      Optional<HelpRequest> next = helpRequestRepository.findFirstBySolvedFalseAndClaimedByIsNullOrderByRequestTimeAsc();
+      if (next.isEmpty()) {
+        return null;
+      }
+      HelpRequest helpRequest = next.get();
+      helpRequest.setClaimedBy(claimedBy);
+      helpRequest.setClaimedTime(LocalDateTime.now(clock));
+      return helpRequestRepository.save(helpRequest);
+    });
+    if (claimed == null) {
+      return Optional.empty();
+    }
+    helpRequestEventService.publishUpdated(claimed);
+    return Optional.of(claimed);
+  }
+}
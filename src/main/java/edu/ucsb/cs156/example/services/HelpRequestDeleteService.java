@@ -0,0 +1,49 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+// Deletes several help requests at once and tells subscribers about each one.
+//
+// The rows are locked and then deleted in one transaction, so when two admins
+// delete overlapping sets, each id is deleted, counted and published by exactly
+// one of them. As with claims, nothing is published until the commit.
+
+@Service
+public class HelpRequestDeleteService {
+
+  @Autowired
+  HelpRequestRepository helpRequestRepository;
+
+  @Autowired
+  HelpRequestEventService helpRequestEventService;
+
+  @Autowired
+  TransactionTemplate transactionTemplate;
+
+  // Returns the ids that this call deleted.
+  public List<Long> deleteAll(Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+    List<Long> deleted = transactionTemplate.execute(status -> {
+      List<Long> existing = helpRequestRepository.lockAllByIdIn(ids).stream()
+          .map(HelpRequest::getId)
+          .collect(Collectors.toList());
+      if (!existing.isEmpty()) {
+        helpRequestRepository.deleteByIdIn(existing);
+      }
+      return existing;
+    });
+    deleted.forEach(helpRequestEventService::publishDeleted);
+    return deleted;
+  }
+}
@@ -0,0 +1,140 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.HelpRequestEvent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+// Fans out help request changes to server-sent event subscribers.
+//
+// Each subscriber has its own bounded queue that is drained on the task
+// executor, so a slow client never blocks the request that made the change.
+// When a queue fills up, its pending events are replaced by a single
+// "resync" event and the client re-fetches the full list instead.
+
+@Slf4j
+@Service("helpRequestEvents")
+public class HelpRequestEventService {
+
+  @Value("${app.helpRequestStream.bufferSize:64}")
+  private int bufferSize = 64;
+
+  @Value("${app.helpRequestStream.timeoutMillis:1800000}")
+  private long timeoutMillis = 1800000L;
+
+  @Autowired
+  @Qualifier("applicationTaskExecutor")
+  Executor executor;
+
+  private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+  static class Subscriber {
+    final SseEmitter emitter;
+    final BlockingQueue<HelpRequestEvent> queue;
+    final AtomicBoolean draining = new AtomicBoolean(false);
+
+    Subscriber(SseEmitter emitter, int bufferSize) {
+      this.emitter = emitter;
+      this.queue = new ArrayBlockingQueue<>(bufferSize);
+    }
+  }
+
+  public SseEmitter subscribe() {
+    return register(new SseEmitter(timeoutMillis)).emitter;
+  }
+
+  Subscriber register(SseEmitter emitter) {
+    Subscriber subscriber = new Subscriber(emitter, bufferSize);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(() -> subscribers.remove(subscriber));
+    emitter.onError(e -> subscribers.remove(subscriber));
+    subscribers.add(subscriber);
+    return subscriber;
+  }
+
+  public int getSubscriberCount() {
+    return subscribers.size();
+  }
+
+  public void publishCreated(HelpRequest helpRequest) {
+    publish(HelpRequestEvent.builder()
+        .type(HelpRequestEvent.CREATED)
+        .id(helpRequest.getId())
+        .helpRequest(helpRequest)
+        .build());
+  }
+
+  public void publishUpdated(HelpRequest helpRequest) {
+    publish(HelpRequestEvent.builder()
+        .type(HelpRequestEvent.UPDATED)
+        .id(helpRequest.getId())
+        .helpRequest(helpRequest)
+        .build());
+  }
+
+  public void publishDeleted(long id) {
+    publish(HelpRequestEvent.builder()
+        .type(HelpRequestEvent.DELETED)
+        .id(id)
+        .build());
+  }
+
+  void publish(HelpRequestEvent event) {
+    for (Subscriber subscriber : subscribers) {
+      enqueue(subscriber, event);
+      drain(subscriber);
+    }
+  }
+
+  // Publishers hold the subscriber's lock while queueing, so no other event can
+  // slip in between clearing the queue and offering RESYNC; the drainer only
+  // takes from the queue and doesn't need it.
+  private void enqueue(Subscriber subscriber, HelpRequestEvent event) {
+    synchronized (subscriber) {
+      if (subscriber.queue.offer(event)) {
+        return;
+      }
+      log.info("help request subscriber fell behind; dropping {} queued events", subscriber.queue.size());
+      subscriber.queue.clear();
+      subscriber.queue.offer(HelpRequestEvent.builder().type(HelpRequestEvent.RESYNC).build());
+    }
+  }
+
+  private void drain(Subscriber subscriber) {
+    if (!subscriber.draining.compareAndSet(false, true)) {
+      return;
+    }
+    executor.execute(() -> {
+      try {
+        HelpRequestEvent event;
+        while ((event = subscriber.queue.poll()) != null) {
+          subscriber.emitter.send(SseEmitter.event().name(event.getType()).data(event));
+        }
+      } catch (IOException | IllegalStateException e) {
+        log.info("dropping help request subscriber: {}", e.getMessage());
+        subscribers.remove(subscriber);
+        subscriber.queue.clear();
+        subscriber.emitter.completeWithError(e);
+      } finally {
+        subscriber.draining.set(false);
+      }
+      // an event may have been queued after the last poll but before draining was reset
+      if (!subscriber.queue.isEmpty() && subscribers.contains(subscriber)) {
+        drain(subscriber);
+      }
+    });
+  }
+}
@@ -0,0 +1,21 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.IdempotencyKey;
+
+// Where IdempotencyFilter remembers the POSTs it has seen, for
+// app.idempotency.ttlMinutes. See InMemoryIdempotencyStore and
+// JdbcIdempotencyStore.
+
+public interface IdempotencyStore {
+
+  // Records a new request under key.id and returns null, so the caller goes
+  // ahead with it; if the key is already taken, returns what is stored
+  // for it instead.
+  IdempotencyKey claim(IdempotencyKey key);
+
+  // stores the response of a claimed request
+  void complete(IdempotencyKey key);
+
+  // forgets a claimed request that didn't succeed, so it can be retried
+  void release(String id);
+}
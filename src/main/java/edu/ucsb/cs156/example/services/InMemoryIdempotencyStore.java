@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.IdempotencyKey;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Keeps idempotency keys in this process, oldest first, dropping them after
+// ttl or once there are more than maxEntries. Retries that reach another
+// instance aren't recognized; use JdbcIdempotencyStore when running several.
+
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+  private final Duration ttl;
+  private final int maxEntries;
+
+  Clock clock = Clock.systemUTC();
+
+  // in insertion order, which (with one ttl for all) is also expiry order
+  private final LinkedHashMap<String, IdempotencyKey> keys = new LinkedHashMap<>() {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, IdempotencyKey> eldest) {
+      return size() > maxEntries;
+    }
+  };
+
+  public InMemoryIdempotencyStore(Duration ttl, int maxEntries) {
+    this.ttl = ttl;
+    this.maxEntries = maxEntries;
+  }
+
+  @Override
+  public synchronized IdempotencyKey claim(IdempotencyKey key) {
+    Instant expired = clock.instant().minus(ttl);
+    Iterator<IdempotencyKey> oldest = keys.values().iterator();
+    while (oldest.hasNext() && !oldest.next().getCreatedAt().isAfter(expired)) {
+      oldest.remove();
+    }
+    IdempotencyKey existing = keys.get(key.getId());
+    if (existing != null) {
+      return existing;
+    }
+    keys.put(key.getId(), key);
+    return null;
+  }
+
+  @Override
+  public synchronized void complete(IdempotencyKey key) {
+    // replace() keeps the key's place in the order, and does nothing if it was evicted
+    keys.replace(key.getId(), key);
+  }
+
+  @Override
+  public synchronized void release(String id) {
+    keys.remove(id);
+  }
+
+  synchronized int size() {
+    return keys.size();
+  }
+}
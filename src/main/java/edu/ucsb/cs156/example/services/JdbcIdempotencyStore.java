@@ -0,0 +1,105 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.IdempotencyKey;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+// Keeps idempotency keys in the idempotencykey table, so a retry is
+// recognized whichever instance it reaches. The primary key makes claim()
+// atomic across instances: only one INSERT of a key can succeed.
+
+@Slf4j
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+  private static final String INSERT = "insert into idempotencykey (id, fingerprint, created_at) "
+      + "values (:id, :fingerprint, :createdAt)";
+  private static final String SELECT = "select id, fingerprint, status, content_type, headers, body, created_at "
+      + "from idempotencykey where id = :id";
+  private static final String COMPLETE = "update idempotencykey set status = :status, "
+      + "content_type = :contentType, headers = :headers, body = :body where id = :id";
+  private static final String DELETE_EXPIRED = "delete from idempotencykey where created_at <= :expired";
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final Duration ttl;
+
+  Clock clock = Clock.systemUTC();
+
+  public JdbcIdempotencyStore(NamedParameterJdbcTemplate jdbcTemplate, Duration ttl) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.ttl = ttl;
+  }
+
+  @Override
+  public IdempotencyKey claim(IdempotencyKey key) {
+    for (int attempt = 0; attempt < 2; attempt++) {
+      try {
+        jdbcTemplate.update(INSERT, new MapSqlParameterSource("id", key.getId())
+            .addValue("fingerprint", key.getFingerprint())
+            .addValue("createdAt", Timestamp.from(key.getCreatedAt()), Types.TIMESTAMP));
+        return null;
+      } catch (DuplicateKeyException e) {
+        IdempotencyKey existing = find(key.getId());
+        if (existing != null && existing.getCreatedAt().isAfter(clock.instant().minus(ttl))) {
+          return existing;
+        }
+        // expired but not cleaned up yet (or released meanwhile): take it over
+        jdbcTemplate.update("delete from idempotencykey where id = :id and created_at <= :expired",
+            new MapSqlParameterSource("id", key.getId())
+                .addValue("expired", Timestamp.from(clock.instant().minus(ttl)), Types.TIMESTAMP));
+      }
+    }
+    // lost the race twice in a row; report the key as in progress so the client tries again
+    IdempotencyKey existing = find(key.getId());
+    return existing != null ? existing : IdempotencyKey.builder()
+        .id(key.getId()).fingerprint(key.getFingerprint()).createdAt(key.getCreatedAt()).build();
+  }
+
+  @Override
+  public void complete(IdempotencyKey key) {
+    jdbcTemplate.update(COMPLETE, new MapSqlParameterSource("id", key.getId())
+        .addValue("status", key.getStatus())
+        .addValue("contentType", key.getContentType())
+        .addValue("headers", key.getHeaders())
+        .addValue("body", key.getBody(), Types.VARBINARY));
+  }
+
+  @Override
+  public void release(String id) {
+    jdbcTemplate.update("delete from idempotencykey where id = :id and status is null",
+        new MapSqlParameterSource("id", id));
+  }
+
+  @Scheduled(fixedDelayString = "${app.idempotency.cleanupMillis:600000}")
+  public void deleteExpired() {
+    int deleted = jdbcTemplate.update(DELETE_EXPIRED,
+        new MapSqlParameterSource().addValue("expired", Timestamp.from(clock.instant().minus(ttl)), Types.TIMESTAMP));
+    if (deleted > 0) {
+      log.info("deleted {} expired idempotency keys", deleted);
+    }
+  }
+
+  private IdempotencyKey find(String id) {
+    List<IdempotencyKey> found = jdbcTemplate.query(SELECT, new MapSqlParameterSource("id", id),
+        (rs, rowNum) -> IdempotencyKey.builder()
+            .id(rs.getString("id"))
+            .fingerprint(rs.getString("fingerprint"))
+            .status(rs.getObject("status") == null ? null : rs.getInt("status"))
+            .contentType(rs.getString("content_type"))
+            .headers(rs.getString("headers"))
+            .body(rs.getBytes("body"))
+            .createdAt(rs.getTimestamp("created_at").toInstant())
+            .build());
+    return found.isEmpty() ? null : found.get(0);
+  }
+}
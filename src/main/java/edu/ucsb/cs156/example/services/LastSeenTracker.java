@@ -0,0 +1,108 @@
+package edu.ucsb.cs156.example.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Records when each user was last seen (and last logged in) without a write
+// per request.
+//
+// CurrentUserServiceImpl calls seen() every time it resolves the logged-in
+// user, and SecurityConfig calls loggedIn() when an OAuth2 login succeeds;
+// both only update an in-memory map, keeping the latest times per user.
+// flush() writes whatever has accumulated as one JDBC batch of UPDATEs
+// every app.lastSeen.flushMillis, and once more on shutdown, so a
+// busy user costs one UPDATE per interval however many requests they make.
+// The UPDATE never moves a time backwards, so running several instances of
+// the app is safe.
+
+@Slf4j
+@Service
+public class LastSeenTracker {
+
+  private static final String UPDATE = "update users set "
+      + "last_seen = case when last_seen is null or last_seen < :lastSeen then :lastSeen else last_seen end, "
+      + "last_login = case when :lastLogin is null or (last_login is not null and last_login >= :lastLogin) "
+      + "then last_login else :lastLogin end "
+      + "where id = :id";
+
+  @Autowired
+  NamedParameterJdbcTemplate jdbcTemplate;
+
+  Clock clock = Clock.systemUTC();
+
+  private static final class Seen {
+    final Instant lastSeen;
+    final Instant lastLogin;
+
+    Seen(Instant lastSeen, Instant lastLogin) {
+      this.lastSeen = lastSeen;
+      this.lastLogin = lastLogin;
+    }
+
+    Seen merge(Seen other) {
+      return new Seen(later(lastSeen, other.lastSeen), later(lastLogin, other.lastLogin));
+    }
+
+    private static Instant later(Instant a, Instant b) {
+      if (a == null) {
+        return b;
+      }
+      return b == null || a.isAfter(b) ? a : b;
+    }
+  }
+
+  private final Map<Long, Seen> pending = new ConcurrentHashMap<>();
+
+  public void seen(long userId) {
+    pending.merge(userId, new Seen(clock.instant(), null), Seen::merge);
+  }
+
+  public void loggedIn(long userId) {
+    Instant now = clock.instant();
+    pending.merge(userId, new Seen(now, now), Seen::merge);
+  }
+
+  @Scheduled(fixedDelayString = "${app.lastSeen.flushMillis:5000}")
+  @PreDestroy
+  public void flush() {
+    List<SqlParameterSource> updates = new ArrayList<>();
+    for (Long userId : pending.keySet()) {
+      // remove() hands over each entry exactly once; a seen() racing with
+      // this starts a new entry for the next flush
+      Seen seen = pending.remove(userId);
+      if (seen != null) {
+        updates.add(new MapSqlParameterSource()
+            .addValue("id", userId)
+            .addValue("lastSeen", Timestamp.from(seen.lastSeen), Types.TIMESTAMP)
+            .addValue("lastLogin", seen.lastLogin == null ? null : Timestamp.from(seen.lastLogin), Types.TIMESTAMP));
+      }
+    }
+    if (updates.isEmpty()) {
+      return;
+    }
+    try {
+      jdbcTemplate.batchUpdate(UPDATE, updates.toArray(new SqlParameterSource[0]));
+      log.debug("flushed last seen times for {} users", updates.size());
+    } catch (RuntimeException e) {
+      // last seen is a statistic; losing one interval of it isn't worth failing over
+      log.warn("couldn't flush last seen times for {} users", updates.size(), e);
+    }
+  }
+}
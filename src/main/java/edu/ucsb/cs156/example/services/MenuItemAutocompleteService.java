@@ -0,0 +1,85 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// Suggests menu item names as the user types, from an in-memory prefix index
+// instead of a LIKE query per keystroke. UCSBDiningCommonsMenuItemController
+// calls invalidate() after every write; the index is rebuilt on the next lookup.
+// As in UCSBDiningCommonsLocationService, the index remembers the generation
+// it was built in, so one built from rows read before a write is thrown away.
+// Writes made through other instances are picked up through CacheVersionService.
+
+@Slf4j
+@Service
+public class MenuItemAutocompleteService {
+
+  static final String CACHE = "menu-item-names";
+
+  @Autowired
+  UCSBDiningCommonsMenuItemRepository ucsbDiningCommonsMenuItemRepository;
+
+  @Autowired
+  CacheVersionService cacheVersionService;
+
+  private final AtomicLong generation = new AtomicLong();
+  private volatile Built index;
+
+  private static final class Built {
+    final MenuItemNameIndex names;
+    final long generation;
+
+    Built(MenuItemNameIndex names, long generation) {
+      this.names = names;
+      this.generation = generation;
+    }
+  }
+
+  public List<String> complete(String prefix, String diningCommonsCode, int limit) {
+    return currentIndex().complete(prefix, diningCommonsCode, limit);
+  }
+
+  public void invalidate() {
+    drop();
+    cacheVersionService.bump(CACHE);
+  }
+
+  private void drop() {
+    generation.incrementAndGet();
+    index = null;
+  }
+
+  private boolean isStale(Built current) {
+    return current == null || current.generation != generation.get();
+  }
+
+  private MenuItemNameIndex currentIndex() {
+    if (cacheVersionService.changedElsewhere(CACHE)) {
+      drop();
+    }
+    Built current = index;
+    if (isStale(current)) {
+      current = rebuild();
+    }
+    return current.names;
+  }
+
+  private synchronized Built rebuild() {
+    Built current = index;
+    if (!isStale(current)) {
+      return current;
+    }
+    long builtGeneration = generation.get();
+    MenuItemNameIndex names = new MenuItemNameIndex(ucsbDiningCommonsMenuItemRepository.findAll());
+    log.info("built menu item name index with {} names", names.size());
+    Built rebuilt = new Built(names, builtGeneration);
+    index = rebuilt;
+    return rebuilt;
+  }
+}
@@ -0,0 +1,194 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.MenuItemRating;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+// Keeps per-item star totals in memory so the "top dishes" leaderboard never
+// runs an aggregate query over menuitemreview.
+//
+// Totals are kept for all time and per day reviewed; a window of the last N
+// days adds up N day buckets. MenuItemReviewController reports every write
+// with record() or remove(), keyed by review id, so applying the same review
+// twice (or one the startup load already saw) doesn't count it twice.
+// Two updates to one review can commit in one order and reach record() in
+// the other, so each counted review keeps its version and an older one
+// never replaces a newer one.
+// Those writes only reach this instance's totals; writes made through other
+// instances are picked up through CacheVersionService, and the totals are
+// then loaded again from the table.
+
+@Slf4j
+@Service
+public class MenuItemLeaderboardService {
+
+  private static final Comparator<MenuItemRating> RANKING = Comparator
+      .comparingDouble(MenuItemRating::getAverageStars).reversed()
+      .thenComparing(Comparator.comparingLong(MenuItemRating::getReviews).reversed())
+      .thenComparingLong(MenuItemRating::getItemId);
+
+  static final String CACHE = "menu-item-leaderboard";
+
+  @Autowired
+  MenuItemReviewRepository menuItemReviewRepository;
+
+  @Autowired
+  CacheVersionService cacheVersionService;
+
+  Clock clock = Clock.systemDefaultZone();
+
+  private static final class Counted {
+    final long itemId;
+    final int stars;
+    final LocalDate day;
+    final long version;
+
+    Counted(MenuItemReview review) {
+      this.itemId = review.getItemId();
+      this.version = review.getVersion();
+      this.stars = review.getStars();
+      this.day = review.getDateReviewed() == null ? null : review.getDateReviewed().toLocalDate();
+    }
+  }
+
+  private static final class Totals {
+    long reviews;
+    long stars;
+
+    void add(long reviews, long stars) {
+      this.reviews += reviews;
+      this.stars += stars;
+    }
+  }
+
+  private boolean loaded;
+  private final Map<Long, Counted> reviews = new HashMap<>();
+  private final Map<Long, Totals> allTime = new HashMap<>();
+  private final TreeMap<LocalDate, Map<Long, Totals>> byDay = new TreeMap<>();
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void rebuild() {
+    // take in every change made elsewhere so far; the reviews are read after it
+    cacheVersionService.changedElsewhere(CACHE);
+    reviews.clear();
+    allTime.clear();
+    byDay.clear();
+    for (MenuItemReview review : menuItemReviewRepository.findAll()) {
+      add(review.getId(), new Counted(review));
+    }
+    loaded = true;
+    log.info("built menu item leaderboard from {} reviews", reviews.size());
+  }
+
+  // days == null ranks over all time; otherwise over the last days days,
+  // counting today. Items with fewer than minReviews reviews in the window
+  // are left out, so one five-star review doesn't top the board.
+  public List<MenuItemRating> top(Integer days, int limit, int minReviews) {
+    if (cacheVersionService.changedElsewhere(CACHE)) {
+      unload();
+    }
+    return rank(days, limit, minReviews);
+  }
+
+  private synchronized void unload() {
+    loaded = false;
+  }
+
+  private synchronized List<MenuItemRating> rank(Integer days, int limit, int minReviews) {
+    if (!loaded) {
+      rebuild();
+    }
+    List<MenuItemRating> ratings = new ArrayList<>();
+    (days == null ? allTime : window(days)).forEach((itemId, t) -> {
+      if (t.reviews > 0 && t.reviews >= minReviews) {
+        ratings.add(new MenuItemRating(itemId, (double) t.stars / t.reviews, t.reviews));
+      }
+    });
+    ratings.sort(RANKING);
+    return ratings.size() > limit ? new ArrayList<>(ratings.subList(0, limit)) : ratings;
+  }
+
+  private Map<Long, Totals> window(int days) {
+    LocalDate today = LocalDate.now(clock);
+    Map<Long, Totals> totals = new HashMap<>();
+    for (Map<Long, Totals> day : byDay.subMap(today.minusDays(days - 1L), true, today, true).values()) {
+      day.forEach((itemId, t) -> totals.computeIfAbsent(itemId, i -> new Totals()).add(t.reviews, t.stars));
+    }
+    return totals;
+  }
+
+  public void record(MenuItemReview review) {
+    replace(review);
+    cacheVersionService.bump(CACHE);
+  }
+
+  public void remove(long reviewId) {
+    subtract(reviewId);
+    cacheVersionService.bump(CACHE);
+  }
+
+  public void removeAll(Collection<Long> reviewIds) {
+    subtractAll(reviewIds);
+    cacheVersionService.bump(CACHE);
+  }
+
+  private synchronized void replace(MenuItemReview review) {
+    Counted current = reviews.get(review.getId());
+    if (current != null && current.version > review.getVersion()) {
+      return;
+    }
+    subtract(review.getId());
+    add(review.getId(), new Counted(review));
+  }
+
+  private synchronized void subtractAll(Collection<Long> reviewIds) {
+    reviewIds.forEach(this::subtract);
+  }
+
+  private synchronized void subtract(long reviewId) {
+    Counted old = reviews.remove(reviewId);
+    if (old == null) {
+      return;
+    }
+    apply(allTime, old, -1);
+    if (old.day != null) {
+      Map<Long, Totals> day = byDay.get(old.day);
+      apply(day, old, -1);
+      if (day.isEmpty()) {
+        byDay.remove(old.day);
+      }
+    }
+  }
+
+  private void add(long reviewId, Counted review) {
+    reviews.put(reviewId, review);
+    apply(allTime, review, 1);
+    if (review.day != null) {
+      apply(byDay.computeIfAbsent(review.day, d -> new HashMap<>()), review, 1);
+    }
+  }
+
+  private static void apply(Map<Long, Totals> totals, Counted review, int sign) {
+    Totals t = totals.computeIfAbsent(review.itemId, i -> new Totals());
+    t.add(sign, (long) sign * review.stars);
+    if (t.reviews == 0) {
+      totals.remove(review.itemId);
+    }
+  }
+}
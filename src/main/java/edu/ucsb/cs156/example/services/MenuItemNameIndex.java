@@ -0,0 +1,79 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// An immutable prefix index over menu item names.
+//
+// Names are folded to a search key (accents stripped, lower case) and kept in
+// sorted arrays, so the names starting with a prefix are one contiguous run
+// found with a binary search. There is one array for all commons and one per
+// commons code, so filtering by commons doesn't mean skipping over everyone
+// else's dishes. A name appearing on several menus is stored once per array.
+
+class MenuItemNameIndex {
+
+  private static final class Names {
+    final String[] keys;
+    final String[] names;
+
+    Names(TreeMap<String, String> byKey) {
+      this.keys = byKey.keySet().toArray(new String[0]);
+      this.names = byKey.values().toArray(new String[0]);
+    }
+
+    List<String> complete(String prefix, int limit) {
+      int i = Arrays.binarySearch(keys, prefix);
+      if (i < 0) {
+        i = -i - 1;
+      }
+      List<String> result = new ArrayList<>(Math.min(limit, 16));
+      while (i < keys.length && result.size() < limit && keys[i].startsWith(prefix)) {
+        result.add(names[i++]);
+      }
+      return result;
+    }
+  }
+
+  private final Names all;
+  private final Map<String, Names> byCommons;
+
+  MenuItemNameIndex(Iterable<UCSBDiningCommonsMenuItem> items) {
+    TreeMap<String, String> allNames = new TreeMap<>();
+    Map<String, TreeMap<String, String>> commonsNames = new HashMap<>();
+    for (UCSBDiningCommonsMenuItem item : items) {
+      if (item.getName() == null || item.getName().isBlank()) {
+        continue;
+      }
+      String key = SearchText.fold(item.getName());
+      String name = item.getName().trim();
+      allNames.putIfAbsent(key, name);
+      if (item.getDiningCommonsCode() != null) {
+        commonsNames.computeIfAbsent(item.getDiningCommonsCode(), c -> new TreeMap<>()).putIfAbsent(key, name);
+      }
+    }
+    this.all = new Names(allNames);
+    this.byCommons = new HashMap<>();
+    commonsNames.forEach((code, names) -> byCommons.put(code, new Names(names)));
+  }
+
+  // Up to limit distinct names starting with prefix, in search key order.
+  // diningCommonsCode may be null to search every commons.
+  List<String> complete(String prefix, String diningCommonsCode, int limit) {
+    Names names = diningCommonsCode == null ? all : byCommons.get(diningCommonsCode);
+    if (names == null || limit <= 0) {
+      return List.of();
+    }
+    return names.complete(SearchText.fold(prefix), limit);
+  }
+
+  int size() {
+    return all.keys.length;
+  }
+}
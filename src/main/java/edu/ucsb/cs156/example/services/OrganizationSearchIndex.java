@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// An immutable token trie over organizations.
+//
+// Every word of an organization's code, short name and full name is added to
+// the trie, and each trie node records (as a bit set) which organizations have
+// a word starting with that node's prefix. A query matches the organizations
+// that have, for each of its words, some word starting with it, so "comp sci"
+// finds "Computer Science Club". Answering a query is a walk down the trie per
+// query word and an intersection of bit sets, independent of how many
+// organizations there are.
+
+class OrganizationSearchIndex {
+
+  private static final class Node {
+    final Map<Character, Node> children = new HashMap<>();
+    final BitSet orgs = new BitSet();
+  }
+
+  private final Node root = new Node();
+  // in order of folded short name; trie bit i refers to orgs.get(i)
+  private final List<UCSBOrganization> orgs;
+  private final List<String> shortNames;
+
+  OrganizationSearchIndex(Iterable<UCSBOrganization> organizations) {
+    List<UCSBOrganization> sorted = new ArrayList<>();
+    organizations.forEach(sorted::add);
+    sorted.sort(Comparator.comparing((UCSBOrganization o) -> foldedShortName(o))
+        .thenComparing(UCSBOrganization::getOrgCode, Comparator.nullsFirst(Comparator.naturalOrder())));
+    this.orgs = List.copyOf(sorted);
+    this.shortNames = new ArrayList<>(orgs.size());
+    for (int i = 0; i < orgs.size(); i++) {
+      UCSBOrganization org = orgs.get(i);
+      shortNames.add(foldedShortName(org));
+      for (String field : new String[] { org.getOrgCode(), org.getOrgTranslationShort(), org.getOrgTranslation() }) {
+        for (String token : SearchText.tokens(field)) {
+          insert(token, i);
+        }
+      }
+    }
+  }
+
+  private static String foldedShortName(UCSBOrganization org) {
+    return org.getOrgTranslationShort() == null ? "" : SearchText.fold(org.getOrgTranslationShort());
+  }
+
+  private void insert(String token, int org) {
+    Node node = root;
+    for (int i = 0; i < token.length(); i++) {
+      node = node.children.computeIfAbsent(token.charAt(i), c -> new Node());
+      node.orgs.set(org);
+    }
+  }
+
+  // Up to limit organizations matching every word of query. Those whose short
+  // name starts with the whole query come first; otherwise the order is by
+  // short name.
+  List<UCSBOrganization> search(String query, boolean includeInactive, int limit) {
+    List<String> words = SearchText.tokens(query);
+    if (words.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    BitSet matches = null;
+    for (String word : words) {
+      Node node = root;
+      for (int i = 0; i < word.length() && node != null; i++) {
+        node = node.children.get(word.charAt(i));
+      }
+      if (node == null) {
+        return List.of();
+      }
+      if (matches == null) {
+        matches = (BitSet) node.orgs.clone();
+      } else {
+        matches.and(node.orgs);
+      }
+    }
+
+    String folded = SearchText.fold(query);
+    List<UCSBOrganization> leading = new ArrayList<>();
+    List<UCSBOrganization> rest = new ArrayList<>();
+    for (int i = matches.nextSetBit(0); i >= 0 && leading.size() < limit; i = matches.nextSetBit(i + 1)) {
+      UCSBOrganization org = orgs.get(i);
+      if (!includeInactive && org.getInactive()) {
+        continue;
+      }
+      if (shortNames.get(i).startsWith(folded)) {
+        leading.add(org);
+      } else if (rest.size() < limit) {
+        rest.add(org);
+      }
+    }
+    leading.addAll(rest);
+    return leading.size() > limit ? new ArrayList<>(leading.subList(0, limit)) : leading;
+  }
+
+  int size() {
+    return orgs.size();
+  }
+}
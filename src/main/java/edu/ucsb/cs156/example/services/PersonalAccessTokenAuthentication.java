@@ -0,0 +1,53 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+// A request authenticated with a personal access token. It carries the
+// same roles SecurityConfig gives an OAuth2 login, worked out from the
+// token's claims.
+
+public class PersonalAccessTokenAuthentication extends AbstractAuthenticationToken {
+
+  private final AccessTokenClaims claims;
+
+  public PersonalAccessTokenAuthentication(AccessTokenClaims claims) {
+    super(roles(claims));
+    this.claims = claims;
+    setAuthenticated(true);
+  }
+
+  private static List<GrantedAuthority> roles(AccessTokenClaims claims) {
+    List<GrantedAuthority> roles = new ArrayList<>();
+    roles.add(new SimpleGrantedAuthority("ROLE_USER"));
+    if (claims.getEmail().endsWith("@ucsb.edu")) {
+      roles.add(new SimpleGrantedAuthority("ROLE_MEMBER"));
+    }
+    if (claims.getAdmin()) {
+      roles.add(new SimpleGrantedAuthority("ROLE_ADMIN"));
+    }
+    return roles;
+  }
+
+  @Override
+  public AccessTokenClaims getPrincipal() {
+    return claims;
+  }
+
+  // the token itself isn't kept once it has been checked
+  @Override
+  public Object getCredentials() {
+    return null;
+  }
+
+  @Override
+  public String getName() {
+    return claims.getEmail();
+  }
+}
@@ -0,0 +1,154 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.stereotype.Service;
+
+// Signs and checks personal access tokens without touching the database.
+//
+// A token is "pat_" + base64url(claims) + "." + base64url(HMAC-SHA256 of
+// the claims), keyed by app.tokens.secret, which every instance must share.
+// decode() checks the signature, the expiry, and the set of revoked token
+// ids that PersonalAccessTokenService keeps loaded here. The admin claim only
+// holds while the user is still an admin: the service also keeps the ids of
+// current admins here, so demoting a user takes their tokens' admin role away.
+//
+// Without a secret every instance signs with its own random key, which is
+// only allowed in development and tests; elsewhere startup fails.
+
+@Slf4j
+@Service
+public class PersonalAccessTokenCodec {
+
+  public static final String PREFIX = "pat_";
+
+  private static final String ALGORITHM = "HmacSHA256";
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+  @Value("${app.tokens.secret:}")
+  String secret = "";
+
+  @Autowired
+  Environment environment;
+
+  Clock clock = Clock.systemUTC();
+
+  private volatile SecretKeySpec key;
+  private volatile Set<Long> revoked = Set.of();
+  private volatile Set<Long> admins = Set.of();
+
+  private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(() -> {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key());
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  });
+
+  @PostConstruct
+  void checkSecret() {
+    if ((secret == null || secret.isBlank()) && !environment.acceptsProfiles(Profiles.of("development", "test"))) {
+      throw new IllegalStateException("app.tokens.secret (PAT_SECRET) must be set outside development and tests");
+    }
+  }
+
+  public String encode(AccessTokenClaims claims) {
+    String payload = claims.getTokenId() + ":" + claims.getUserId() + ":" + (claims.getAdmin() ? 1 : 0) + ":"
+        + claims.getExpiresAt().getEpochSecond() + ":" + claims.getEmail();
+    byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+    return PREFIX + ENCODER.encodeToString(bytes) + "." + ENCODER.encodeToString(sign(bytes));
+  }
+
+  // the token's claims, or null unless it is genuine, unexpired and not revoked
+  public AccessTokenClaims decode(String token) {
+    if (token == null || !token.startsWith(PREFIX)) {
+      return null;
+    }
+    int dot = token.lastIndexOf('.');
+    if (dot < PREFIX.length()) {
+      return null;
+    }
+    byte[] payload;
+    byte[] signature;
+    try {
+      payload = DECODER.decode(token.substring(PREFIX.length(), dot));
+      signature = DECODER.decode(token.substring(dot + 1));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if (!MessageDigest.isEqual(sign(payload), signature)) {
+      return null;
+    }
+
+    // signed by us, so it has the layout encode() wrote
+    String[] fields = new String(payload, StandardCharsets.UTF_8).split(":", 5);
+    long userId = Long.parseLong(fields[1]);
+    AccessTokenClaims claims = AccessTokenClaims.builder()
+        .tokenId(Long.parseLong(fields[0]))
+        .userId(userId)
+        .admin(fields[2].equals("1") && admins.contains(userId))
+        .expiresAt(Instant.ofEpochSecond(Long.parseLong(fields[3])))
+        .email(fields[4])
+        .build();
+    if (!claims.getExpiresAt().isAfter(clock.instant()) || revoked.contains(claims.getTokenId())) {
+      return null;
+    }
+    return claims;
+  }
+
+  public void setRevoked(Collection<Long> tokenIds) {
+    revoked = Set.copyOf(tokenIds);
+  }
+
+  public void setAdmins(Collection<Long> userIds) {
+    admins = Set.copyOf(userIds);
+  }
+
+  public synchronized void revoke(long tokenId) {
+    Set<Long> updated = new HashSet<>(revoked);
+    updated.add(tokenId);
+    revoked = Set.copyOf(updated);
+  }
+
+  private byte[] sign(byte[] payload) {
+    return macs.get().doFinal(payload);
+  }
+
+  private synchronized SecretKeySpec key() {
+    if (key == null) {
+      byte[] bytes;
+      if (secret == null || secret.isBlank()) {
+        log.warn("app.tokens.secret is not set; personal access tokens will only work on this instance until it restarts");
+        bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+      } else {
+        bytes = secret.getBytes(StandardCharsets.UTF_8);
+      }
+      key = new SecretKeySpec(bytes, ALGORITHM);
+    }
+    return key;
+  }
+}
@@ -0,0 +1,101 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.PersonalAccessToken;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
+import edu.ucsb.cs156.example.models.IssuedAccessToken;
+import edu.ucsb.cs156.example.repositories.PersonalAccessTokenRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+// Issues and revokes personal access tokens, and keeps
+// PersonalAccessTokenCodec's in-memory lists of revoked tokens and of
+// current admins up to date.
+//
+// A revocation takes effect at once on the instance that handled it; the
+// others pick it up from the database within app.tokens.revocationRefreshMillis.
+// A user who is no longer an admin loses the admin role on their tokens
+// within the same interval.
+
+@Slf4j
+@Service
+public class PersonalAccessTokenService {
+
+  @Value("${app.tokens.maxDays:365}")
+  private int maxDays = 365;
+
+  @Autowired
+  PersonalAccessTokenRepository personalAccessTokenRepository;
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  PersonalAccessTokenCodec personalAccessTokenCodec;
+
+  Clock clock = Clock.systemUTC();
+
+  public IssuedAccessToken issue(long userId, String name, int days, String issuedBy) {
+    User user = userRepository.findById(userId)
+        .orElseThrow(() -> new EntityNotFoundException(User.class, userId));
+    Instant now = clock.instant();
+    PersonalAccessToken details = personalAccessTokenRepository.save(PersonalAccessToken.builder()
+        .userId(userId)
+        .name(name)
+        .createdBy(issuedBy)
+        .createdAt(now)
+        .expiresAt(now.plus(Duration.ofDays(Math.min(Math.max(days, 1), maxDays))))
+        .build());
+    String token = personalAccessTokenCodec.encode(AccessTokenClaims.builder()
+        .tokenId(details.getId())
+        .userId(userId)
+        .email(user.getEmail())
+        .admin(user.getAdmin())
+        .expiresAt(details.getExpiresAt())
+        .build());
+    log.info("{} issued personal access token {} for {}", issuedBy, details.getId(), user.getEmail());
+    // the user may have become an admin since the last refresh
+    refresh();
+    return new IssuedAccessToken(token, details);
+  }
+
+  public List<PersonalAccessToken> list(Long userId) {
+    return userId == null
+        ? personalAccessTokenRepository.findAllByOrderByIdDesc()
+        : personalAccessTokenRepository.findByUserIdOrderByIdDesc(userId);
+  }
+
+  // synchronized with refresh(), so a refresh that read the
+  // database just before this save can't drop the new revocation
+  public synchronized PersonalAccessToken revoke(long id) {
+    PersonalAccessToken details = personalAccessTokenRepository.findById(id)
+        .orElseThrow(() -> new EntityNotFoundException(PersonalAccessToken.class, id));
+    if (details.getRevokedAt() == null) {
+      details.setRevokedAt(clock.instant());
+      details = personalAccessTokenRepository.save(details);
+    }
+    personalAccessTokenCodec.revoke(id);
+    return details;
+  }
+
+  // runs before the web server starts taking requests, and then periodically
+  @PostConstruct
+  @Scheduled(fixedDelayString = "${app.tokens.revocationRefreshMillis:30000}")
+  public synchronized void refresh() {
+    personalAccessTokenCodec.setRevoked(personalAccessTokenRepository.findRevokedIdsExpiringAfter(clock.instant()));
+    personalAccessTokenCodec.setAdmins(userRepository.findAdminIds());
+  }
+}
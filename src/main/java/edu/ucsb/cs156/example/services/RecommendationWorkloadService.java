@@ -0,0 +1,115 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.ProfessorWorkload;
+import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// Caches the per-professor pending/overdue/done counts so the dashboard
+// doesn't run a GROUP BY over every recommendation on each request.
+//
+// RecommendationController calls refresh() with the professor(s) a write
+// touched, which re-counts just those rows, or invalidateAll() when it
+// doesn't know whose request changed. Counts also go stale on their own when
+// a pending request's dateNeeded passes; the earliest such deadline is
+// remembered and the next read after it reloads everything. Writes made
+// through other instances reach this one through CacheVersionService, and
+// also reload everything.
+
+@Slf4j
+@Service
+public class RecommendationWorkloadService {
+
+  static final String CACHE = "recommendation-workloads";
+
+  @Autowired
+  RecommendationRepository recommendationRepository;
+
+  @Autowired
+  CacheVersionService cacheVersionService;
+
+  Clock clock = Clock.systemDefaultZone();
+
+  // professorEmail -> counts, sorted by email; replaced, never modified in place
+  private volatile Map<String, ProfessorWorkload> workloads;
+  private volatile LocalDateTime nextDeadline;
+
+  public List<ProfessorWorkload> getWorkloads() {
+    if (cacheVersionService.changedElsewhere(CACHE)) {
+      drop();
+    }
+    Map<String, ProfessorWorkload> current = workloads;
+    if (current == null || deadlinePassed()) {
+      current = reload();
+    }
+    return new ArrayList<>(current.values());
+  }
+
+  public void refresh(String... professorEmails) {
+    recount(professorEmails);
+    cacheVersionService.bump(CACHE);
+  }
+
+  public void invalidateAll() {
+    drop();
+    cacheVersionService.bump(CACHE);
+  }
+
+  private synchronized void recount(String... professorEmails) {
+    if (workloads == null) {
+      return; // the next read reloads everything anyway
+    }
+    if (deadlinePassed()) {
+      workloads = null;
+      return;
+    }
+    LocalDateTime now = LocalDateTime.now(clock);
+    Map<String, ProfessorWorkload> next = new TreeMap<>(workloads);
+    for (String professorEmail : professorEmails) {
+      if (professorEmail == null) {
+        continue;
+      }
+      next.remove(professorEmail);
+      for (ProfessorWorkload w : recommendationRepository.countWorkload(professorEmail, now)) {
+        next.put(w.getProfessorEmail(), w);
+      }
+    }
+    // the write may have added a request that is due sooner than any we knew about
+    nextDeadline = recommendationRepository.findNextDeadlineAfter(now).orElse(null);
+    workloads = Collections.unmodifiableMap(next);
+  }
+
+  private synchronized void drop() {
+    workloads = null;
+  }
+
+  private synchronized Map<String, ProfessorWorkload> reload() {
+    if (workloads != null && !deadlinePassed()) {
+      return workloads; // another thread reloaded while we waited for the lock
+    }
+    LocalDateTime now = LocalDateTime.now(clock);
+    Map<String, ProfessorWorkload> next = new TreeMap<>();
+    for (ProfessorWorkload w : recommendationRepository.countWorkloads(now)) {
+      next.put(w.getProfessorEmail(), w);
+    }
+    nextDeadline = recommendationRepository.findNextDeadlineAfter(now).orElse(null);
+    workloads = Collections.unmodifiableMap(next);
+    log.info("loaded recommendation workloads for {} professors; next deadline {}", next.size(), nextDeadline);
+    return workloads;
+  }
+
+  private boolean deadlinePassed() {
+    LocalDateTime deadline = nextDeadline;
+    return deadline != null && LocalDateTime.now(clock).isAfter(deadline);
+  }
+}
@@ -0,0 +1,38 @@
+package edu.ucsb.cs156.example.services;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Text folding shared by the in-memory search indexes: names and queries are
+// compared with accents stripped and in lower case, so "creme" finds "Crème".
+
+final class SearchText {
+
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern NOT_LETTER_OR_DIGIT = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+  private SearchText() {
+  }
+
+  static String fold(String text) {
+    String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+    return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+  }
+
+  // the folded words of text, split on anything that isn't a letter or digit
+  static List<String> tokens(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+    for (String token : NOT_LETTER_OR_DIGIT.split(fold(text))) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return tokens;
+  }
+}
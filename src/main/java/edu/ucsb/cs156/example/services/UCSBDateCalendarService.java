@@ -0,0 +1,191 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+// Renders the UCSB dates near today as an iCalendar (RFC 5545) feed.
+//
+// Calendar clients poll the feed every few minutes, so the rendered text is
+// kept until a write through UCSBDatesController calls invalidate(), or until
+// it is ttlMinutes old (the window of dates it covers moves with the clock).
+// Each feed remembers the generation it was rendered in; invalidate() bumps
+// the generation, so a render that read the dates before a write committed
+// is never served once that write has invalidated it. Writes made through
+// other instances are picked up through CacheVersionService.
+
+@Slf4j
+@Service
+public class UCSBDateCalendarService {
+
+  public static final String MEDIA_TYPE = "text/calendar";
+
+  static final String CACHE = "ucsbdate-calendar";
+
+  private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+  private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+
+  @Value("${app.calendar.pastDays:30}")
+  private int pastDays = 30;
+
+  @Value("${app.calendar.futureDays:365}")
+  private int futureDays = 365;
+
+  @Value("${app.calendar.ttlMinutes:60}")
+  private int ttlMinutes = 60;
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Autowired
+  CacheVersionService cacheVersionService;
+
+  Clock clock = Clock.systemDefaultZone();
+
+  private final AtomicLong generation = new AtomicLong();
+  private volatile Feed feed;
+
+  public static class Feed {
+    private final String body;
+    private final String etag;
+    private final Instant renderedAt;
+    private final long generation;
+
+    public Feed(String body, Instant renderedAt) {
+      this(body, renderedAt, 0);
+    }
+
+    Feed(String body, Instant renderedAt, long generation) {
+      this.body = body;
+      this.etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+      this.renderedAt = renderedAt;
+      this.generation = generation;
+    }
+
+    public String getBody() {
+      return body;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+  }
+
+  public Feed getFeed() {
+    if (cacheVersionService.changedElsewhere(CACHE)) {
+      drop();
+    }
+    Feed current = feed;
+    if (isStale(current)) {
+      current = render();
+    }
+    return current;
+  }
+
+  public void invalidate() {
+    drop();
+    cacheVersionService.bump(CACHE);
+  }
+
+  private void drop() {
+    generation.incrementAndGet();
+    feed = null;
+  }
+
+  private boolean isStale(Feed f) {
+    return f == null
+        || f.generation != generation.get()
+        || Duration.between(f.renderedAt, clock.instant()).toMinutes() >= ttlMinutes;
+  }
+
+  private synchronized Feed render() {
+    Feed current = feed;
+    if (!isStale(current)) {
+      return current;
+    }
+    long renderedGeneration = generation.get();
+    LocalDateTime now = LocalDateTime.now(clock);
+    List<UCSBDate> dates = ucsbDateRepository.findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(
+        now.minusDays(pastDays), now.plusDays(futureDays));
+    Feed rendered = new Feed(toICalendar(dates, clock.instant()), clock.instant(), renderedGeneration);
+    log.info("rendered calendar feed with {} dates", dates.size());
+    feed = rendered;
+    return rendered;
+  }
+
+  static String toICalendar(List<UCSBDate> dates, Instant stamp) {
+    String dtstamp = DATE_TIME.format(stamp.atOffset(ZoneOffset.UTC)) + "Z";
+    StringBuilder sb = new StringBuilder();
+    line(sb, "BEGIN:VCALENDAR");
+    line(sb, "VERSION:2.0");
+    line(sb, "PRODID:-//UCSB CS156//ucsbdates//EN");
+    line(sb, "CALSCALE:GREGORIAN");
+    line(sb, "X-WR-CALNAME:UCSB Dates");
+    for (UCSBDate date : dates) {
+      line(sb, "BEGIN:VEVENT");
+      line(sb, "UID:ucsbdate-" + date.getId() + "@ucsb-cs156");
+      line(sb, "DTSTAMP:" + dtstamp);
+      LocalDateTime start = date.getLocalDateTime();
+      if (start.toLocalTime().equals(LocalTime.MIDNIGHT)) {
+        // a date with no time of day is an all-day event
+        line(sb, "DTSTART;VALUE=DATE:" + DATE.format(start));
+      } else {
+        // floating time: shown at the same wall-clock time in every time zone
+        line(sb, "DTSTART:" + DATE_TIME.format(start));
+      }
+      line(sb, "SUMMARY:" + escape(date.getName()));
+      line(sb, "DESCRIPTION:" + escape("quarter " + date.getQuarterYYYYQ()));
+      line(sb, "END:VEVENT");
+    }
+    line(sb, "END:VCALENDAR");
+    return sb.toString();
+  }
+
+  static String escape(String text) {
+    if (text == null) {
+      return "";
+    }
+    return text.replace("\\", "\\\\")
+        .replace(";", "\\;")
+        .replace(",", "\\,")
+        .replace("\r\n", "\\n")
+        .replace("\n", "\\n");
+  }
+
+  // RFC 5545 lines end in CRLF and are folded so that no line is longer than
+  // 75 octets of UTF-8, with each continuation line starting with a space.
+  // A fold never splits a character.
+  private static void line(StringBuilder sb, String content) {
+    int octets = 0;
+    for (int i = 0; i < content.length(); ) {
+      int codePoint = content.codePointAt(i);
+      int size = utf8Length(codePoint);
+      if (octets + size > 75) {
+        sb.append("\r\n ");
+        octets = 1;
+      }
+      sb.appendCodePoint(codePoint);
+      octets += size;
+      i += Character.charCount(codePoint);
+    }
+    sb.append("\r\n");
+  }
+
+  private static int utf8Length(int codePoint) {
+    return codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+  }
+}
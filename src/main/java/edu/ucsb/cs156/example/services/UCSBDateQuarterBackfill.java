@@ -0,0 +1,37 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+// Fills in UCSBDate.quarter for rows saved before that column existed.
+//
+// There are only a handful of distinct quarters, so this is one UPDATE per
+// quarter rather than one per row. Once every row is filled in, the startup
+// cost is a single SELECT that returns nothing. Rows whose quarterYYYYQ
+// isn't valid are left null and logged so an admin can fix them.
+
+@Slf4j
+@Component
+public class UCSBDateQuarterBackfill implements ApplicationRunner {
+
+  @Autowired
+  UCSBDateRepository ucsbDateRepository;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    for (String quarterYYYYQ : ucsbDateRepository.findQuarterCodesMissingQuarter()) {
+      if (!UCSBDate.isValidQuarter(quarterYYYYQ)) {
+        log.warn("ucsbdates with quarterYYYYQ={} can't be converted to a numeric quarter", quarterYYYYQ);
+        continue;
+      }
+      int updated = ucsbDateRepository.backfillQuarter(quarterYYYYQ, UCSBDate.quarterNumber(quarterYYYYQ));
+      log.info("backfilled quarter {} on {} ucsbdates", quarterYYYYQ, updated);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.models.CommonsDistance;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// Answers "which commons are near this point" from an in-memory k-d tree
+// instead of scanning ucsbdiningcommons. UCSBDiningCommonsController calls
+// invalidate() after every write; the tree is rebuilt on the next lookup.
+// The tree has no TTL, so it remembers the generation it was built in and
+// is thrown away if an invalidate() came after the rows were read. Writes
+// made through other instances are picked up through CacheVersionService.
+
+@Slf4j
+@Service
+public class UCSBDiningCommonsLocationService {
+
+  static final String CACHE = "dining-commons-locations";
+
+  @Autowired
+  UCSBDiningCommonsRepository ucsbDiningCommonsRepository;
+
+  @Autowired
+  CacheVersionService cacheVersionService;
+
+  private final AtomicLong generation = new AtomicLong();
+  private volatile Index index;
+
+  private static final class Index {
+    final CommonsKdTree tree;
+    final long generation;
+
+    Index(CommonsKdTree tree, long generation) {
+      this.tree = tree;
+      this.generation = generation;
+    }
+  }
+
+  public List<CommonsDistance> nearest(double latitude, double longitude, int count) {
+    return currentTree().nearest(latitude, longitude, count);
+  }
+
+  public List<CommonsDistance> within(double latitude, double longitude, double radiusMeters) {
+    return currentTree().within(latitude, longitude, radiusMeters);
+  }
+
+  public void invalidate() {
+    drop();
+    cacheVersionService.bump(CACHE);
+  }
+
+  private void drop() {
+    generation.incrementAndGet();
+    index = null;
+  }
+
+  private boolean isStale(Index current) {
+    return current == null || current.generation != generation.get();
+  }
+
+  private CommonsKdTree currentTree() {
+    if (cacheVersionService.changedElsewhere(CACHE)) {
+      drop();
+    }
+    Index current = index;
+    if (isStale(current)) {
+      current = rebuild();
+    }
+    return current.tree;
+  }
+
+  private synchronized Index rebuild() {
+    Index current = index;
+    if (!isStale(current)) {
+      return current;
+    }
+    long builtGeneration = generation.get();
+    CommonsKdTree built = new CommonsKdTree(ucsbDiningCommonsRepository.findAll());
+    log.info("built dining commons location index with {} commons", built.size());
+    Index rebuilt = new Index(built, builtGeneration);
+    index = rebuilt;
+    return rebuilt;
+  }
+}
@@ -0,0 +1,177 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Reader;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+// Loads the registrar's organization export: a CSV with orgCode,
+// orgTranslationShort, orgTranslation and inactive columns.
+//
+// The upload is parsed a record at a time and written in batches of
+// batchSize. For each batch the existing rows are read with one IN query, so
+// unchanged rows can be skipped and the rest counted as inserts or updates;
+// the new and changed rows then go to the database as one JDBC batch of
+// upserts (MERGE on H2, INSERT ... ON CONFLICT on Postgres). The whole import
+// is one transaction: a malformed line rolls back everything before it.
+//
+// This goes around JPA on purpose. The rows are never loaded as entities, so
+// the persistence context doesn't grow with the file, and a row listed twice
+// sees its first write when the second batch reads it back.
+
+@Slf4j
+@Service
+public class UCSBOrganizationImportService {
+
+  static final List<String> COLUMNS = List.of("orgCode", "orgTranslationShort", "orgTranslation", "inactive");
+
+  private static final String SELECT = "select org_code, org_translation_short, org_translation, inactive, version "
+      + "from ucsborganization where org_code in (:codes)";
+
+  private static final String MERGE = "merge into ucsborganization "
+      + "(org_code, org_translation_short, org_translation, inactive, version) key (org_code) "
+      + "values (:orgCode, :orgTranslationShort, :orgTranslation, :inactive, :version)";
+
+  private static final String INSERT_ON_CONFLICT = "insert into ucsborganization "
+      + "(org_code, org_translation_short, org_translation, inactive, version) "
+      + "values (:orgCode, :orgTranslationShort, :orgTranslation, :inactive, :version) "
+      + "on conflict (org_code) do update set "
+      + "org_translation_short = excluded.org_translation_short, "
+      + "org_translation = excluded.org_translation, "
+      + "inactive = excluded.inactive, "
+      + "version = excluded.version";
+
+  @Value("${app.import.batchSize:500}")
+  int batchSize = 500;
+
+  @Autowired
+  NamedParameterJdbcTemplate jdbcTemplate;
+
+  private volatile String upsertSql;
+
+  @Transactional
+  public BulkWriteResult importCsv(Reader csv) {
+    CsvReader reader = new CsvReader(csv, COLUMNS);
+    int[] counts = new int[3];
+    // keyed by orgCode so a code listed twice in one batch is written once, last value wins
+    Map<String, UCSBOrganization> batch = new LinkedHashMap<>();
+    Map<String, String> record;
+    while ((record = reader.next()) != null) {
+      UCSBOrganization org = toOrganization(record, reader.lineNumber());
+      batch.remove(org.getOrgCode());
+      batch.put(org.getOrgCode(), org);
+      if (batch.size() >= batchSize) {
+        writeBatch(batch, counts);
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      writeBatch(batch, counts);
+    }
+    BulkWriteResult result = new BulkWriteResult(counts[0], counts[1], counts[2], 0);
+    log.info("imported organizations: {}", result);
+    return result;
+  }
+
+  static UCSBOrganization toOrganization(Map<String, String> record, long line) {
+    String orgCode = record.get("orgCode").trim();
+    if (orgCode.isEmpty()) {
+      throw new CsvFormatException(line, "orgCode is empty");
+    }
+    String inactive = record.get("inactive").trim().toLowerCase(Locale.ROOT);
+    boolean isInactive;
+    if (inactive.equals("true") || inactive.equals("1") || inactive.equals("yes")) {
+      isInactive = true;
+    } else if (inactive.equals("false") || inactive.equals("0") || inactive.equals("no") || inactive.isEmpty()) {
+      isInactive = false;
+    } else {
+      throw new CsvFormatException(line, "inactive must be true or false, not " + record.get("inactive"));
+    }
+    return UCSBOrganization.builder()
+        .orgCode(orgCode)
+        .orgTranslationShort(record.get("orgTranslationShort").trim())
+        .orgTranslation(record.get("orgTranslation").trim())
+        .inactive(isInactive)
+        .build();
+  }
+
+  private void writeBatch(Map<String, UCSBOrganization> batch, int[] counts) {
+    Map<String, UCSBOrganization> existing = new HashMap<>();
+    jdbcTemplate.query(SELECT, Map.of("codes", batch.keySet()), rs -> {
+      existing.put(rs.getString("org_code"), UCSBOrganization.builder()
+          .orgCode(rs.getString("org_code"))
+          .orgTranslationShort(rs.getString("org_translation_short"))
+          .orgTranslation(rs.getString("org_translation"))
+          .inactive(rs.getBoolean("inactive"))
+          .version(rs.getLong("version"))
+          .build());
+    });
+
+    List<SqlParameterSource> upserts = new ArrayList<>();
+    for (UCSBOrganization org : batch.values()) {
+      UCSBOrganization old = existing.get(org.getOrgCode());
+      if (old == null) {
+        counts[0]++;
+        org.setVersion(0);
+      } else if (sameValues(old, org)) {
+        counts[2]++;
+        continue;
+      } else {
+        counts[1]++;
+        org.setVersion(old.getVersion() + 1);
+      }
+      upserts.add(new MapSqlParameterSource()
+          .addValue("orgCode", org.getOrgCode())
+          .addValue("orgTranslationShort", org.getOrgTranslationShort())
+          .addValue("orgTranslation", org.getOrgTranslation())
+          .addValue("inactive", org.getInactive())
+          .addValue("version", org.getVersion()));
+    }
+    if (!upserts.isEmpty()) {
+      jdbcTemplate.batchUpdate(upsertSql(), upserts.toArray(new SqlParameterSource[0]));
+    }
+  }
+
+  static boolean sameValues(UCSBOrganization a, UCSBOrganization b) {
+    return Objects.equals(a.getOrgTranslationShort(), b.getOrgTranslationShort())
+        && Objects.equals(a.getOrgTranslation(), b.getOrgTranslation())
+        && a.getInactive() == b.getInactive();
+  }
+
+  // H2 in development, Postgres in production; each has its own upsert syntax
+  String upsertSql() {
+    String sql = upsertSql;
+    if (sql == null) {
+      String product;
+      try {
+        product = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getJdbcTemplate().getDataSource(),
+            DatabaseMetaData::getDatabaseProductName);
+      } catch (MetaDataAccessException e) {
+        throw new IllegalStateException("can't tell which database is in use", e);
+      }
+      sql = product.toLowerCase(Locale.ROOT).contains("postgres") ? INSERT_ON_CONFLICT : MERGE;
+      upsertSql = sql;
+    }
+    return sql;
+  }
+}
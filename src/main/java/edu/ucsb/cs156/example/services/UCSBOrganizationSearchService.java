@@ -0,0 +1,52 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+// Typeahead search over organization codes and names, answered from an
+// in-memory OrganizationSearchIndex. UCSBOrganizationController calls
+// rebuild() after every write: the new index is built on the side and then
+// swapped in, so searches never see a half-built index or wait for one.
+// Writes made through other instances are picked up through
+// CacheVersionService; the search that notices one builds the new index.
+
+@Slf4j
+@Service
+public class UCSBOrganizationSearchService {
+
+  static final String CACHE = "organization-search";
+
+  @Autowired
+  UCSBOrganizationRepository ucsbOrganizationRepository;
+
+  @Autowired
+  CacheVersionService cacheVersionService;
+
+  private volatile OrganizationSearchIndex index;
+
+  public List<UCSBOrganization> search(String query, boolean includeInactive, int limit) {
+    OrganizationSearchIndex current = index;
+    if (current == null || cacheVersionService.changedElsewhere(CACHE)) {
+      current = build();
+    }
+    return current.search(query, includeInactive, limit);
+  }
+
+  public void rebuild() {
+    build();
+    cacheVersionService.bump(CACHE);
+  }
+
+  private synchronized OrganizationSearchIndex build() {
+    OrganizationSearchIndex built = new OrganizationSearchIndex(ucsbOrganizationRepository.findAll());
+    log.info("built organization search index with {} organizations", built.size());
+    index = built;
+    return built;
+  }
+}
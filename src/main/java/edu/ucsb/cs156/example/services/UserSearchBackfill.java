@@ -0,0 +1,58 @@
+package edu.ucsb.cs156.example.services;
+
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.DatabaseMetaData;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+
+// Fills in the lower-cased search columns on users saved before they existed,
+// with a single UPDATE; after that, User.syncSearchColumns() keeps them current.
+//
+// On Postgres the @Index b-trees on those columns use the database collation,
+// and unless that is "C" they can't serve LIKE 'x%'. So on Postgres this also
+// creates varchar_pattern_ops indexes for the prefix search; H2 needs none.
+
+@Slf4j
+@Component
+public class UserSearchBackfill implements ApplicationRunner {
+
+  static final List<String> POSTGRES_PATTERN_INDEXES = List.of(
+      "create index if not exists users_email_search_pattern_idx on users (email_search varchar_pattern_ops)",
+      "create index if not exists users_full_name_search_pattern_idx on users (full_name_search varchar_pattern_ops)",
+      "create index if not exists users_family_name_search_pattern_idx on users (family_name_search varchar_pattern_ops)");
+
+  @Autowired
+  UserRepository userRepository;
+
+  @Autowired
+  JdbcTemplate jdbcTemplate;
+
+  @Override
+  public void run(ApplicationArguments args) {
+    int updated = userRepository.backfillSearchColumns();
+    if (updated > 0) {
+      log.info("backfilled search columns on {} users", updated);
+    }
+    if (databaseProduct().toLowerCase(Locale.ROOT).contains("postgres")) {
+      POSTGRES_PATTERN_INDEXES.forEach(jdbcTemplate::execute);
+    }
+  }
+
+  String databaseProduct() {
+    try {
+      return JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+    } catch (MetaDataAccessException e) {
+      throw new IllegalStateException("can't tell which database is in use", e);
+    }
+  }
+}
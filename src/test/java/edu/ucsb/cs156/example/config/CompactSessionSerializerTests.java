@@ -0,0 +1,56 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.serializer.support.SerializingConverter;
+
+class CompactSessionSerializerTests {
+
+  private final CompactSessionSerializer serializer = new CompactSessionSerializer(getClass().getClassLoader(), 512);
+
+  @Test
+  void test_small_values_are_plain_java_serialization() {
+    byte[] bytes = serializer.serialize(42);
+
+    assertArrayEquals(new SerializingConverter().convert(42), bytes);
+    assertEquals(42, serializer.deserialize(bytes));
+  }
+
+  @Test
+  void test_large_values_are_compressed_and_round_trip() {
+    ArrayList<Map<String, String>> value = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      value.add(Map.of("email", "user" + i + "@ucsb.edu", "name", "Some Student " + i));
+    }
+    int plainLength = new SerializingConverter().convert(value).length;
+
+    byte[] bytes = serializer.serialize(value);
+
+    assertTrue(bytes.length < plainLength / 2, bytes.length + " vs " + plainLength);
+    assertEquals(value, serializer.deserialize(bytes));
+  }
+
+  @Test
+  void test_reads_attributes_written_without_compression() {
+    List<String> value = List.of("x".repeat(2000));
+
+    assertEquals(value, serializer.deserialize(new SerializingConverter().convert(value)));
+  }
+
+  @Test
+  void test_corrupt_bytes_are_rejected() {
+    byte[] bytes = serializer.serialize("y".repeat(2000));
+    byte[] truncated = Arrays.copyOf(bytes, bytes.length / 2);
+
+    assertThrows(IllegalArgumentException.class, () -> serializer.deserialize(truncated));
+  }
+}
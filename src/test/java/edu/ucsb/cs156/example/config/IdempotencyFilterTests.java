@@ -0,0 +1,258 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.StreamUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.IdempotencyKey;
+import edu.ucsb.cs156.example.services.InMemoryIdempotencyStore;
+
+class IdempotencyFilterTests {
+
+  private IdempotencyFilter filter;
+  private InMemoryIdempotencyStore store;
+  private AtomicInteger inserts;
+  private int status;
+  private String bodyRead;
+
+  // stands in for a controller that inserts a row and returns it
+  private final FilterChain controller = (request, response) -> {
+    bodyRead = StreamUtils.copyToString(request.getInputStream(), StandardCharsets.UTF_8);
+    int id = inserts.incrementAndGet();
+    HttpServletResponse http = (HttpServletResponse) response;
+    http.setStatus(status);
+    http.setHeader("ETag", "\"" + id + "\"");
+    http.setHeader("Location", "/api/ucsbdates?id=" + id);
+    http.setHeader("X-Not-Replayed", "x");
+    response.setContentType("application/json");
+    response.getWriter().write("{\"id\":" + id + "}");
+  };
+
+  @BeforeEach
+  void setup() {
+    store = spy(new InMemoryIdempotencyStore(Duration.ofMinutes(60), 100));
+    filter = new IdempotencyFilter(store, new ObjectMapper(), 64);
+    inserts = new AtomicInteger();
+    status = 200;
+    loginAs("cgaucho");
+  }
+
+  @AfterEach
+  void teardown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  private void loginAs(String name) {
+    SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(name, null, "ROLE_USER"));
+  }
+
+  private MockHttpServletRequest request(String path, String key) {
+    MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+    request.setServletPath(path);
+    if (key != null) {
+      request.addHeader("Idempotency-Key", key);
+    }
+    return request;
+  }
+
+  private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(request, response, controller);
+    return response;
+  }
+
+  private MockHttpServletResponse post(String key, String... params) throws Exception {
+    MockHttpServletRequest request = request("/api/ucsbdates/post", key);
+    for (int i = 0; i < params.length; i += 2) {
+      request.addParameter(params[i], params[i + 1]);
+    }
+    return send(request);
+  }
+
+  private MockHttpServletResponse postCsv(String key, String csv) throws Exception {
+    MockHttpServletRequest request = request("/api/ucsborganization/import", key);
+    request.setContentType("text/csv");
+    request.setContent(csv.getBytes(StandardCharsets.UTF_8));
+    return send(request);
+  }
+
+  @Test
+  void test_retries_replay_the_first_response() throws Exception {
+    MockHttpServletResponse first = post("k1", "name", "finals", "quarterYYYYQ", "20222");
+    MockHttpServletResponse retry = post("k1", "quarterYYYYQ", "20222", "name", "finals");
+
+    assertEquals(1, inserts.get());
+    assertEquals("{\"id\":1}", first.getContentAsString());
+    assertNull(first.getHeader("Idempotent-Replayed"));
+    assertEquals(200, retry.getStatus());
+    assertEquals("{\"id\":1}", retry.getContentAsString());
+    assertEquals("application/json", retry.getContentType());
+    assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+    assertEquals("\"1\"", retry.getHeader("ETag"));
+    assertEquals("/api/ucsbdates?id=1", retry.getHeader("Location"));
+    assertNull(retry.getHeader("X-Not-Replayed"));
+  }
+
+  @Test
+  void test_the_body_is_part_of_the_fingerprint() throws Exception {
+    MockHttpServletResponse first = postCsv("k1", "orgCode\nZPR\n");
+    MockHttpServletResponse retry = postCsv("k1", "orgCode\nZPR\n");
+    MockHttpServletResponse other = postCsv("k1", "orgCode\nKRC\n");
+
+    assertEquals(1, inserts.get());
+    assertEquals("orgCode\nZPR\n", bodyRead);
+    assertEquals(200, first.getStatus());
+    assertEquals("true", retry.getHeader("Idempotent-Replayed"));
+    assertEquals(422, other.getStatus());
+  }
+
+  @Test
+  void test_only_digests_are_stored() throws Exception {
+    post("k1", "name", "x".repeat(5000));
+
+    ArgumentCaptor<IdempotencyKey> claimed = ArgumentCaptor.forClass(IdempotencyKey.class);
+    verify(store).claim(claimed.capture());
+    assertTrue(claimed.getValue().getId().matches("[0-9a-f]{64}"));
+    assertTrue(claimed.getValue().getFingerprint().matches("[0-9a-f]{64}"));
+  }
+
+  @Test
+  void test_bodies_over_the_limit_are_rejected() throws Exception {
+    MockHttpServletResponse atLimit = postCsv("k1", "x".repeat(64));
+    MockHttpServletResponse overLimit = postCsv("k2", "x".repeat(65));
+
+    assertEquals(200, atLimit.getStatus());
+    assertEquals(413, overLimit.getStatus());
+    assertEquals(1, inserts.get());
+  }
+
+  @Test
+  void test_buffered_body_can_be_read_asynchronously() throws Exception {
+    StringBuilder events = new StringBuilder();
+    FilterChain asyncController = (request, response) -> {
+      ServletInputStream in = request.getInputStream();
+      in.setReadListener(new ReadListener() {
+        @Override
+        public void onDataAvailable() throws IOException {
+          events.append("data:").append(StreamUtils.copyToString(in, StandardCharsets.UTF_8)).append(';');
+        }
+
+        @Override
+        public void onAllDataRead() {
+          events.append("done");
+        }
+
+        @Override
+        public void onError(Throwable t) {
+          events.append("error");
+        }
+      });
+    };
+    MockHttpServletRequest request = request("/api/ucsborganization/import", "k1");
+    request.setContentType("text/csv");
+    request.setContent("orgCode\n".getBytes(StandardCharsets.UTF_8));
+
+    filter.doFilter(request, new MockHttpServletResponse(), asyncController);
+
+    assertEquals("data:orgCode\n;done", events.toString());
+  }
+
+  @Test
+  void test_token_responses_are_never_stored() throws Exception {
+    MockHttpServletResponse first = send(request("/api/admin/tokens/post", "k1"));
+    MockHttpServletResponse second = send(request("/api/admin/tokens/post", "k1"));
+
+    assertEquals(2, inserts.get());
+    assertNull(first.getHeader("Idempotent-Replayed"));
+    assertNull(second.getHeader("Idempotent-Replayed"));
+  }
+
+  @Test
+  void test_requests_without_a_key_or_with_new_keys_run() throws Exception {
+    post(null, "name", "finals");
+    post(null, "name", "finals");
+    post("k1", "name", "finals");
+    post("k2", "name", "finals");
+
+    assertEquals(4, inserts.get());
+  }
+
+  @Test
+  void test_keys_belong_to_the_user() throws Exception {
+    post("k1", "name", "finals");
+    loginAs("ldelplaya");
+    post("k1", "name", "finals");
+
+    assertEquals(2, inserts.get());
+  }
+
+  @Test
+  void test_reusing_a_key_for_another_request_is_rejected() throws Exception {
+    post("k1", "name", "finals");
+    MockHttpServletResponse other = post("k1", "name", "midterms");
+
+    assertEquals(1, inserts.get());
+    assertEquals(422, other.getStatus());
+    assertEquals("{\"message\":\"Idempotency-Key was already used for a different request\"}",
+        other.getContentAsString());
+  }
+
+  @Test
+  void test_failed_requests_can_be_retried() throws Exception {
+    status = 500;
+    MockHttpServletResponse failed = post("k1", "name", "finals");
+    status = 200;
+    MockHttpServletResponse retry = post("k1", "name", "finals");
+
+    assertEquals(500, failed.getStatus());
+    assertEquals(2, inserts.get());
+    assertEquals("{\"id\":2}", retry.getContentAsString());
+  }
+
+  @Test
+  void test_a_retry_during_the_first_request_is_a_conflict() throws Exception {
+    MockHttpServletResponse[] retry = new MockHttpServletResponse[1];
+    FilterChain slowController = (request, response) -> {
+      retry[0] = post("k1", "name", "finals");
+      controller.doFilter(request, response);
+    };
+    MockHttpServletRequest request = request("/api/ucsbdates/post", "k1");
+    request.addParameter("name", "finals");
+
+    filter.doFilter(request, new MockHttpServletResponse(), slowController);
+
+    assertEquals(409, retry[0].getStatus());
+    assertEquals(1, inserts.get());
+  }
+
+  @Test
+  void test_bad_keys_are_rejected() throws Exception {
+    assertEquals(400, post(" ").getStatus());
+    assertEquals(400, post("k".repeat(256)).getStatus());
+    assertEquals(0, inserts.get());
+  }
+}
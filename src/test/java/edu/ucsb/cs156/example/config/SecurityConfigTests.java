@@ -0,0 +1,86 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MvcResult;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.controllers.FrontendController;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+@WebMvcTest(controllers = FrontendController.class)
+public class SecurityConfigTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @Test
+  public void test_public_paths_skip_session_and_csrf() throws Exception {
+    // act
+    MvcResult response = mockMvc.perform(get("/static/js/main.js"))
+        .andExpect(cookie().doesNotExist("XSRF-TOKEN"))
+        .andExpect(header().exists("X-Content-Type-Options"))
+        .andReturn();
+
+    // assert
+    assertNull(response.getRequest().getSession(false));
+  }
+
+  @Test
+  public void test_public_paths_do_not_need_a_csrf_token() throws Exception {
+    // act
+    MvcResult response = mockMvc.perform(post("/static/js/main.js")).andReturn();
+
+    // assert
+    assertNotEquals(403, response.getResponse().getStatus());
+  }
+
+  @Test
+  public void test_other_paths_get_the_full_chain() throws Exception {
+    mockMvc.perform(get("/js/main.js"))
+        .andExpect(cookie().exists("XSRF-TOKEN"));
+
+    mockMvc.perform(post("/js/main.js"))
+        .andExpect(status().isForbidden());
+  }
+
+  // Excluded from the default build; run with -Pbenchmark. Both requests
+  // end in the same 404 from the static resource handler, so the
+  // difference is the cost of the security filters.
+  @Test
+  @Tag("benchmark")
+  public void benchmark_public_chain_against_full_chain() throws Exception {
+    int rounds = 2000;
+    for (int i = 0; i < rounds; i++) {
+      mockMvc.perform(get("/static/js/main.js"));
+      mockMvc.perform(get("/js/main.js"));
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      mockMvc.perform(get("/static/js/main.js"));
+    }
+    double publicMicros = (System.nanoTime() - start) / 1_000.0 / rounds;
+
+    start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      mockMvc.perform(get("/js/main.js"));
+    }
+    double fullMicros = (System.nanoTime() - start) / 1_000.0 / rounds;
+
+    log.info("security filters: {} us per request on the public chain, {} us on the full chain",
+        String.format("%.1f", publicMicros), String.format("%.1f", fullMicros));
+  }
+}
@@ -0,0 +1,112 @@
+package edu.ucsb.cs156.example.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.session.Session;
+import org.springframework.session.SessionRepository;
+
+// Runs the JDBC session store against an in-memory H2 database.
+class SessionConfigTests {
+
+  private EmbeddedDatabase db;
+  private JdbcTemplate jdbc;
+  private SessionRepository<Session> sessions;
+
+  @BeforeEach
+  void setup() {
+    db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+    jdbc = new JdbcTemplate(db);
+    SessionConfig.createSchemaIfMissing(db);
+    sessions = new LazyTouchSessionRepository(
+        SessionConfig.jdbcSessionRepository(db, new DataSourceTransactionManager(db), getClass().getClassLoader()),
+        Duration.ofSeconds(60));
+  }
+
+  @AfterEach
+  void teardown() {
+    db.shutdown();
+  }
+
+  private long lastAccessTime(String id) {
+    return jdbc.queryForObject("select last_access_time from spring_session where session_id = ?", Long.class, id);
+  }
+
+  private String saveNewSession() {
+    Session session = sessions.createSession();
+    session.setAttribute("name", "Phill Conrad");
+    session.setAttribute("bio", "teaches CS156. ".repeat(200));
+    sessions.save(session);
+    return session.getId();
+  }
+
+  @Test
+  void test_schema_creation_can_run_again() {
+    SessionConfig.createSchemaIfMissing(db);
+
+    assertEquals(0, jdbc.queryForObject("select count(*) from spring_session", Integer.class));
+  }
+
+  @Test
+  void test_attributes_round_trip_and_large_ones_are_compressed() {
+    String id = saveNewSession();
+
+    Session found = sessions.findById(id);
+
+    assertEquals("Phill Conrad", found.getAttribute("name"));
+    assertEquals("teaches CS156. ".repeat(200), found.getAttribute("bio"));
+    byte[] bio = jdbc.queryForObject(
+        "select attribute_bytes from spring_session_attributes where attribute_name = 'bio'", byte[].class);
+    assertTrue(bio.length < 500, "stored " + bio.length + " bytes");
+  }
+
+  @Test
+  void test_touches_within_the_interval_are_not_written() {
+    String id = saveNewSession();
+    long stored = lastAccessTime(id);
+
+    Session found = sessions.findById(id);
+    found.setLastAccessedTime(Instant.ofEpochMilli(stored).plusSeconds(59));
+    sessions.save(found);
+
+    assertEquals(stored, lastAccessTime(id));
+
+    found = sessions.findById(id);
+    found.setLastAccessedTime(Instant.ofEpochMilli(stored).plusSeconds(60));
+    sessions.save(found);
+
+    assertEquals(stored + 60_000, lastAccessTime(id));
+  }
+
+  @Test
+  void test_attribute_changes_are_written_without_a_touch() {
+    String id = saveNewSession();
+
+    Session found = sessions.findById(id);
+    found.setAttribute("name", "Phillip Conrad");
+    sessions.save(found);
+
+    assertEquals("Phillip Conrad", sessions.findById(id).getAttribute("name"));
+  }
+
+  @Test
+  void test_deleted_sessions_are_gone() {
+    String id = saveNewSession();
+
+    sessions.deleteById(id);
+
+    assertNull(sessions.findById(id));
+  }
+}
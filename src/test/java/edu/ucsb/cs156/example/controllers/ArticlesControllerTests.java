@@ -9,6 +9,7 @@ import edu.ucsb.cs156.example.repositories.ArticlesRepository;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -214,17 +215,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-04-20T00:00:00");
-
-                Articles articles1 = Articles.builder()
-                                .title("Using testing-playground with React Testing Library")
-                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
-                                .explanation("Helpful when we get to front end development")
-                                .email("phtcon@ucsb.edu")
-                                .dateAdded(ldt1)
-                                .build();
-
-                when(articlesRepository.findById(eq(15L))).thenReturn(Optional.of(articles1));
+                when(articlesRepository.deleteByIdReturningCount(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -233,8 +224,8 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(articlesRepository, times(1)).findById(15L);
-                verify(articlesRepository, times(1)).delete(any());
+                verify(articlesRepository, times(1)).deleteByIdReturningCount(15L);
+                verify(articlesRepository, times(0)).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Article with id 15 deleted", json.get("message"));
@@ -246,7 +237,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(articlesRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(articlesRepository.deleteByIdReturningCount(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -255,7 +246,7 @@ public class ArticlesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(articlesRepository, times(1)).findById(15L);
+                verify(articlesRepository, times(1)).deleteByIdReturningCount(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Articles with id 15 not found", json.get("message"));
         }
@@ -518,6 +509,285 @@ public class ArticlesControllerTests extends ControllerTestCase {
             String responseString = response.getResponse().getContentAsString();
             assertEquals(requestBody, responseString);
     }
-    
 
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_ucsbdate() throws Exception {
+                // arrange
+
+                Articles stored = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/articles?id=67"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_ucsbdate_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                Articles edited = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(articlesRepository.updateIfVersionMatches(eq(67L), eq(3L), eq(edited))).thenReturn(1);
+
+                Articles expected = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                expected.setId(67L);
+                expected.setVersion(4L);
+
+                when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/articles?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).updateIfVersionMatches(eq(67L), eq(3L), eq(edited));
+                verify(articlesRepository, times(1)).findById(eq(67L));
+                verify(articlesRepository, times(0)).save(any());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_ucsbdate_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                Articles edited = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(articlesRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(articlesRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/articles?id=67")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("Articles with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_ucsbdate() throws Exception {
+                // arrange
+
+                Articles edited = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(articlesRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(articlesRepository.existsById(eq(67L))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/articles?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_ucsbdate() throws Exception {
+                mockMvc.perform(patch("/api/articles?id=67")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"explanation\":\"still helpful\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_ucsbdate() throws Exception {
+                // arrange
+
+                Articles stored = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                Articles expected = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                expected.setVersion(3L);
+                expected.setExplanation("still helpful");
+
+                when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+                when(articlesRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/articles?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"explanation\":\"still helpful\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).findById(67L);
+                verify(articlesRepository, times(1)).save(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_ucsbdate_with_stale_if_match() throws Exception {
+                // arrange
+
+                Articles stored = Articles.builder()
+                                .title("Using testing-playground with React Testing Library")
+                                .url("https://dev.to/katieraby/using-testing-playground-with-react-testing-library-26j7")
+                                .explanation("A lot of really useful classes are built into Spring")
+                                .email("phtcon@ucsb.edu")
+                                .dateAdded(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                stored.setVersion(4L);
+
+                when(articlesRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/articles?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"explanation\":\"still helpful\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_ucsbdate_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(articlesRepository.findById(eq(67L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/articles?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"explanation\":\"still helpful\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Articles with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_articles() throws Exception {
+                // arrange
+
+                when(articlesRepository.deleteByIdIn(eq(Set.of(15L, 16L)))).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/articles/bulk?ids=15,16,15")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(1)).deleteByIdIn(Set.of(15L, 16L));
+                verify(articlesRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 Articles records", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void bulk_delete_with_no_ids_does_not_touch_the_database() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/articles/bulk?ids=")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(articlesRepository, times(0)).deleteByIdIn(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 0 of 0 Articles records", json.get("message"));
+        }
 }
@@ -5,10 +5,15 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.HelpRequest;
 import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.services.HelpRequestClaimService;
+import edu.ucsb.cs156.example.services.HelpRequestDeleteService;
+import edu.ucsb.cs156.example.services.HelpRequestEventService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -16,6 +21,7 @@ import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -39,6 +45,15 @@ public class HelpRequestControllerTests extends ControllerTestCase {
         @MockBean
         HelpRequestRepository helpRequestRepository;
 
+        @MockBean
+        HelpRequestEventService helpRequestEventService;
+
+        @MockBean
+        HelpRequestClaimService helpRequestClaimService;
+
+        @MockBean
+        HelpRequestDeleteService helpRequestDeleteService;
+
         @MockBean
         UserRepository userRepository;
 
@@ -57,6 +72,23 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                                 .andExpect(status().is(200)); // logged
         }
 
+        @Test
+        public void logged_out_users_cannot_subscribe_to_stream() throws Exception {
+                mockMvc.perform(get("/api/HelpRequest/stream"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_users_can_subscribe_to_stream() throws Exception {
+                when(helpRequestEventService.subscribe()).thenReturn(new SseEmitter());
+
+                mockMvc.perform(get("/api/HelpRequest/stream"))
+                                .andExpect(request().asyncStarted());
+
+                verify(helpRequestEventService, times(1)).subscribe();
+        }
+
         @Test
         public void logged_out_users_cannot_get_by_id() throws Exception {
                 mockMvc.perform(get("/api/HelpRequest?id=7"))
@@ -201,6 +233,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(helpRequestRepository, times(1)).save(helpRequest1);
+                verify(helpRequestEventService, times(1)).publishCreated(helpRequest1);
                 String expectedJson = mapper.writeValueAsString(helpRequest1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -232,28 +265,76 @@ public class HelpRequestControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(helpRequestRepository, times(1)).save(helpRequest1);
+                verify(helpRequestEventService, times(1)).publishCreated(helpRequest1);
                 String expectedJson = mapper.writeValueAsString(helpRequest1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
         }
 
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_claim() throws Exception {
+                mockMvc.perform(post("/api/HelpRequest/claim").with(csrf()))
+                                .andExpect(status().is(403)); // only admins (TAs) can claim
+        }
+
         @WithMockUser(roles = { "ADMIN", "USER" })
         @Test
-        public void admin_can_delete_a_request() throws Exception {
+        public void admin_can_claim_the_oldest_unsolved_request() throws Exception {
                 // arrange
 
                 LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
 
                 HelpRequest helpRequest1 = HelpRequest.builder()
+                                .id(15L)
                                 .requesterEmail("123@gamil.com")
                                 .teamId("666")
                                 .tableOrBreakoutRoom("table")
                                 .explanation("Help with test case")
                                 .solved(false)
                                 .requestTime(ldt1)
+                                .claimedBy("user@example.org")
+                                .claimedTime(LocalDateTime.parse("2022-01-03T00:05:00"))
                                 .build();
 
-                when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.of(helpRequest1));
+                when(helpRequestClaimService.claimNext(eq("user@example.org"))).thenReturn(Optional.of(helpRequest1));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/HelpRequest/claim")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestClaimService, times(1)).claimNext("user@example.org");
+                String expectedJson = mapper.writeValueAsString(helpRequest1);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_no_content_when_queue_is_empty() throws Exception {
+                // arrange
+
+                when(helpRequestClaimService.claimNext(eq("user@example.org"))).thenReturn(Optional.empty());
+
+                // act
+                mockMvc.perform(
+                                post("/api/HelpRequest/claim")
+                                                .with(csrf()))
+                                .andExpect(status().isNoContent());
+
+                // assert
+                verify(helpRequestClaimService, times(1)).claimNext("user@example.org");
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_delete_a_request() throws Exception {
+                // arrange
+
+                when(helpRequestRepository.deleteByIdReturningCount(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -262,8 +343,9 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(helpRequestRepository, times(1)).findById(15L);
-                verify(helpRequestRepository, times(1)).delete(any());
+                verify(helpRequestRepository, times(1)).deleteByIdReturningCount(15L);
+                verify(helpRequestRepository, times(0)).findById(any());
+                verify(helpRequestEventService, times(1)).publishDeleted(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("HelpRequest with id 15 deleted", json.get("message"));
@@ -275,7 +357,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(helpRequestRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(helpRequestRepository.deleteByIdReturningCount(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -284,7 +366,8 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(helpRequestRepository, times(1)).findById(15L);
+                verify(helpRequestRepository, times(1)).deleteByIdReturningCount(15L);
+                verify(helpRequestEventService, times(0)).publishDeleted(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("HelpRequest with id 15 not found", json.get("message"));
         }
@@ -331,6 +414,7 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                 // assert
                 verify(helpRequestRepository, times(1)).findById(67L);
                 verify(helpRequestRepository, times(1)).save(helpRequestEdited); // should be saved with correct user
+                verify(helpRequestEventService, times(1)).publishUpdated(helpRequestEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -370,4 +454,357 @@ public class HelpRequestControllerTests extends ControllerTestCase {
                 assertEquals("HelpRequest with id 67 not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_HelpRequest() throws Exception {
+                // arrange
+
+                HelpRequest stored = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/HelpRequest?id=67"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_HelpRequest_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                HelpRequest edited = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(helpRequestRepository.updateIfVersionMatches(eq(67L), eq(3L), eq(edited))).thenReturn(1);
+
+                // the claim isn't part of the PUT body, but the response must still show it
+                HelpRequest expected = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .claimedBy("ta@ucsb.edu")
+                                .claimedTime(LocalDateTime.parse("2023-01-03T00:05:00"))
+                                .build();
+                expected.setId(67L);
+                expected.setVersion(4L);
+
+                when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/HelpRequest?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(1)).updateIfVersionMatches(eq(67L), eq(3L), eq(edited));
+                verify(helpRequestRepository, times(1)).findById(eq(67L));
+                verify(helpRequestRepository, times(0)).save(any());
+                verify(helpRequestEventService, times(1)).publishUpdated(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_HelpRequest_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                HelpRequest edited = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(helpRequestRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(helpRequestRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/HelpRequest?id=67")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("HelpRequest with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_HelpRequest() throws Exception {
+                // arrange
+
+                HelpRequest edited = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(helpRequestRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(helpRequestRepository.existsById(eq(67L))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/HelpRequest?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("HelpRequest with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_HelpRequest() throws Exception {
+                mockMvc.perform(patch("/api/HelpRequest?id=67")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"solved\":false}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_HelpRequest() throws Exception {
+                // arrange
+
+                HelpRequest stored = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                HelpRequest expected = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+                expected.setVersion(3L);
+                expected.setSolved(false);
+
+                when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+                when(helpRequestRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/HelpRequest?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"solved\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(1)).findById(67L);
+                verify(helpRequestRepository, times(1)).save(expected);
+                verify(helpRequestEventService, times(1)).publishUpdated(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_the_claim_on_a_HelpRequest() throws Exception {
+                // arrange
+
+                HelpRequest stored = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(false)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .claimedBy("ta@ucsb.edu")
+                                .claimedTime(LocalDateTime.parse("2023-01-03T00:05:00"))
+                                .build();
+
+                HelpRequest expected = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .claimedBy("ta@ucsb.edu")
+                                .claimedTime(LocalDateTime.parse("2023-01-03T00:05:00"))
+                                .build();
+
+                when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+                when(helpRequestRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/HelpRequest?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"solved\":true,\"claimedBy\":\"someone@ucsb.edu\",\"claimedTime\":null}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(1)).save(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_HelpRequest_with_stale_if_match() throws Exception {
+                // arrange
+
+                HelpRequest stored = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+                stored.setVersion(4L);
+
+                when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/HelpRequest?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"solved\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("HelpRequest with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_HelpRequest_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/HelpRequest?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"solved\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(helpRequestRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("HelpRequest with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_400_for_a_patch_that_is_not_an_object() throws Exception {
+                // arrange
+
+                HelpRequest stored = HelpRequest.builder()
+                                .requesterEmail("123@gmail.com")
+                                .teamId("888")
+                                .tableOrBreakoutRoom("breakout room")
+                                .explanation("Help with calculus")
+                                .solved(true)
+                                .requestTime(LocalDateTime.parse("2023-01-03T00:00:00"))
+                                .build();
+
+                when(helpRequestRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/HelpRequest?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("[1, 2]")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(helpRequestRepository, times(0)).save(any());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_HelpRequests() throws Exception {
+                // arrange
+
+                when(helpRequestDeleteService.deleteAll(eq(Set.of(15L, 16L)))).thenReturn(List.of(15L));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/HelpRequest/bulk?ids=15,16,15")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(helpRequestDeleteService, times(1)).deleteAll(Set.of(15L, 16L));
+                verify(helpRequestRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 HelpRequest records", json.get("message"));
+        }
 }
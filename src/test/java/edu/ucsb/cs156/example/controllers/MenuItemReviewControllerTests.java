@@ -5,13 +5,19 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.MenuItemReview;
 import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+import edu.ucsb.cs156.example.services.MenuItemLeaderboardService;
+import edu.ucsb.cs156.example.models.MenuItemRating;
+import edu.ucsb.cs156.example.models.MenuItemReviewPage;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -42,6 +48,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        MenuItemLeaderboardService menuItemLeaderboardService;
+
         // Authorization tests for /api/menuitemreview/admin/all
 
         @Test
@@ -197,6 +206,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(menuItemReviewRepository, times(1)).save(menuItemReview1);
+                verify(menuItemLeaderboardService, times(1)).record(menuItemReview1);
                 String expectedJson = mapper.writeValueAsString(menuItemReview1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -207,17 +217,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_review() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-                MenuItemReview menuItemReview1 = MenuItemReview.builder()
-                                .itemId(27)
-                                .reviewerEmail("cgaucho@ucsb.edu")
-                                .stars(3)
-                                .comments("bland")
-                                .dateReviewed(ldt1)
-                                .build();
-
-                when(menuItemReviewRepository.findById(eq(15L))).thenReturn(Optional.of(menuItemReview1));
+                when(menuItemReviewRepository.deleteByIdReturningCount(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +226,9 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(15L);
-                verify(menuItemReviewRepository, times(1)).delete(any());
+                verify(menuItemReviewRepository, times(1)).deleteByIdReturningCount(15L);
+                verify(menuItemReviewRepository, times(0)).findById(any());
+                verify(menuItemLeaderboardService, times(1)).remove(15L);
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 15 deleted", json.get("message"));
@@ -239,7 +240,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(menuItemReviewRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(menuItemReviewRepository.deleteByIdReturningCount(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +249,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(menuItemReviewRepository, times(1)).findById(15L);
+                verify(menuItemReviewRepository, times(1)).deleteByIdReturningCount(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("MenuItemReview with id 15 not found", json.get("message"));
         }
@@ -280,6 +281,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 String requestBody = mapper.writeValueAsString(menuItemReviewEdited);
 
                 when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.of(menuItemReviewOrig));
+                when(menuItemReviewRepository.save(eq(menuItemReviewEdited))).thenReturn(menuItemReviewEdited);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -293,6 +295,7 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 // assert
                 verify(menuItemReviewRepository, times(1)).findById(67L);
                 verify(menuItemReviewRepository, times(1)).save(menuItemReviewEdited); // should be saved with correct user
+                verify(menuItemLeaderboardService, times(1)).record(menuItemReviewEdited);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -331,4 +334,380 @@ public class MenuItemReviewControllerTests extends ControllerTestCase {
                 assertEquals("MenuItemReview with id 67 not found", json.get("message"));
 
         }
-}
\ No newline at end of file
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_menuitemreview() throws Exception {
+                // arrange
+
+                MenuItemReview stored = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/MenuItemReview?id=67"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_menuitemreview_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                MenuItemReview edited = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(menuItemReviewRepository.updateIfVersionMatches(eq(67L), eq(3L), eq(edited))).thenReturn(1);
+
+                MenuItemReview expected = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                expected.setId(67L);
+                expected.setVersion(4L);
+
+                when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/MenuItemReview?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).updateIfVersionMatches(eq(67L), eq(3L), eq(edited));
+                verify(menuItemReviewRepository, times(1)).findById(eq(67L));
+                verify(menuItemReviewRepository, times(0)).save(any());
+                verify(menuItemLeaderboardService, times(1)).record(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_menuitemreview_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                MenuItemReview edited = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(menuItemReviewRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(menuItemReviewRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/MenuItemReview?id=67")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("MenuItemReview with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_menuitemreview() throws Exception {
+                // arrange
+
+                MenuItemReview edited = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(menuItemReviewRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(menuItemReviewRepository.existsById(eq(67L))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/MenuItemReview?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("MenuItemReview with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_menuitemreview() throws Exception {
+                mockMvc.perform(patch("/api/MenuItemReview?id=67")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"stars\":5}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_menuitemreview() throws Exception {
+                // arrange
+
+                MenuItemReview stored = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                MenuItemReview expected = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                expected.setVersion(3L);
+                expected.setStars(5);
+
+                when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+                when(menuItemReviewRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/MenuItemReview?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"stars\":5}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).findById(67L);
+                verify(menuItemReviewRepository, times(1)).save(expected);
+                verify(menuItemLeaderboardService, times(1)).record(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_menuitemreview_with_stale_if_match() throws Exception {
+                // arrange
+
+                MenuItemReview stored = MenuItemReview.builder()
+                                .itemId(7L)
+                                .reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(4)
+                                .comments("better than last week")
+                                .dateReviewed(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .build();
+                stored.setVersion(4L);
+
+                when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/MenuItemReview?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"stars\":5}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("MenuItemReview with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_menuitemreview_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(menuItemReviewRepository.findById(eq(67L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/MenuItemReview?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"stars\":5}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("MenuItemReview with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_menuitemreviews() throws Exception {
+                // arrange
+
+                when(menuItemReviewRepository.deleteByIdIn(eq(Set.of(15L, 16L)))).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/MenuItemReview/bulk?ids=15,16,15")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).deleteByIdIn(Set.of(15L, 16L));
+                verify(menuItemLeaderboardService, times(1)).removeAll(Set.of(15L, 16L));
+                verify(menuItemReviewRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 MenuItemReview records", json.get("message"));
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_leaderboard() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/leaderboard"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_get_leaderboard_for_the_last_week() throws Exception {
+                // arrange
+
+                List<MenuItemRating> top = List.of(
+                                new MenuItemRating(27L, 4.5, 2L),
+                                new MenuItemRating(3L, 4.0, 5L));
+                when(menuItemLeaderboardService.top(eq(7), eq(10), eq(2))).thenReturn(top);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/leaderboard?days=7&minReviews=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemLeaderboardService, times(1)).top(7, 10, 2);
+                verify(menuItemReviewRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(top);
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void leaderboard_defaults_to_all_time_and_caps_window_and_size() throws Exception {
+                // arrange
+
+                when(menuItemLeaderboardService.top(any(), any(Integer.class), any(Integer.class))).thenReturn(List.of());
+
+                // act
+                mockMvc.perform(get("/api/MenuItemReview/leaderboard")).andExpect(status().isOk());
+                mockMvc.perform(get("/api/MenuItemReview/leaderboard?days=5000&limit=5000")).andExpect(status().isOk());
+
+                // assert
+                verify(menuItemLeaderboardService, times(1)).top(null, 10, 1);
+                verify(menuItemLeaderboardService, times(1)).top(366, 100, 1);
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_reviews_for_an_item() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/item?itemId=27"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void first_page_of_item_reviews_has_a_cursor_when_more_remain() throws Exception {
+                // arrange
+
+                MenuItemReview newest = MenuItemReview.builder().id(9L).itemId(27).reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(5).comments("great").dateReviewed(LocalDateTime.parse("2022-04-20T12:30:00")).build();
+                MenuItemReview middle = MenuItemReview.builder().id(4L).itemId(27).reviewerEmail("ldelplaya@ucsb.edu")
+                                .stars(3).comments("ok").dateReviewed(LocalDateTime.parse("2022-04-18T00:00:00")).build();
+                MenuItemReview oldest = MenuItemReview.builder().id(2L).itemId(27).reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(1).comments("cold").dateReviewed(LocalDateTime.parse("2022-04-01T00:00:00")).build();
+
+                when(menuItemReviewRepository.findNewestForItem(eq(27L), eq(PageRequest.of(0, 3))))
+                                .thenReturn(new ArrayList<>(List.of(newest, middle, oldest)));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/item?itemId=27&size=2"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(1)).findNewestForItem(27L, PageRequest.of(0, 3));
+                String expectedJson = mapper.writeValueAsString(
+                                new MenuItemReviewPage(List.of(newest, middle), "2022-04-18T00:00,4"));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void next_page_of_item_reviews_starts_after_the_cursor() throws Exception {
+                // arrange
+
+                MenuItemReview oldest = MenuItemReview.builder().id(2L).itemId(27).reviewerEmail("cgaucho@ucsb.edu")
+                                .stars(1).comments("cold").dateReviewed(LocalDateTime.parse("2022-04-01T00:00:00")).build();
+
+                when(menuItemReviewRepository.findNewestForItemAfter(eq(27L), eq(LocalDateTime.parse("2022-04-18T00:00:00")),
+                                eq(4L), eq(PageRequest.of(0, 3)))).thenReturn(List.of(oldest));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/MenuItemReview/item?itemId=27&size=2&after=2022-04-18T00:00,4"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemReviewRepository, times(0)).findNewestForItem(any(Long.class), any());
+                String expectedJson = mapper.writeValueAsString(new MenuItemReviewPage(List.of(oldest), null));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void item_reviews_reject_a_malformed_cursor() throws Exception {
+                mockMvc.perform(get("/api/MenuItemReview/item?itemId=27&after=yesterday"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/MenuItemReview/item?itemId=27&after=2022-04-18T00:00"))
+                                .andExpect(status().isBadRequest());
+
+                verify(menuItemReviewRepository, times(0)).findNewestForItemAfter(any(Long.class), any(), any(Long.class), any());
+        }
+}
@@ -0,0 +1,206 @@
+package edu.ucsb.cs156.example.controllers;
+
+import edu.ucsb.cs156.example.ControllerTestCase;
+import edu.ucsb.cs156.example.entities.PersonalAccessToken;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
+import edu.ucsb.cs156.example.models.IssuedAccessToken;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.PersonalAccessTokenCodec;
+import edu.ucsb.cs156.example.services.PersonalAccessTokenService;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+@WebMvcTest(controllers = PersonalAccessTokensController.class)
+public class PersonalAccessTokensControllerTests extends ControllerTestCase {
+
+  @MockBean
+  UserRepository userRepository;
+
+  @MockBean
+  PersonalAccessTokenService personalAccessTokenService;
+
+  @Autowired
+  PersonalAccessTokenCodec personalAccessTokenCodec;
+
+  private final Instant created = Instant.parse("2022-05-01T12:00:00Z");
+
+  private PersonalAccessToken details(long id, long userId) {
+    return PersonalAccessToken.builder().id(id).userId(userId).name("grading script")
+        .createdBy("admin@example.org").createdAt(created).expiresAt(created.plus(90, ChronoUnit.DAYS)).build();
+  }
+
+  private String bearer(long tokenId, boolean admin) {
+    return "Bearer " + personalAccessTokenCodec.encode(AccessTokenClaims.builder()
+        .tokenId(tokenId).userId(7).email("script@ucsb.edu").admin(admin)
+        .expiresAt(Instant.now().plus(1, ChronoUnit.DAYS)).build());
+  }
+
+  @Test
+  public void tokens__logged_out() throws Exception {
+    mockMvc.perform(get("/api/admin/tokens"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void tokens__user_logged_in() throws Exception {
+    mockMvc.perform(get("/api/admin/tokens"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void tokens__admin_lists_a_users_tokens() throws Exception {
+    // arrange
+    List<PersonalAccessToken> tokens = List.of(details(2, 7), details(1, 7));
+    when(personalAccessTokenService.list(7L)).thenReturn(tokens);
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/tokens?userId=7"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(tokens), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void tokens__admin_issues_a_token() throws Exception {
+    // arrange
+    IssuedAccessToken issued = new IssuedAccessToken("pat_abc.def", details(3, 7));
+    when(personalAccessTokenService.issue(7L, "grading script", 30, "user@example.org")).thenReturn(issued);
+
+    // act
+    MvcResult response = mockMvc.perform(post("/api/admin/tokens/post")
+        .param("userId", "7").param("name", "grading script").param("days", "30")
+        .with(csrf()))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    assertEquals(mapper.writeValueAsString(issued), response.getResponse().getContentAsString());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void tokens__admin_revokes_a_token() throws Exception {
+    // act
+    MvcResult response = mockMvc.perform(delete("/api/admin/tokens?id=3").with(csrf()))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+    verify(personalAccessTokenService, times(1)).revoke(3L);
+    assertEquals("Personal access token with id 3 revoked", responseToJson(response).get("message"));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void tokens__revoking_an_unknown_token_is_a_404() throws Exception {
+    // arrange
+    when(personalAccessTokenService.revoke(9L)).thenThrow(new EntityNotFoundException(PersonalAccessToken.class, 9L));
+
+    // act
+    MvcResult response = mockMvc.perform(delete("/api/admin/tokens?id=9").with(csrf()))
+        .andExpect(status().isNotFound()).andReturn();
+
+    // assert
+    assertEquals(Map.of("type", "EntityNotFoundException", "message", "PersonalAccessToken with id 9 not found"),
+        responseToJson(response));
+  }
+
+  @Test
+  public void tokens__an_admin_token_works_without_a_session_or_csrf_token() throws Exception {
+    // arrange
+    personalAccessTokenCodec.setAdmins(List.of(7L));
+    when(personalAccessTokenService.list(7L)).thenReturn(List.of(details(1, 7)));
+
+    // act
+    MvcResult response = mockMvc.perform(get("/api/admin/tokens?userId=7")
+        .header("Authorization", bearer(11, true)))
+        .andExpect(status().isOk())
+        .andExpect(cookie().doesNotExist("XSRF-TOKEN"))
+        .andReturn();
+
+    // assert
+    verify(personalAccessTokenService, times(1)).list(7L);
+    assertNull(response.getRequest().getSession(false));
+  }
+
+  @Test
+  public void tokens__an_admin_token_cannot_issue_or_revoke_tokens() throws Exception {
+    // arrange
+    personalAccessTokenCodec.setAdmins(List.of(7L));
+
+    // act
+    mockMvc.perform(post("/api/admin/tokens/post")
+        .param("userId", "7").param("name", "another script").param("days", "365")
+        .header("Authorization", bearer(15, true)))
+        .andExpect(status().is(403));
+    mockMvc.perform(delete("/api/admin/tokens?id=3").header("Authorization", bearer(15, true)))
+        .andExpect(status().is(403));
+
+    // assert
+    verify(personalAccessTokenService, never()).issue(anyLong(), anyString(), anyInt(), anyString());
+    verify(personalAccessTokenService, never()).revoke(anyLong());
+  }
+
+  @Test
+  public void tokens__an_admin_token_of_a_demoted_user_is_forbidden() throws Exception {
+    // arrange
+    String token = bearer(14, true);
+    personalAccessTokenCodec.setAdmins(List.of());
+
+    // act
+    mockMvc.perform(get("/api/admin/tokens").header("Authorization", token))
+        .andExpect(status().is(403));
+
+    // assert
+    verify(personalAccessTokenService, never()).list(anyLong());
+  }
+
+  @Test
+  public void tokens__a_non_admin_token_is_forbidden() throws Exception {
+    mockMvc.perform(get("/api/admin/tokens").header("Authorization", bearer(12, false)))
+        .andExpect(status().is(403));
+  }
+
+  @Test
+  public void tokens__a_bad_or_revoked_token_is_unauthorized() throws Exception {
+    // arrange
+    String token = bearer(13, true);
+    personalAccessTokenCodec.revoke(13);
+
+    // act
+    mockMvc.perform(get("/api/admin/tokens").header("Authorization", token))
+        .andExpect(status().is(401))
+        .andExpect(header().string("WWW-Authenticate", "Bearer error=\"invalid_token\""));
+    mockMvc.perform(get("/api/admin/tokens").header("Authorization", token.replace('.', 'x')))
+        .andExpect(status().is(401));
+
+    // assert
+    verify(personalAccessTokenService, never()).list(anyLong());
+  }
+}
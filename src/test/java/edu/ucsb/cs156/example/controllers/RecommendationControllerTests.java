@@ -5,6 +5,10 @@ import java.time.LocalDateTime;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -16,8 +20,10 @@ import static org.springframework.security.test.web.servlet.request.SecurityMock
 
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.models.ProfessorWorkload;
 import edu.ucsb.cs156.example.repositories.RecommendationRepository;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.RecommendationWorkloadService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import lombok.extern.slf4j.Slf4j;
 
@@ -30,7 +36,9 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.Optional;
 
 
@@ -45,6 +53,9 @@ public class RecommendationControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        RecommendationWorkloadService recommendationWorkloadService;
+
         // Authorization tests for /api/Recommendation/admin/all
 
         @Test
@@ -204,6 +215,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(recommendationRepository, times(1)).save(recommendation1);
+                verify(recommendationWorkloadService, times(1)).refresh("professorEmail");
                 String expectedJson = mapper.writeValueAsString(recommendation1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -214,18 +226,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_recommendation() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-                Recommendation recommendation1 = Recommendation.builder()
-                        .professorEmail("professorEmail")
-                        .requesterEmail("requesterEmail")
-                        .explanation("explanation")
-                        .dateNeeded(ldt1)
-                        .dateRequested(ldt1)
-                        .done(false)
-                        .build();
-
-                when(recommendationRepository.findById(eq(15L))).thenReturn(Optional.of(recommendation1));
+                when(recommendationRepository.deleteByIdReturningCount(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -234,8 +235,9 @@ public class RecommendationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(15L);
-                verify(recommendationRepository, times(1)).delete(any());
+                verify(recommendationRepository, times(1)).deleteByIdReturningCount(15L);
+                verify(recommendationRepository, times(0)).findById(any());
+                verify(recommendationWorkloadService, times(1)).invalidateAll();
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 15 deleted", json.get("message"));
@@ -247,7 +249,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(recommendationRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(recommendationRepository.deleteByIdReturningCount(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -256,7 +258,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(recommendationRepository, times(1)).findById(15L);
+                verify(recommendationRepository, times(1)).deleteByIdReturningCount(15L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("Recommendation with id 15 not found", json.get("message"));
         }
@@ -304,6 +306,7 @@ public class RecommendationControllerTests extends ControllerTestCase {
                 // assert
                 verify(recommendationRepository, times(1)).findById(67L);
                 verify(recommendationRepository, times(1)).save(ucsbDateEdited); // should be saved with correct user
+                verify(recommendationWorkloadService, times(1)).refresh("professorEmail", "newProfessorEmail");
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -343,4 +346,360 @@ public class RecommendationControllerTests extends ControllerTestCase {
                 assertEquals("Recommendation with id 67 not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_recommendation() throws Exception {
+                // arrange
+
+                Recommendation stored = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+                stored.setVersion(3L);
+
+                when(recommendationRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/Recommendation?id=67"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_recommendation_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                Recommendation edited = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(recommendationRepository.updateIfVersionMatches(eq(67L), eq(3L), eq(edited))).thenReturn(1);
+
+                Recommendation expected = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+                expected.setId(67L);
+                expected.setVersion(4L);
+
+                when(recommendationRepository.findById(eq(67L))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/Recommendation?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).updateIfVersionMatches(eq(67L), eq(3L), eq(edited));
+                verify(recommendationWorkloadService, times(1)).invalidateAll();
+                verify(recommendationRepository, times(1)).findById(eq(67L));
+                verify(recommendationRepository, times(0)).save(any());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_recommendation_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                Recommendation edited = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(recommendationRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(recommendationRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/Recommendation?id=67")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("Recommendation with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_recommendation() throws Exception {
+                // arrange
+
+                Recommendation edited = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(recommendationRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(recommendationRepository.existsById(eq(67L))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/Recommendation?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Recommendation with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_recommendation() throws Exception {
+                mockMvc.perform(patch("/api/Recommendation?id=67")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"done\":false}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_recommendation() throws Exception {
+                // arrange
+
+                Recommendation stored = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+                stored.setVersion(3L);
+
+                Recommendation expected = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+                expected.setVersion(3L);
+                expected.setDone(false);
+
+                when(recommendationRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+                when(recommendationRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/Recommendation?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"done\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).findById(67L);
+                verify(recommendationRepository, times(1)).save(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_recommendation_with_stale_if_match() throws Exception {
+                // arrange
+
+                Recommendation stored = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(true)
+                                .build();
+                stored.setVersion(4L);
+
+                when(recommendationRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/Recommendation?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"done\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Recommendation with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_recommendation_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(recommendationRepository.findById(eq(67L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/Recommendation?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"done\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Recommendation with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_recommendations() throws Exception {
+                // arrange
+
+                when(recommendationRepository.deleteByIdIn(eq(Set.of(15L, 16L)))).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/Recommendation/bulk?ids=15,16,15")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).deleteByIdIn(Set.of(15L, 16L));
+                verify(recommendationRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 Recommendation records", json.get("message"));
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_pending() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/pending"))
+                                .andExpect(status().is(403)); // logged out users can't get anything
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_gets_pending_recommendations_for_a_professor() throws Exception {
+                // arrange
+
+                Recommendation recommendation1 = Recommendation.builder()
+                                .requesterEmail("cgaucho@ucsb.edu")
+                                .professorEmail("phtcon@ucsb.edu")
+                                .explanation("BS/MS program")
+                                .dateRequested(LocalDateTime.parse("2022-04-20T00:00:00"))
+                                .dateNeeded(LocalDateTime.parse("2022-05-01T00:00:00"))
+                                .done(false)
+                                .build();
+
+                Pageable pageable = PageRequest.of(1, 5);
+                Page<Recommendation> expected = new PageImpl<>(List.of(recommendation1), pageable, 6);
+                when(recommendationRepository.findByProfessorEmailAndDoneFalseOrderByDateNeededAsc(eq("phtcon@ucsb.edu"), eq(pageable)))
+                                .thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/pending?professorEmail=phtcon@ucsb.edu&page=1&size=5"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationRepository, times(1)).findByProfessorEmailAndDoneFalseOrderByDateNeededAsc("phtcon@ucsb.edu", pageable);
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void pending_defaults_to_current_user_and_caps_page_size() throws Exception {
+                // arrange
+
+                Pageable pageable = PageRequest.of(0, 100);
+                when(recommendationRepository.findByProfessorEmailAndDoneFalseOrderByDateNeededAsc(eq("user@example.org"), eq(pageable)))
+                                .thenReturn(new PageImpl<>(List.of(), pageable, 0));
+
+                // act
+                mockMvc.perform(get("/api/Recommendation/pending?size=5000"))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(recommendationRepository, times(1)).findByProfessorEmailAndDoneFalseOrderByDateNeededAsc("user@example.org", pageable);
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_workload() throws Exception {
+                mockMvc.perform(get("/api/Recommendation/workload"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_gets_cached_workloads() throws Exception {
+                // arrange
+
+                List<ProfessorWorkload> expected = List.of(
+                                ProfessorWorkload.builder().professorEmail("phtcon@ucsb.edu").pending(3L).overdue(1L).done(12L).build(),
+                                ProfessorWorkload.builder().professorEmail("ziad@ucsb.edu").pending(0L).overdue(0L).done(2L).build());
+                when(recommendationWorkloadService.getWorkloads()).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/Recommendation/workload"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(recommendationWorkloadService, times(1)).getWorkloads();
+                verify(recommendationRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
 }
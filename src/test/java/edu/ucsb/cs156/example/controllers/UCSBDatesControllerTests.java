@@ -5,23 +5,31 @@ import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDate;
 import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+import edu.ucsb.cs156.example.services.UCSBDateCalendarService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.util.AopTestUtils;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 import java.util.Optional;
 
@@ -42,6 +50,12 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        UCSBDateCalendarService ucsbDateCalendarService;
+
+        @Autowired
+        UCSBDatesController ucsbDatesController;
+
         // Authorization tests for /api/ucsbdates/admin/all
 
         @Test
@@ -189,6 +203,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDateRepository, times(1)).save(ucsbDate1);
+                verify(ucsbDateCalendarService, times(1)).invalidate();
                 String expectedJson = mapper.writeValueAsString(ucsbDate1);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -199,15 +214,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
 
-                LocalDateTime ldt1 = LocalDateTime.parse("2022-01-03T00:00:00");
-
-                UCSBDate ucsbDate1 = UCSBDate.builder()
-                                .name("firstDayOfClasses")
-                                .quarterYYYYQ("20222")
-                                .localDateTime(ldt1)
-                                .build();
-
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.of(ucsbDate1));
+                when(ucsbDateRepository.deleteByIdReturningCount(eq(15L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +223,9 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
-                verify(ucsbDateRepository, times(1)).delete(any());
+                verify(ucsbDateRepository, times(1)).deleteByIdReturningCount(15L);
+                verify(ucsbDateCalendarService, times(1)).invalidate();
+                verify(ucsbDateRepository, times(0)).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 deleted", json.get("message"));
@@ -229,7 +237,7 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDateRepository.findById(eq(15L))).thenReturn(Optional.empty());
+                when(ucsbDateRepository.deleteByIdReturningCount(eq(15L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +246,8 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDateRepository, times(1)).findById(15L);
+                verify(ucsbDateRepository, times(1)).deleteByIdReturningCount(15L);
+                verify(ucsbDateCalendarService, times(0)).invalidate();
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDate with id 15 not found", json.get("message"));
         }
@@ -315,4 +324,437 @@ public class UCSBDatesControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDate with id 67 not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_ucsbdate() throws Exception {
+                // arrange
+
+                UCSBDate stored = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates?id=67"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_ucsbdate_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                UCSBDate edited = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDateRepository.updateIfVersionMatches(eq(67L), eq(3L), eq(edited))).thenReturn(1);
+
+                // quarter is set by the database update, not sent by the client
+                UCSBDate expected = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .quarter(20222)
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+                expected.setId(67L);
+                expected.setVersion(4L);
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).updateIfVersionMatches(eq(67L), eq(3L), eq(edited));
+                verify(ucsbDateRepository, times(1)).findById(eq(67L));
+                verify(ucsbDateRepository, times(0)).save(any());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_ucsbdate_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                UCSBDate edited = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDateRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("UCSBDate with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_ucsbdate() throws Exception {
+                // arrange
+
+                UCSBDate edited = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDateRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(ucsbDateRepository.existsById(eq(67L))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_ucsbdate() throws Exception {
+                mockMvc.perform(patch("/api/ucsbdates?id=67")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"name\":\"lastDayOfClasses\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_ucsbdate() throws Exception {
+                // arrange
+
+                UCSBDate stored = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+                stored.setVersion(3L);
+
+                UCSBDate expected = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+                expected.setVersion(3L);
+                expected.setName("lastDayOfClasses");
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+                when(ucsbDateRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"name\":\"lastDayOfClasses\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findById(67L);
+                verify(ucsbDateRepository, times(1)).save(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_ucsbdate_with_stale_if_match() throws Exception {
+                // arrange
+
+                UCSBDate stored = UCSBDate.builder()
+                                .quarterYYYYQ("20222")
+                                .name("firstDayOfClasses")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+                stored.setVersion(4L);
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdates?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"name\":\"lastDayOfClasses\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_ucsbdate_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdates?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"name\":\"lastDayOfClasses\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDate with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_ucsbdates() throws Exception {
+                // arrange
+
+                when(ucsbDateRepository.deleteByIdIn(eq(Set.of(15L, 16L)))).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdates/bulk?ids=15,16,15")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).deleteByIdIn(Set.of(15L, 16L));
+                verify(ucsbDateRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 UCSBDate records", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_get_dates_in_a_range() throws Exception {
+                // arrange
+
+                LocalDateTime start = LocalDateTime.parse("2022-03-01T00:00:00");
+                LocalDateTime end = LocalDateTime.parse("2022-03-31T23:59:59");
+
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                List<UCSBDate> expectedDates = List.of(ucsbDate1);
+                when(ucsbDateRepository.findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(eq(start), eq(end))).thenReturn(expectedDates);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/range?start=2022-03-01T00:00:00&end=2022-03-31T23:59:59"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(start, end);
+                String expectedJson = mapper.writeValueAsString(expectedDates);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void upcoming_dates_are_limited_to_a_year() throws Exception {
+                // arrange
+
+                when(ucsbDateRepository.findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(any(), any())).thenReturn(List.of());
+                // the controller is proxied for @PreAuthorize, so set the clock on the bean behind it
+                UCSBDatesController controller = AopTestUtils.getTargetObject(ucsbDatesController);
+                controller.clock = Clock.fixed(Instant.parse("2022-03-20T17:00:00Z"), ZoneOffset.UTC);
+
+                // act
+                try {
+                        mockMvc.perform(get("/api/ucsbdates/upcoming?days=100000"))
+                                        .andExpect(status().isOk());
+                } finally {
+                        controller.clock = Clock.systemDefaultZone();
+                }
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(
+                                LocalDateTime.parse("2022-03-20T17:00:00"), LocalDateTime.parse("2023-03-21T17:00:00"));
+        }
+
+        @Test
+        public void calendar_feed_does_not_require_login() throws Exception {
+                // arrange
+
+                UCSBDateCalendarService.Feed feed = new UCSBDateCalendarService.Feed(
+                                "BEGIN:VCALENDAR\r\nEND:VCALENDAR\r\n", Instant.now());
+                when(ucsbDateCalendarService.getFeed()).thenReturn(feed);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/calendar.ics"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", feed.getEtag()))
+                                .andExpect(content().contentTypeCompatibleWith("text/calendar"))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).findAll();
+                assertEquals(feed.getBody(), response.getResponse().getContentAsString());
+        }
+
+        @Test
+        public void calendar_feed_returns_304_for_a_weak_tag_in_a_list() throws Exception {
+                // arrange
+
+                UCSBDateCalendarService.Feed feed = new UCSBDateCalendarService.Feed(
+                                "BEGIN:VCALENDAR\r\nEND:VCALENDAR\r\n", Instant.now());
+                when(ucsbDateCalendarService.getFeed()).thenReturn(feed);
+
+                // act
+                mockMvc.perform(get("/api/ucsbdates/calendar.ics")
+                                                .header("If-None-Match", "\"old\", W/" + feed.getEtag()))
+                                .andExpect(status().isNotModified());
+        }
+
+        @Test
+        public void calendar_feed_returns_304_when_unchanged() throws Exception {
+                // arrange
+
+                UCSBDateCalendarService.Feed feed = new UCSBDateCalendarService.Feed(
+                                "BEGIN:VCALENDAR\r\nEND:VCALENDAR\r\n", Instant.now());
+                when(ucsbDateCalendarService.getFeed()).thenReturn(feed);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/calendar.ics")
+                                                .header("If-None-Match", feed.getEtag()))
+                                .andExpect(status().isNotModified()).andReturn();
+
+                // assert
+                assertEquals("", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_get_dates_across_quarters() throws Exception {
+                // arrange
+
+                UCSBDate ucsbDate1 = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20221")
+                                .localDateTime(LocalDateTime.parse("2022-01-03T00:00:00"))
+                                .quarter(20221)
+                                .build();
+
+                List<UCSBDate> expectedDates = List.of(ucsbDate1);
+                when(ucsbDateRepository.findAllByQuarterBetweenOrderByQuarterAscLocalDateTimeAsc(eq(20214), eq(20223))).thenReturn(expectedDates);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/quarters?from=20214&to=20223"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(1)).findAllByQuarterBetweenOrderByQuarterAscLocalDateTimeAsc(20214, 20223);
+                String expectedJson = mapper.writeValueAsString(expectedDates);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void quarter_range_rejects_malformed_quarters() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdates/quarters?from=F21&to=20223"))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).findAllByQuarterBetweenOrderByQuarterAscLocalDateTimeAsc(any(Integer.class), any(Integer.class));
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("InvalidQuarterException", json.get("type"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_post_a_date_with_an_invalid_quarter() throws Exception {
+                // act
+                MvcResult response = mockMvc.perform(
+                                post("/api/ucsbdates/post?name=firstDayOfClasses&quarterYYYYQ=20225&localDateTime=2022-01-03T00:00:00")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                verify(ucsbDateRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("quarterYYYYQ must be a four digit year followed by 1-4 (e.g. 20222 for S22), not 20225", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_a_date_to_an_invalid_quarter() throws Exception {
+                // arrange
+
+                UCSBDate stored = UCSBDate.builder()
+                                .name("firstDayOfClasses")
+                                .quarterYYYYQ("20222")
+                                .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+                                .build();
+
+                when(ucsbDateRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(
+                                patch("/api/ucsbdates?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .content("{\"quarterYYYYQ\":\"Spring 2022\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isBadRequest());
+
+                // assert
+                verify(ucsbDateRepository, times(0)).save(any());
+        }
 }
@@ -1,6 +1,8 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.UCSBDiningCommonsLocationService;
+import edu.ucsb.cs156.example.models.CommonsDistance;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
@@ -8,7 +10,9 @@ import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -40,6 +44,9 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        UCSBDiningCommonsLocationService ucsbDiningCommonsLocationService;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -197,6 +204,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).save(ortega);
+                verify(ucsbDiningCommonsLocationService, times(1)).invalidate();
                 String expectedJson = mapper.writeValueAsString(ortega);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -207,17 +215,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
 
-                UCSBDiningCommons portola = UCSBDiningCommons.builder()
-                                .name("Portola")
-                                .code("portola")
-                                .hasSackMeal(true)
-                                .hasTakeOutMeal(true)
-                                .hasDiningCam(true)
-                                .latitude(34.417723)
-                                .longitude(-119.867427)
-                                .build();
-
-                when(ucsbDiningCommonsRepository.findById(eq("portola"))).thenReturn(Optional.of(portola));
+                when(ucsbDiningCommonsRepository.deleteByIdReturningCount(eq("portola"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -226,8 +224,9 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("portola");
-                verify(ucsbDiningCommonsRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsRepository, times(1)).deleteByIdReturningCount("portola");
+                verify(ucsbDiningCommonsLocationService, times(1)).invalidate();
+                verify(ucsbDiningCommonsRepository, times(0)).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id portola deleted", json.get("message"));
@@ -239,7 +238,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsRepository.deleteByIdReturningCount(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -248,7 +247,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsRepository, times(1)).findById("munger-hall");
+                verify(ucsbDiningCommonsRepository, times(1)).deleteByIdReturningCount("munger-hall");
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
         }
@@ -294,6 +293,7 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
                 verify(ucsbDiningCommonsRepository, times(1)).save(carrilloEdited); // should be saved with updated info
+                verify(ucsbDiningCommonsLocationService, times(1)).invalidate();
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -332,4 +332,359 @@ public class UCSBDiningCommonsControllerTests extends ControllerTestCase {
                 assertEquals("UCSBDiningCommons with id munger-hall not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons stored = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+                stored.setVersion(3L);
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons?code=carrillo"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_commons_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsRepository.updateIfVersionMatches(eq("carrillo"), eq(3L), eq(edited))).thenReturn(1);
+
+                UCSBDiningCommons expected = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+                expected.setCode("carrillo");
+                expected.setVersion(4L);
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).updateIfVersionMatches(eq("carrillo"), eq(3L), eq(edited));
+                verify(ucsbDiningCommonsRepository, times(1)).findById(eq("carrillo"));
+                verify(ucsbDiningCommonsRepository, times(0)).save(any());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_commons_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsRepository.updateIfVersionMatches(eq("carrillo"), eq(3L), any())).thenReturn(0);
+                when(ucsbDiningCommonsRepository.existsById(eq("carrillo"))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("UCSBDiningCommons with id carrillo has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons edited = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsRepository.updateIfVersionMatches(eq("carrillo"), eq(3L), any())).thenReturn(0);
+                when(ucsbDiningCommonsRepository.existsById(eq("carrillo"))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/ucsbdiningcommons?code=carrillo")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id carrillo not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_commons() throws Exception {
+                mockMvc.perform(patch("/api/ucsbdiningcommons?code=carrillo")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"hasDiningCam\":true,\"code\":\"portola\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons stored = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+                stored.setVersion(3L);
+
+                UCSBDiningCommons expected = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+                expected.setVersion(3L);
+                expected.setHasDiningCam(true);
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(stored));
+                when(ucsbDiningCommonsRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=carrillo")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"hasDiningCam\":true,\"code\":\"portola\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).findById("carrillo");
+                verify(ucsbDiningCommonsRepository, times(1)).save(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_commons_with_stale_if_match() throws Exception {
+                // arrange
+
+                UCSBDiningCommons stored = UCSBDiningCommons.builder()
+                                .name("Carrillo Dining Hall")
+                                .code("carrillo")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(false)
+                                .latitude(34.409954)
+                                .longitude(-119.85278)
+                                .build();
+                stored.setVersion(4L);
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=carrillo")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"hasDiningCam\":true,\"code\":\"portola\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id carrillo has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_commons_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsRepository.findById(eq("carrillo"))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/ucsbdiningcommons?code=carrillo")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"hasDiningCam\":true,\"code\":\"portola\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommons with id carrillo not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_commonss() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsRepository.deleteByIdIn(eq(Set.of("carrillo", "portola")))).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/ucsbdiningcommons/bulk?codes=carrillo,portola,carrillo")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsRepository, times(1)).deleteByIdIn(Set.of("carrillo", "portola"));
+                verify(ucsbDiningCommonsRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 UCSBDiningCommons records", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_find_nearest_commons() throws Exception {
+                // arrange
+
+                UCSBDiningCommons ortega = UCSBDiningCommons.builder()
+                                .name("Ortega")
+                                .code("ortega")
+                                .hasSackMeal(true)
+                                .hasTakeOutMeal(true)
+                                .hasDiningCam(true)
+                                .latitude(34.410987)
+                                .longitude(-119.84709)
+                                .build();
+
+                List<CommonsDistance> expected = List.of(new CommonsDistance(ortega, 120.5));
+                when(ucsbDiningCommonsLocationService.nearest(eq(34.41), eq(-119.846), eq(1))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/nearest?latitude=34.41&longitude=-119.846"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsLocationService, times(1)).nearest(34.41, -119.846, 1);
+                verify(ucsbDiningCommonsRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(expected);
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(expectedJson, responseString);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void nearest_count_is_capped() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsLocationService.nearest(eq(34.41), eq(-119.846), eq(20))).thenReturn(List.of());
+
+                // act
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?latitude=34.41&longitude=-119.846&count=5000"))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(ucsbDiningCommonsLocationService, times(1)).nearest(34.41, -119.846, 20);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_find_commons_within_a_radius() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsLocationService.within(eq(34.41), eq(-119.846), eq(500.0))).thenReturn(List.of());
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/ucsbdiningcommons/within?latitude=34.41&longitude=-119.846&radiusMeters=500"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsLocationService, times(1)).within(34.41, -119.846, 500.0);
+                assertEquals("[]", response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void location_queries_reject_out_of_range_coordinates() throws Exception {
+                mockMvc.perform(get("/api/ucsbdiningcommons/within?latitude=134.41&longitude=-119.846&radiusMeters=500"))
+                                .andExpect(status().isBadRequest());
+                mockMvc.perform(get("/api/ucsbdiningcommons/nearest?latitude=34.41&longitude=-219.846"))
+                                .andExpect(status().isBadRequest());
+
+                verify(ucsbDiningCommonsLocationService, times(0)).within(any(Double.class), any(Double.class), any(Double.class));
+                verify(ucsbDiningCommonsLocationService, times(0)).nearest(any(Double.class), any(Double.class), any(Integer.class));
+        }
 }
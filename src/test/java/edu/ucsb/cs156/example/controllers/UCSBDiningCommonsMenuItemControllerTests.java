@@ -1,14 +1,20 @@
 package edu.ucsb.cs156.example.controllers;
 
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.DiningCommonsMenuImportService;
+import edu.ucsb.cs156.example.services.DiningCommonsMenuService;
+import edu.ucsb.cs156.example.services.MenuItemAutocompleteService;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
 import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -40,6 +46,15 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        DiningCommonsMenuService diningCommonsMenuService;
+
+        @MockBean
+        MenuItemAutocompleteService menuItemAutocompleteService;
+
+        @MockBean
+        DiningCommonsMenuImportService diningCommonsMenuImportService;
+
         // Authorization tests for /api/UCSBDiningCommonsMenuItem/admin/all
 
         @Test
@@ -181,6 +196,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
 
                 // assert
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(menuitem);
+                verify(diningCommonsMenuService, times(1)).invalidate("DLG");
+                verify(menuItemAutocompleteService, times(1)).invalidate();
                 String expectedJson = mapper.writeValueAsString(menuitem);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -191,13 +208,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
         public void admin_can_delete_a_menu_item() throws Exception {
                 // arrange
 
-                UCSBDiningCommonsMenuItem menuitem = UCSBDiningCommonsMenuItem.builder()
-                                .name("Mac n Cheese Pizza")
-                                .diningCommonsCode("DLG")
-                                .station("Pizza corner")
-                                .build();
-
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.of(menuitem));
+                when(ucsbDiningCommonsMenuItemRepository.deleteByIdReturningCount(eq(1L))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -206,8 +217,10 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).delete(any());
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteByIdReturningCount(1L);
+                verify(diningCommonsMenuService, times(1)).invalidateAll();
+                verify(menuItemAutocompleteService, times(1)).invalidate();
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 1 deleted", json.get("message"));
@@ -219,7 +232,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                         throws Exception {
                 // arrange
 
-                when(ucsbDiningCommonsMenuItemRepository.findById(eq(1L))).thenReturn(Optional.empty());
+                when(ucsbDiningCommonsMenuItemRepository.deleteByIdReturningCount(eq(1L))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -228,7 +241,7 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteByIdReturningCount(1L);
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBDiningCommonsMenuItem with id 1 not found", json.get("message"));
         }
@@ -266,6 +279,8 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 // assert
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(1L);
                 verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(menuitem_edit); // should be saved with updated info
+                verify(diningCommonsMenuService, times(1)).invalidate("DLG", "Ortega");
+                verify(menuItemAutocompleteService, times(1)).invalidate();
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -300,4 +315,373 @@ public class UCSBDiningCommonsMenuItemControllerTests extends ControllerTestCase
                 assertEquals("UCSBDiningCommonsMenuItem with id 1 not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_menu_item() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem stored = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+                stored.setVersion(3L);
+
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem?id=67"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_menu_item_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsMenuItemRepository.updateIfVersionMatches(eq(67L), eq(3L), eq(edited))).thenReturn(1);
+
+                UCSBDiningCommonsMenuItem expected = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+                expected.setId(67L);
+                expected.setVersion(4L);
+
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/UCSBDiningCommonsMenuItem?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).updateIfVersionMatches(eq(67L), eq(3L), eq(edited));
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(eq(67L));
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).save(any());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_menu_item_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsMenuItemRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(ucsbDiningCommonsMenuItemRepository.existsById(eq(67L))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/UCSBDiningCommonsMenuItem?id=67")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("UCSBDiningCommonsMenuItem with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_menu_item() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem edited = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbDiningCommonsMenuItemRepository.updateIfVersionMatches(eq(67L), eq(3L), any())).thenReturn(0);
+                when(ucsbDiningCommonsMenuItemRepository.existsById(eq(67L))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/UCSBDiningCommonsMenuItem?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommonsMenuItem with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_menu_item() throws Exception {
+                mockMvc.perform(patch("/api/UCSBDiningCommonsMenuItem?id=67")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"station\":\"Grill\"}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_menu_item() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem stored = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+                stored.setVersion(3L);
+
+                UCSBDiningCommonsMenuItem expected = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+                expected.setVersion(3L);
+                expected.setStation("Grill");
+
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+                when(ucsbDiningCommonsMenuItemRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/UCSBDiningCommonsMenuItem?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"station\":\"Grill\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).findById(67L);
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).save(expected);
+                verify(diningCommonsMenuService, times(1)).invalidate("ortega", "ortega");
+                verify(menuItemAutocompleteService, times(1)).invalidate();
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_menu_item_with_stale_if_match() throws Exception {
+                // arrange
+
+                UCSBDiningCommonsMenuItem stored = UCSBDiningCommonsMenuItem.builder()
+                                .diningCommonsCode("ortega")
+                                .name("Baked Pesto Pasta with Chicken")
+                                .station("Entree Specials")
+                                .build();
+                stored.setVersion(4L);
+
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/UCSBDiningCommonsMenuItem?id=67")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"station\":\"Grill\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommonsMenuItem with id 67 has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_menu_item_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsMenuItemRepository.findById(eq(67L))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/UCSBDiningCommonsMenuItem?id=67")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"station\":\"Grill\"}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBDiningCommonsMenuItem with id 67 not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_menu_items() throws Exception {
+                // arrange
+
+                when(ucsbDiningCommonsMenuItemRepository.deleteByIdIn(eq(Set.of(15L, 16L)))).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/UCSBDiningCommonsMenuItem/bulk?ids=15,16,15")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbDiningCommonsMenuItemRepository, times(1)).deleteByIdIn(Set.of(15L, 16L));
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 UCSBDiningCommonsMenuItem records", json.get("message"));
+        }
+
+        @Test
+        public void logged_out_users_cannot_get_menu() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/menu?diningCommonsCode=ortega"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_gets_cached_menu_for_one_commons() throws Exception {
+                // arrange
+
+                String menuJson = "[{\"station\":\"Grill\",\"items\":[]}]";
+                when(diningCommonsMenuService.getMenuJson(eq("ortega"))).thenReturn(menuJson);
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/menu?diningCommonsCode=ortega"))
+                                .andExpect(status().isOk())
+                                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                                .andReturn();
+
+                // assert
+                verify(diningCommonsMenuService, times(1)).getMenuJson("ortega");
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).findAll();
+                assertEquals(menuJson, response.getResponse().getContentAsString());
+        }
+
+        @Test
+        public void logged_out_users_cannot_autocomplete() throws Exception {
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/autocomplete?prefix=bu"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_gets_suggestions_for_a_prefix() throws Exception {
+                // arrange
+
+                when(menuItemAutocompleteService.complete(eq("bu"), eq("ortega"), eq(5)))
+                                .thenReturn(List.of("Burger", "Burrito"));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/autocomplete?prefix=bu&diningCommonsCode=ortega&limit=5"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(menuItemAutocompleteService, times(1)).complete("bu", "ortega", 5);
+                String expectedJson = mapper.writeValueAsString(List.of("Burger", "Burrito"));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void autocomplete_limit_is_capped() throws Exception {
+                // arrange
+
+                when(menuItemAutocompleteService.complete(eq("bu"), eq(null), eq(25))).thenReturn(List.of());
+
+                // act
+                mockMvc.perform(get("/api/UCSBDiningCommonsMenuItem/autocomplete?prefix=bu&limit=1000"))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(menuItemAutocompleteService, times(1)).complete("bu", null, 25);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_replace_a_menu() throws Exception {
+                mockMvc.perform(put("/api/UCSBDiningCommonsMenuItem/menu?diningCommonsCode=ortega")
+                                .contentType("text/csv")
+                                .content("station,name\n")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_replace_the_menu_for_one_commons() throws Exception {
+                // arrange
+
+                when(diningCommonsMenuImportService.replaceMenu(eq("ortega"), any())).thenReturn(new BulkWriteResult(3, 0, 40, 2));
+
+                // act
+                MvcResult response = mockMvc.perform(put("/api/UCSBDiningCommonsMenuItem/menu?diningCommonsCode=ortega")
+                                .contentType("text/csv")
+                                .content("station,name\nGrill,Burger\nGrill,Fries\n")
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(diningCommonsMenuImportService, times(1)).replaceMenu(eq("ortega"), any());
+                verify(ucsbDiningCommonsMenuItemRepository, times(0)).save(any());
+                verify(diningCommonsMenuService, times(1)).invalidate("ortega");
+                verify(menuItemAutocompleteService, times(1)).invalidate();
+                String expectedJson = mapper.writeValueAsString(new BulkWriteResult(3, 0, 40, 2));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void replacing_a_menu_with_itself_keeps_the_caches() throws Exception {
+                // arrange
+
+                when(diningCommonsMenuImportService.replaceMenu(eq("ortega"), any())).thenReturn(new BulkWriteResult(0, 0, 42, 0));
+
+                // act
+                mockMvc.perform(put("/api/UCSBDiningCommonsMenuItem/menu?diningCommonsCode=ortega")
+                                .contentType("text/csv")
+                                .content("station,name\nGrill,Burger\n")
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(diningCommonsMenuService, times(0)).invalidate("ortega");
+                verify(menuItemAutocompleteService, times(0)).invalidate();
+        }
 }
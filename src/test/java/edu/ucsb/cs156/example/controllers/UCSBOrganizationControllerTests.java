@@ -4,11 +4,17 @@ import edu.ucsb.cs156.example.repositories.UserRepository;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
 import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+import edu.ucsb.cs156.example.services.UCSBOrganizationImportService;
+import edu.ucsb.cs156.example.services.UCSBOrganizationSearchService;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -40,6 +46,12 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         @MockBean
         UserRepository userRepository;
 
+        @MockBean
+        UCSBOrganizationSearchService ucsbOrganizationSearchService;
+
+        @MockBean
+        UCSBOrganizationImportService ucsbOrganizationImportService;
+
         // Authorization tests for /api/ucsbdiningcommons/admin/all
 
         @Test
@@ -190,6 +202,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
 
                 // assert
                 verify(ucsbOrganizationRepository, times(1)).save(osli);
+                verify(ucsbOrganizationSearchService, times(1)).rebuild();
                 String expectedJson = mapper.writeValueAsString(osli);
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(expectedJson, responseString);
@@ -200,14 +213,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
         public void admin_can_delete_a_date() throws Exception {
                 // arrange
 
-                UCSBOrganization krc = UCSBOrganization.builder()
-                                .orgCode("KRC")
-                                .orgTranslationShort("KOREAN RADIO CL")
-                                .orgTranslation("KOREAN RADIO CLUB")
-                                .inactive(false)
-                                .build();
-
-                when(ucsbOrganizationRepository.findById(eq("KRC"))).thenReturn(Optional.of(krc));
+                when(ucsbOrganizationRepository.deleteByIdReturningCount(eq("KRC"))).thenReturn(1);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -216,8 +222,9 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isOk()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("KRC");
-                verify(ucsbOrganizationRepository, times(1)).delete(any());
+                verify(ucsbOrganizationRepository, times(1)).deleteByIdReturningCount("KRC");
+                verify(ucsbOrganizationSearchService, times(1)).rebuild();
+                verify(ucsbOrganizationRepository, times(0)).findById(any());
 
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id KRC deleted", json.get("message"));
@@ -229,7 +236,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                         throws Exception {
                 // arrange
 
-                when(ucsbOrganizationRepository.findById(eq("munger-hall"))).thenReturn(Optional.empty());
+                when(ucsbOrganizationRepository.deleteByIdReturningCount(eq("munger-hall"))).thenReturn(0);
 
                 // act
                 MvcResult response = mockMvc.perform(
@@ -238,7 +245,8 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                                 .andExpect(status().isNotFound()).andReturn();
 
                 // assert
-                verify(ucsbOrganizationRepository, times(1)).findById("munger-hall");
+                verify(ucsbOrganizationRepository, times(1)).deleteByIdReturningCount("munger-hall");
+                verify(ucsbOrganizationSearchService, times(0)).rebuild();
                 Map<String, Object> json = responseToJson(response);
                 assertEquals("UCSBOrganization with id munger-hall not found", json.get("message"));
         }
@@ -278,6 +286,7 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                 // assert
                 verify(ucsbOrganizationRepository, times(1)).findById("KRC");
                 verify(ucsbOrganizationRepository, times(1)).save(krcEdited); // should be saved with updated info
+                verify(ucsbOrganizationSearchService, times(1)).rebuild();
                 String responseString = response.getResponse().getContentAsString();
                 assertEquals(requestBody, responseString);
         }
@@ -313,4 +322,382 @@ public class UCSBOrganizationControllerTests extends ControllerTestCase {
                 assertEquals("UCSBOrganization with id munger-hall not found", json.get("message"));
 
         }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void get_by_id_returns_version_as_etag_for_organization() throws Exception {
+                // arrange
+
+                UCSBOrganization stored = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+                stored.setVersion(3L);
+
+                when(ucsbOrganizationRepository.findById(eq("ZPR"))).thenReturn(Optional.of(stored));
+
+                // act
+                mockMvc.perform(get("/api/UCSBOrganization?orgCode=ZPR"))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"3\""));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_edit_organization_with_matching_if_match_in_one_statement() throws Exception {
+                // arrange
+
+                UCSBOrganization edited = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbOrganizationRepository.updateIfVersionMatches(eq("ZPR"), eq(3L), eq(edited))).thenReturn(1);
+
+                UCSBOrganization expected = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+                expected.setOrgCode("ZPR");
+                expected.setVersion(4L);
+
+                when(ucsbOrganizationRepository.findById(eq("ZPR"))).thenReturn(Optional.of(expected));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/UCSBOrganization?orgCode=ZPR")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string("ETag", "\"4\""))
+                                .andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).updateIfVersionMatches(eq("ZPR"), eq(3L), eq(edited));
+                verify(ucsbOrganizationSearchService, times(1)).rebuild();
+                verify(ucsbOrganizationRepository, times(1)).findById(eq("ZPR"));
+                verify(ucsbOrganizationRepository, times(0)).save(any());
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_when_organization_changed_since_if_match_version() throws Exception {
+                // arrange
+
+                UCSBOrganization edited = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbOrganizationRepository.updateIfVersionMatches(eq("ZPR"), eq(3L), any())).thenReturn(0);
+                when(ucsbOrganizationRepository.existsById(eq("ZPR"))).thenReturn(true);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/UCSBOrganization?orgCode=ZPR")
+                                                .header("If-Match", "W/\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("VersionConflictException", json.get("type"));
+                assertEquals("UCSBOrganization with id ZPR has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_404_for_conditional_edit_of_missing_organization() throws Exception {
+                // arrange
+
+                UCSBOrganization edited = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+
+                String requestBody = mapper.writeValueAsString(edited);
+
+                when(ucsbOrganizationRepository.updateIfVersionMatches(eq("ZPR"), eq(3L), any())).thenReturn(0);
+                when(ucsbOrganizationRepository.existsById(eq("ZPR"))).thenReturn(false);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                put("/api/UCSBOrganization?orgCode=ZPR")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType(MediaType.APPLICATION_JSON)
+                                                .characterEncoding("utf-8")
+                                                .content(requestBody)
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBOrganization with id ZPR not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_patch_organization() throws Exception {
+                mockMvc.perform(patch("/api/UCSBOrganization?orgCode=ZPR")
+                                .contentType("application/merge-patch+json")
+                                .content("{\"inactive\":false}")
+                                .with(csrf()))
+                                .andExpect(status().is(403)); // only admins can patch
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_patch_only_some_fields_of_organization() throws Exception {
+                // arrange
+
+                UCSBOrganization stored = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+                stored.setVersion(3L);
+
+                UCSBOrganization expected = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+                expected.setVersion(3L);
+                expected.setInactive(false);
+
+                when(ucsbOrganizationRepository.findById(eq("ZPR"))).thenReturn(Optional.of(stored));
+                when(ucsbOrganizationRepository.save(eq(expected))).thenReturn(expected);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/UCSBOrganization?orgCode=ZPR")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"inactive\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).findById("ZPR");
+                verify(ucsbOrganizationRepository, times(1)).save(expected);
+                verify(ucsbOrganizationSearchService, times(1)).rebuild();
+                String responseString = response.getResponse().getContentAsString();
+                assertEquals(mapper.writeValueAsString(expected), responseString);
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_gets_409_patching_organization_with_stale_if_match() throws Exception {
+                // arrange
+
+                UCSBOrganization stored = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(true)
+                                .build();
+                stored.setVersion(4L);
+
+                when(ucsbOrganizationRepository.findById(eq("ZPR"))).thenReturn(Optional.of(stored));
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/UCSBOrganization?orgCode=ZPR")
+                                                .header("If-Match", "\"3\"")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"inactive\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isConflict()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBOrganization with id ZPR has been modified since version 3", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_cannot_patch_organization_that_does_not_exist() throws Exception {
+                // arrange
+
+                when(ucsbOrganizationRepository.findById(eq("ZPR"))).thenReturn(Optional.empty());
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                patch("/api/UCSBOrganization?orgCode=ZPR")
+                                                .contentType("application/merge-patch+json")
+                                                .characterEncoding("utf-8")
+                                                .content("{\"inactive\":false}")
+                                                .with(csrf()))
+                                .andExpect(status().isNotFound()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(0)).save(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("UCSBOrganization with id ZPR not found", json.get("message"));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_bulk_delete_organizations() throws Exception {
+                // arrange
+
+                when(ucsbOrganizationRepository.deleteByIdIn(eq(Set.of("ZPR", "KRC")))).thenReturn(1);
+
+                // act
+                MvcResult response = mockMvc.perform(
+                                delete("/api/UCSBOrganization/bulk?orgCodes=ZPR,KRC,ZPR")
+                                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationRepository, times(1)).deleteByIdIn(Set.of("ZPR", "KRC"));
+                verify(ucsbOrganizationSearchService, times(1)).rebuild();
+                verify(ucsbOrganizationRepository, times(0)).findById(any());
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("Deleted 1 of 2 UCSBOrganization records", json.get("message"));
+        }
+
+        @Test
+        public void logged_out_users_cannot_search_organizations() throws Exception {
+                mockMvc.perform(get("/api/UCSBOrganization/search?q=zeta"))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void user_can_search_organizations() throws Exception {
+                // arrange
+
+                UCSBOrganization zpr = UCSBOrganization.builder()
+                                .orgCode("ZPR")
+                                .orgTranslationShort("ZETA PHI RHO")
+                                .orgTranslation("ZETA PHI RHO")
+                                .inactive(false)
+                                .build();
+
+                when(ucsbOrganizationSearchService.search(eq("zeta ph"), eq(false), eq(10))).thenReturn(List.of(zpr));
+
+                // act
+                MvcResult response = mockMvc.perform(get("/api/UCSBOrganization/search?q=zeta ph"))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationSearchService, times(1)).search("zeta ph", false, 10);
+                verify(ucsbOrganizationRepository, times(0)).findAll();
+                String expectedJson = mapper.writeValueAsString(List.of(zpr));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void search_can_include_inactive_organizations_and_caps_limit() throws Exception {
+                // arrange
+
+                when(ucsbOrganizationSearchService.search(eq("k"), eq(true), eq(25))).thenReturn(List.of());
+
+                // act
+                mockMvc.perform(get("/api/UCSBOrganization/search?q=k&includeInactive=true&limit=500"))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(ucsbOrganizationSearchService, times(1)).search("k", true, 25);
+        }
+
+        @WithMockUser(roles = { "USER" })
+        @Test
+        public void logged_in_regular_users_cannot_import() throws Exception {
+                mockMvc.perform(post("/api/UCSBOrganization/import")
+                                .contentType("text/csv")
+                                .content("orgCode,orgTranslationShort,orgTranslation,inactive\n")
+                                .with(csrf()))
+                                .andExpect(status().is(403));
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void admin_can_import_organizations_from_csv() throws Exception {
+                // arrange
+
+                when(ucsbOrganizationImportService.importCsv(any())).thenReturn(new BulkWriteResult(2, 1, 5, 0));
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/UCSBOrganization/import")
+                                .contentType("text/csv")
+                                .content("orgCode,orgTranslationShort,orgTranslation,inactive\nZPR,ZETA PHI RHO,ZETA PHI RHO,false\n")
+                                .with(csrf()))
+                                .andExpect(status().isOk()).andReturn();
+
+                // assert
+                verify(ucsbOrganizationImportService, times(1)).importCsv(any());
+                verify(ucsbOrganizationRepository, times(0)).save(any());
+                verify(ucsbOrganizationSearchService, times(1)).rebuild();
+                String expectedJson = mapper.writeValueAsString(new BulkWriteResult(2, 1, 5, 0));
+                assertEquals(expectedJson, response.getResponse().getContentAsString());
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void import_with_nothing_new_leaves_search_index_alone() throws Exception {
+                // arrange
+
+                when(ucsbOrganizationImportService.importCsv(any())).thenReturn(new BulkWriteResult(0, 0, 8, 0));
+
+                // act
+                mockMvc.perform(post("/api/UCSBOrganization/import")
+                                .contentType("text/csv")
+                                .content("orgCode,orgTranslationShort,orgTranslation,inactive\n")
+                                .with(csrf()))
+                                .andExpect(status().isOk());
+
+                // assert
+                verify(ucsbOrganizationSearchService, times(0)).rebuild();
+        }
+
+        @WithMockUser(roles = { "ADMIN", "USER" })
+        @Test
+        public void malformed_csv_import_gets_400() throws Exception {
+                // arrange
+
+                when(ucsbOrganizationImportService.importCsv(any()))
+                                .thenThrow(new CsvFormatException(3, "orgCode is empty"));
+
+                // act
+                MvcResult response = mockMvc.perform(post("/api/UCSBOrganization/import")
+                                .contentType("text/csv")
+                                .content("orgCode,orgTranslationShort,orgTranslation,inactive\n")
+                                .with(csrf()))
+                                .andExpect(status().isBadRequest()).andReturn();
+
+                // assert
+                Map<String, Object> json = responseToJson(response);
+                assertEquals("CsvFormatException", json.get("type"));
+                assertEquals("CSV line 3: orgCode is empty", json.get("message"));
+        }
 }
@@ -3,6 +3,7 @@ package edu.ucsb.cs156.example.controllers;
 import edu.ucsb.cs156.example.ControllerTestCase;
 import edu.ucsb.cs156.example.models.CurrentUser;
 import edu.ucsb.cs156.example.repositories.UserRepository;
+import edu.ucsb.cs156.example.services.CurrentUserResponseCache;
 import edu.ucsb.cs156.example.testconfig.TestConfig;
 
 import org.junit.jupiter.api.Test;
@@ -17,7 +18,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(controllers = UserInfoController.class)
-@Import(TestConfig.class)
+@Import({ TestConfig.class, CurrentUserResponseCache.class })
 public class UserInfoControllerTests extends ControllerTestCase {
 
   @MockBean
@@ -46,5 +47,48 @@ public class UserInfoControllerTests extends ControllerTestCase {
     // assert
     String responseString = response.getResponse().getContentAsString();
     assertEquals(expectedJson, responseString);
+    assertEquals("no-cache, private", response.getResponse().getHeader("Cache-Control"));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void currentUser__unchanged_since_last_time() throws Exception {
+
+    // arrange
+
+    String etag = mockMvc.perform(get("/api/currentUser"))
+        .andExpect(status().isOk()).andReturn().getResponse().getHeader("ETag");
+
+    // act and assert
+
+    mockMvc.perform(get("/api/currentUser").header("If-None-Match", etag))
+        .andExpect(status().isNotModified())
+        .andExpect(header().string("ETag", etag))
+        .andExpect(content().string(""));
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void currentUser__if_none_match_lists_weak_tags_and_wildcards() throws Exception {
+
+    // arrange
+
+    String etag = mockMvc.perform(get("/api/currentUser"))
+        .andExpect(status().isOk()).andReturn().getResponse().getHeader("ETag");
+
+    // act and assert
+
+    mockMvc.perform(get("/api/currentUser").header("If-None-Match", "\"stale\", W/" + etag))
+        .andExpect(status().isNotModified());
+    mockMvc.perform(get("/api/currentUser").header("If-None-Match", "*"))
+        .andExpect(status().isNotModified());
+  }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void currentUser__stale_etag() throws Exception {
+    mockMvc.perform(get("/api/currentUser").header("If-None-Match", "\"stale\""))
+        .andExpect(status().isOk())
+        .andExpect(header().exists("ETag"));
   }
 }
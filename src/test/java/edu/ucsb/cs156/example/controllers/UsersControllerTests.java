@@ -9,10 +9,16 @@ import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MvcResult;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -21,6 +27,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 @WebMvcTest(controllers = UsersController.class)
 @Import(TestConfig.class)
@@ -70,4 +77,86 @@ public class UsersControllerTests extends ControllerTestCase {
     assertEquals(expectedJson, responseString);
 
   }
+
+  @WithMockUser(roles = { "USER" })
+  @Test
+  public void search__user_logged_in() throws Exception {
+    mockMvc.perform(get("/api/admin/users/search?q=pc"))
+        .andExpect(status().is(403));
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void search__admin_gets_page_of_matching_users() throws Exception {
+
+    // arrange
+
+    User u1 = User.builder().id(1L).email("pconrad@ucsb.edu").fullName("Phill Conrad").build();
+    PageRequest pageRequest = PageRequest.of(2, 10, Sort.by(Sort.Direction.DESC, "fullNameSearch").and(Sort.by("id")));
+    Page<User> page = new PageImpl<>(List.of(u1), pageRequest, 21);
+
+    when(userRepository.search(eq("pc"), eq(pageRequest))).thenReturn(page);
+
+    // act
+
+    MvcResult response = mockMvc.perform(get("/api/admin/users/search?q=%20PC&page=2&size=10&sort=fullName&direction=desc"))
+        .andExpect(status().isOk()).andReturn();
+
+    // assert
+
+    verify(userRepository, times(1)).search("pc", pageRequest);
+    verify(userRepository, times(0)).findAll();
+    String responseString = response.getResponse().getContentAsString();
+    assertEquals(mapper.writeValueAsString(page), responseString);
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void search__without_q_pages_through_everyone() throws Exception {
+
+    // arrange
+
+    PageRequest pageRequest = PageRequest.of(0, 100, Sort.by(Sort.Direction.ASC, "emailSearch").and(Sort.by("id")));
+    when(userRepository.findAll(eq(pageRequest))).thenReturn(new PageImpl<>(List.of(), pageRequest, 0));
+
+    // act
+
+    mockMvc.perform(get("/api/admin/users/search?size=1000"))
+        .andExpect(status().isOk());
+
+    // assert
+
+    verify(userRepository, times(1)).findAll(pageRequest);
+    verify(userRepository, times(0)).search(any(), any());
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void search__sorting_by_id_has_no_tiebreak() throws Exception {
+
+    // arrange
+
+    PageRequest pageRequest = PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "id"));
+    when(userRepository.search(eq("p"), eq(pageRequest))).thenReturn(new PageImpl<>(List.of(), pageRequest, 0));
+
+    // act
+
+    mockMvc.perform(get("/api/admin/users/search?q=p&sort=id&direction=DESC"))
+        .andExpect(status().isOk());
+
+    // assert
+
+    verify(userRepository, times(1)).search("p", pageRequest);
+  }
+
+  @WithMockUser(roles = { "ADMIN", "USER" })
+  @Test
+  public void search__rejects_unknown_sort_or_direction() throws Exception {
+    mockMvc.perform(get("/api/admin/users/search?sort=googleSub"))
+        .andExpect(status().isBadRequest());
+    mockMvc.perform(get("/api/admin/users/search?direction=sideways"))
+        .andExpect(status().isBadRequest());
+
+    verify(userRepository, times(0)).findAll(any(PageRequest.class));
+  }
 }
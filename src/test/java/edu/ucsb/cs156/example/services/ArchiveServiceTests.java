@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.entities.Recommendation;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+
+class ArchiveServiceTests {
+
+  private ArchiveService service;
+  private PlatformTransactionManager transactionManager;
+
+  private final LocalDateTime cutoff = LocalDateTime.parse("2022-01-01T00:00:00");
+
+  @BeforeEach
+  void setup() {
+    transactionManager = mock(PlatformTransactionManager.class);
+    service = new ArchiveService();
+    service.helpRequestRepository = mock(HelpRequestRepository.class);
+    service.recommendationRepository = mock(RecommendationRepository.class);
+    service.helpRequestEventService = mock(HelpRequestEventService.class);
+    service.transactionTemplate = new TransactionTemplate(transactionManager);
+    ReflectionTestUtils.setField(service, "batchSize", 2);
+  }
+
+  private static HelpRequest helpRequest(long id) {
+    return HelpRequest.builder().id(id).solved(true).build();
+  }
+
+  @Test
+  void test_help_requests_are_moved_one_batch_per_transaction() {
+    HelpRequestRepository repo = service.helpRequestRepository;
+    when(repo.lockArchivable(eq(cutoff), eq(PageRequest.of(0, 2))))
+        .thenReturn(List.of(helpRequest(1L), helpRequest(2L)))
+        .thenReturn(List.of(helpRequest(3L)))
+        .thenReturn(List.of());
+    when(repo.deleteByIdIn(List.of(1L, 2L))).thenReturn(2);
+    when(repo.deleteByIdIn(List.of(3L))).thenReturn(1);
+
+    int moved = service.archiveSolvedHelpRequests(cutoff);
+
+    assertEquals(3, moved);
+    verify(repo, times(1)).copyToArchive(List.of(1L, 2L));
+    verify(repo, times(1)).copyToArchive(List.of(3L));
+    verify(transactionManager, times(3)).commit(any());
+    verify(repo, times(1)).stampMissingSolvedTimes();
+  }
+
+  @Test
+  void test_archived_help_requests_are_published_as_deleted_after_commit() {
+    HelpRequestRepository repo = service.helpRequestRepository;
+    when(repo.lockArchivable(eq(cutoff), any()))
+        .thenReturn(List.of(helpRequest(1L), helpRequest(2L)))
+        .thenReturn(List.of());
+    when(repo.deleteByIdIn(List.of(1L, 2L))).thenReturn(2);
+
+    service.archiveSolvedHelpRequests(cutoff);
+
+    InOrder order = inOrder(repo, transactionManager, service.helpRequestEventService);
+    order.verify(repo).deleteByIdIn(List.of(1L, 2L));
+    order.verify(transactionManager).commit(any());
+    order.verify(service.helpRequestEventService).publishDeleted(1L);
+    order.verify(service.helpRequestEventService).publishDeleted(2L);
+  }
+
+  @Test
+  void test_nothing_to_archive() {
+    RecommendationRepository repo = service.recommendationRepository;
+    when(repo.lockArchivable(eq(cutoff), any())).thenReturn(List.of());
+
+    int moved = service.archiveCompletedRecommendations(cutoff);
+
+    assertEquals(0, moved);
+    verify(repo, times(0)).copyToArchive(any());
+    verify(repo, times(0)).deleteByIdIn(any());
+  }
+
+  @Test
+  void test_stops_when_a_batch_deletes_nothing() {
+    RecommendationRepository repo = service.recommendationRepository;
+    when(repo.lockArchivable(eq(cutoff), any())).thenReturn(List.of(Recommendation.builder().id(7L).build()));
+    when(repo.deleteByIdIn(List.of(7L))).thenReturn(0);
+
+    int moved = service.archiveCompletedRecommendations(cutoff);
+
+    assertEquals(0, moved);
+    verify(repo, times(1)).deleteByIdIn(List.of(7L));
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.CacheVersion;
+import edu.ucsb.cs156.example.repositories.CacheVersionRepository;
+
+class CacheVersionServiceTests {
+
+  private CacheVersionService service;
+  private CacheVersionRepository repo;
+
+  private final Instant t0 = Instant.parse("2022-05-01T12:00:00Z");
+
+  @BeforeEach
+  void setup() {
+    repo = mock(CacheVersionRepository.class);
+    service = new CacheVersionService();
+    service.cacheVersionRepository = repo;
+    setTime(t0);
+  }
+
+  private void setTime(Instant instant) {
+    service.clock = Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  private void stored(long menus) {
+    when(repo.findAll()).thenReturn(List.of(new CacheVersion("menus", menus)));
+    when(repo.findById("menus")).thenReturn(Optional.of(new CacheVersion("menus", menus)));
+  }
+
+  @Test
+  void test_a_change_elsewhere_is_reported_once() {
+    stored(3);
+
+    assertTrue(service.changedElsewhere("menus"));
+    assertFalse(service.changedElsewhere("menus"));
+    assertFalse(service.changedElsewhere("dates"));
+  }
+
+  @Test
+  void test_versions_are_read_at_most_once_per_poll() {
+    stored(3);
+    service.changedElsewhere("menus");
+    stored(4);
+
+    setTime(t0.plusMillis(4999));
+    assertFalse(service.changedElsewhere("menus"));
+    setTime(t0.plusMillis(5000));
+    assertTrue(service.changedElsewhere("menus"));
+    verify(repo, times(2)).findAll();
+  }
+
+  @Test
+  void test_a_bump_made_here_is_not_a_change_elsewhere() {
+    stored(3);
+    service.changedElsewhere("menus");
+    when(repo.increment("menus")).thenReturn(1);
+    stored(4);
+
+    service.bump("menus");
+
+    setTime(t0.plusMillis(5000));
+    assertFalse(service.changedElsewhere("menus"));
+  }
+
+  @Test
+  void test_a_bump_that_overtakes_another_instances_still_reports_theirs() {
+    stored(3);
+    service.changedElsewhere("menus");
+    when(repo.increment("menus")).thenReturn(1);
+    stored(5);
+
+    service.bump("menus");
+
+    setTime(t0.plusMillis(5000));
+    assertTrue(service.changedElsewhere("menus"));
+  }
+
+  @Test
+  void test_the_first_bump_creates_the_row() {
+    when(repo.increment("menus")).thenReturn(0);
+    stored(1);
+
+    service.bump("menus");
+
+    verify(repo).save(new CacheVersion("menus", 1));
+  }
+}
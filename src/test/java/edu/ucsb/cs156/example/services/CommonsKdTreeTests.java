@@ -0,0 +1,91 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.CommonsDistance;
+
+class CommonsKdTreeTests {
+
+  private final UCSBDiningCommons carrillo = commons("carrillo", 34.409953, -119.85277);
+  private final UCSBDiningCommons dlg = commons("de-la-guerra", 34.409811, -119.845684);
+  private final UCSBDiningCommons ortega = commons("ortega", 34.410987, -119.84709);
+  private final UCSBDiningCommons portola = commons("portola", 34.417723, -119.867427);
+  private final UCSBDiningCommons nowhere = commons("nowhere", null, null);
+
+  private static UCSBDiningCommons commons(String code, Double latitude, Double longitude) {
+    return UCSBDiningCommons.builder().code(code).name(code).latitude(latitude).longitude(longitude).build();
+  }
+
+  private static double haversineMeters(double lat1, double lon1, double lat2, double lon2) {
+    double dLat = Math.toRadians(lat2 - lat1);
+    double dLon = Math.toRadians(lon2 - lon1);
+    double a = Math.pow(Math.sin(dLat / 2), 2)
+        + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.pow(Math.sin(dLon / 2), 2);
+    return 2 * CommonsKdTree.EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+  }
+
+  private static List<String> codes(List<CommonsDistance> results) {
+    return results.stream().map(r -> r.getCommons().getCode()).collect(Collectors.toList());
+  }
+
+  @Test
+  void test_commons_without_location_are_skipped() {
+    CommonsKdTree tree = new CommonsKdTree(List.of(carrillo, nowhere, ortega));
+    assertEquals(2, tree.size());
+  }
+
+  @Test
+  void test_nearest_from_storke_tower() {
+    CommonsKdTree tree = new CommonsKdTree(List.of(carrillo, dlg, ortega, portola, nowhere));
+
+    List<CommonsDistance> results = tree.nearest(34.412603, -119.848371, 2);
+
+    assertEquals(List.of("ortega", "de-la-guerra"), codes(results));
+    assertEquals(haversineMeters(34.412603, -119.848371, 34.410987, -119.84709),
+        results.get(0).getDistanceMeters(), 0.01);
+  }
+
+  @Test
+  void test_within_radius() {
+    CommonsKdTree tree = new CommonsKdTree(List.of(carrillo, dlg, ortega, portola));
+
+    assertEquals(List.of("ortega", "de-la-guerra", "carrillo"), codes(tree.within(34.412603, -119.848371, 700)));
+    assertEquals(List.of(), codes(tree.within(0, 0, 1000)));
+    assertEquals(4, tree.within(0, 0, 50_000_000).size());
+  }
+
+  @Test
+  void test_matches_brute_force_on_random_points() {
+    Random random = new Random(156);
+    List<UCSBDiningCommons> all = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      all.add(commons("c" + i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180));
+    }
+    CommonsKdTree tree = new CommonsKdTree(all);
+
+    for (int q = 0; q < 50; q++) {
+      double lat = random.nextDouble() * 180 - 90;
+      double lon = random.nextDouble() * 360 - 180;
+      Comparator<UCSBDiningCommons> byDistance = Comparator.comparingDouble(
+          c -> haversineMeters(lat, lon, c.getLatitude(), c.getLongitude()));
+
+      List<String> expectedNearest = all.stream().sorted(byDistance).limit(5)
+          .map(UCSBDiningCommons::getCode).collect(Collectors.toList());
+      assertEquals(expectedNearest, codes(tree.nearest(lat, lon, 5)));
+
+      List<String> expectedWithin = all.stream()
+          .filter(c -> haversineMeters(lat, lon, c.getLatitude(), c.getLongitude()) <= 2_000_000)
+          .sorted(byDistance).map(UCSBDiningCommons::getCode).collect(Collectors.toList());
+      assertEquals(expectedWithin, codes(tree.within(lat, lon, 2_000_000)));
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+
+class CsvReaderTests {
+
+  private static final List<String> COLUMNS = List.of("code", "name");
+
+  private static CsvReader reader(String csv) {
+    return new CsvReader(new StringReader(csv), COLUMNS);
+  }
+
+  @Test
+  void test_reads_records_by_header_name() {
+    CsvReader csv = reader("Name,extra,CODE\nZeta Phi Rho,x,ZPR\r\nSkydiving,y,SKY");
+
+    assertEquals(Map.of("code", "ZPR", "name", "Zeta Phi Rho"), csv.next());
+    assertEquals(2, csv.lineNumber());
+    assertEquals(Map.of("code", "SKY", "name", "Skydiving"), csv.next());
+    assertEquals(3, csv.lineNumber());
+    assertNull(csv.next());
+    assertNull(csv.next());
+  }
+
+  @Test
+  void test_quoted_fields_and_blank_lines() {
+    CsvReader csv = reader("code,name\n\nKRC,\"Korean, \"\"Radio\"\"\nClub\"\n\nOSLI,\n");
+
+    assertEquals(Map.of("code", "KRC", "name", "Korean, \"Radio\"\nClub"), csv.next());
+    assertEquals(Map.of("code", "OSLI", "name", ""), csv.next());
+    assertEquals(6, csv.lineNumber());
+    assertNull(csv.next());
+  }
+
+  @Test
+  void test_missing_header_or_column() {
+    CsvFormatException empty = assertThrows(CsvFormatException.class, () -> reader(""));
+    assertEquals("CSV line 1: missing header row", empty.getMessage());
+
+    CsvFormatException missing = assertThrows(CsvFormatException.class, () -> reader("code,title\n"));
+    assertEquals("CSV line 1: missing column name", missing.getMessage());
+  }
+
+  @Test
+  void test_short_record_and_unterminated_quote() {
+    CsvReader shortRecord = reader("code,name\nZPR,Zeta\nSKY\n");
+    shortRecord.next();
+    CsvFormatException tooShort = assertThrows(CsvFormatException.class, shortRecord::next);
+    assertEquals("CSV line 3: expected at least 2 fields, found 1", tooShort.getMessage());
+
+    CsvReader unterminated = reader("code,name\nZPR,\"Zeta\n");
+    CsvFormatException open = assertThrows(CsvFormatException.class, unterminated::next);
+    assertEquals("CSV line 2: unterminated quoted field", open.getMessage());
+  }
+}
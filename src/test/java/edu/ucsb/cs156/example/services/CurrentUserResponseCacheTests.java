@@ -0,0 +1,158 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.models.CurrentUser;
+import edu.ucsb.cs156.example.models.CurrentUserSnapshot;
+
+class CurrentUserResponseCacheTests {
+
+  private CurrentUserResponseCache cache;
+  private CurrentUserService currentUserService;
+  private MockHttpSession session;
+
+  private final Instant t0 = Instant.parse("2022-05-01T12:00:00Z");
+  private final User user = User.builder().id(3).email("cgaucho@ucsb.edu").build();
+
+  private void setTime(Instant instant) {
+    cache.clock = Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  private void setRoles(String... roles) {
+    List<GrantedAuthority> authorities = new ArrayList<>();
+    for (String role : roles) {
+      authorities.add(new SimpleGrantedAuthority(role));
+    }
+    doReturn(authorities).when(currentUserService).getRoles();
+    when(currentUserService.getCurrentUser()).thenAnswer(invocation -> new CurrentUser(user, authorities));
+  }
+
+  private void logInAs(String principal) {
+    SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(principal, null));
+  }
+
+  @BeforeEach
+  void setup() {
+    currentUserService = mock(CurrentUserService.class);
+    cache = new CurrentUserResponseCache();
+    cache.currentUserService = currentUserService;
+    cache.mapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    session = new MockHttpSession();
+    setTime(t0);
+    setRoles("ROLE_USER", "ROLE_MEMBER");
+    logInAs("cgaucho@ucsb.edu");
+  }
+
+  @AfterEach
+  void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void test_repeat_requests_are_served_from_the_session() {
+    CurrentUserSnapshot first = cache.get(session);
+    setTime(t0.plusSeconds(59));
+    CurrentUserSnapshot second = cache.get(session);
+
+    assertSame(first, second);
+    assertEquals("ROLE_MEMBER,ROLE_USER", first.getRoles());
+    verify(currentUserService, times(1)).getCurrentUser();
+  }
+
+  @Test
+  void test_etag_survives_a_recheck_when_nothing_that_matters_changed() {
+    CurrentUserSnapshot first = cache.get(session);
+    user.setLastSeen(t0.plusSeconds(30));
+    setTime(t0.plusSeconds(60));
+
+    CurrentUserSnapshot second = cache.get(session);
+
+    verify(currentUserService, times(2)).getCurrentUser();
+    assertNotEquals(first.getJson(), second.getJson());
+    assertEquals(first.getEtag(), second.getEtag());
+  }
+
+  @Test
+  void test_profile_change_gets_a_new_etag_after_max_age() {
+    CurrentUserSnapshot first = cache.get(session);
+    user.setFullName("Chris Gaucho");
+    user.setPictureUrl("https://example.org/chris.png");
+    setTime(t0.plusSeconds(60));
+
+    CurrentUserSnapshot second = cache.get(session);
+
+    assertNotEquals(first.getEtag(), second.getEtag());
+  }
+
+  @Test
+  void test_admin_flag_change_shows_up_after_max_age() {
+    CurrentUserSnapshot first = cache.get(session);
+    user.setAdmin(true);
+
+    assertSame(first, cache.get(session));
+
+    setTime(t0.plusSeconds(60));
+    CurrentUserSnapshot second = cache.get(session);
+
+    assertNotEquals(first.getEtag(), second.getEtag());
+  }
+
+  @Test
+  void test_role_change_is_seen_at_once() {
+    CurrentUserSnapshot first = cache.get(session);
+    setRoles("ROLE_USER", "ROLE_MEMBER", "ROLE_ADMIN");
+
+    CurrentUserSnapshot second = cache.get(session);
+
+    assertNotEquals(first.getEtag(), second.getEtag());
+    assertEquals("ROLE_ADMIN,ROLE_MEMBER,ROLE_USER", second.getRoles());
+  }
+
+  @Test
+  void test_a_different_principal_in_the_same_session_is_not_served_the_cached_copy() {
+    CurrentUserSnapshot first = cache.get(session);
+    logInAs("ldelplaya@ucsb.edu");
+
+    CurrentUserSnapshot second = cache.get(session);
+
+    assertNotSame(first, second);
+    assertEquals("ldelplaya@ucsb.edu", second.getPrincipal());
+    verify(currentUserService, times(2)).getCurrentUser();
+  }
+
+  @Test
+  void test_without_a_session_nothing_is_cached() {
+    CurrentUserSnapshot first = cache.get(null);
+    CurrentUserSnapshot second = cache.get(null);
+
+    assertEquals(first, second);
+    verify(currentUserService, times(2)).getCurrentUser();
+  }
+}
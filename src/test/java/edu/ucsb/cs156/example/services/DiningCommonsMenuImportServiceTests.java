@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
+
+// Runs against an in-memory H2 database so the batched SQL itself is exercised.
+class DiningCommonsMenuImportServiceTests {
+
+  private EmbeddedDatabase db;
+  private NamedParameterJdbcTemplate jdbc;
+  private DiningCommonsMenuImportService service;
+
+  @BeforeEach
+  void setup() {
+    db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+    jdbc = new NamedParameterJdbcTemplate(db);
+    jdbc.getJdbcTemplate().execute("create table ucsbdiningcommonsmenuitem (id bigint auto_increment primary key, "
+        + "dining_commons_code varchar(255), name varchar(255), station varchar(255), version bigint default 0)");
+    jdbc.getJdbcTemplate().update("insert into ucsbdiningcommonsmenuitem (id, dining_commons_code, station, name) values "
+        + "(1, 'ortega', 'Grill', 'Burger'), "
+        + "(2, 'ortega', 'Grill', 'Fries'), "
+        + "(3, 'ortega', 'Grill', 'Fries'), "
+        + "(4, 'ortega', 'Pasta', 'Pesto Pasta'), "
+        + "(5, 'carrillo', 'Grill', 'Fries')");
+    jdbc.getJdbcTemplate().execute("alter table ucsbdiningcommonsmenuitem alter column id restart with 100");
+
+    service = new DiningCommonsMenuImportService();
+    service.jdbcTemplate = jdbc;
+    service.batchSize = 2;
+  }
+
+  @AfterEach
+  void teardown() {
+    db.shutdown();
+  }
+
+  private List<Map<String, Object>> rows(String diningCommonsCode) {
+    return jdbc.queryForList("select id, station, name from ucsbdiningcommonsmenuitem "
+        + "where dining_commons_code = :code order by id", Map.of("code", diningCommonsCode));
+  }
+
+  @Test
+  void test_menu_is_diffed_against_existing_rows() {
+    String csv = "station,name\n"
+        + "Grill,Burger\n"
+        + "Grill,Fries\n"
+        + "Grill,Fries\n"
+        + "Grill,Veggie Burger\n"
+        + "Soup,Clam Chowder\n"
+        + "Soup,Minestrone\n";
+
+    BulkWriteResult result = service.replaceMenu("ortega", new StringReader(csv));
+
+    // Fries is kept once (its duplicate row 3 goes) and Pesto Pasta is dropped
+    assertEquals(new BulkWriteResult(3, 0, 2, 2), result);
+    assertEquals(List.of(
+        Map.of("ID", 1L, "STATION", "Grill", "NAME", "Burger"),
+        Map.of("ID", 2L, "STATION", "Grill", "NAME", "Fries"),
+        Map.of("ID", 100L, "STATION", "Grill", "NAME", "Veggie Burger"),
+        Map.of("ID", 101L, "STATION", "Soup", "NAME", "Clam Chowder"),
+        Map.of("ID", 102L, "STATION", "Soup", "NAME", "Minestrone")),
+        rows("ortega"));
+    assertEquals(1, rows("carrillo").size());
+  }
+
+  @Test
+  void test_empty_menu_clears_the_commons() {
+    BulkWriteResult result = service.replaceMenu("ortega", new StringReader("station,name\n"));
+
+    assertEquals(new BulkWriteResult(0, 0, 0, 4), result);
+    assertEquals(List.of(), rows("ortega"));
+    assertEquals(1, rows("carrillo").size());
+  }
+
+  @Test
+  void test_blank_name_is_rejected() {
+    CsvFormatException e = assertThrows(CsvFormatException.class,
+        () -> service.replaceMenu("ortega", new StringReader("station,name\nGrill,Burger\nGrill,  \n")));
+
+    assertEquals("CSV line 3: name is empty", e.getMessage());
+  }
+}
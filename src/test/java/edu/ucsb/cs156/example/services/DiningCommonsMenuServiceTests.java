@@ -0,0 +1,95 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.models.StationMenu;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+class DiningCommonsMenuServiceTests {
+
+  private DiningCommonsMenuService service;
+  private UCSBDiningCommonsMenuItemRepository repo;
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private final UCSBDiningCommonsMenuItem burger = item(1L, "Grill", "Burger");
+  private final UCSBDiningCommonsMenuItem fries = item(2L, "Grill", "Fries");
+  private final UCSBDiningCommonsMenuItem pasta = item(3L, "Pasta", "Pesto Pasta");
+
+  private static UCSBDiningCommonsMenuItem item(long id, String station, String name) {
+    return UCSBDiningCommonsMenuItem.builder().id(id).diningCommonsCode("ortega").station(station).name(name).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    repo = mock(UCSBDiningCommonsMenuItemRepository.class);
+    service = new DiningCommonsMenuService();
+    service.ucsbDiningCommonsMenuItemRepository = repo;
+    service.mapper = mapper;
+    service.cacheVersionService = mock(CacheVersionService.class);
+    when(repo.findAllByDiningCommonsCodeOrderByStationAscNameAsc("ortega")).thenReturn(List.of(burger, fries, pasta));
+  }
+
+  @Test
+  void test_items_are_grouped_by_station_in_order() throws Exception {
+    String expected = mapper.writeValueAsString(List.of(
+        new StationMenu("Grill", List.of(burger, fries)),
+        new StationMenu("Pasta", List.of(pasta))));
+
+    assertEquals(expected, service.getMenuJson("ortega"));
+  }
+
+  @Test
+  void test_menu_is_cached_until_its_commons_is_invalidated() {
+    String first = service.getMenuJson("ortega");
+    assertSame(first, service.getMenuJson("ortega"));
+
+    service.invalidate("carrillo");
+    assertSame(first, service.getMenuJson("ortega"));
+    verify(repo, times(1)).findAllByDiningCommonsCodeOrderByStationAscNameAsc("ortega");
+
+    service.invalidate("ortega", null);
+    service.getMenuJson("ortega");
+    verify(repo, times(2)).findAllByDiningCommonsCodeOrderByStationAscNameAsc("ortega");
+
+    service.invalidateAll();
+    service.getMenuJson("ortega");
+    verify(repo, times(3)).findAllByDiningCommonsCodeOrderByStationAscNameAsc("ortega");
+    verify(service.cacheVersionService, times(3)).bump("dining-commons-menus");
+  }
+
+  @Test
+  void test_menus_are_dropped_after_a_write_on_another_instance() {
+    String first = service.getMenuJson("ortega");
+    when(service.cacheVersionService.changedElsewhere("dining-commons-menus")).thenReturn(true, false);
+
+    String second = service.getMenuJson("ortega");
+
+    assertNotSame(first, second);
+    assertSame(second, service.getMenuJson("ortega"));
+    verify(repo, times(2)).findAllByDiningCommonsCodeOrderByStationAscNameAsc("ortega");
+  }
+
+  @Test
+  void test_empty_menus_are_not_cached() {
+    when(repo.findAllByDiningCommonsCodeOrderByStationAscNameAsc("nowhere")).thenReturn(List.of());
+
+    assertEquals("[]", service.getMenuJson("nowhere"));
+    assertEquals("[]", service.getMenuJson("nowhere"));
+
+    verify(repo, times(2)).findAllByDiningCommonsCodeOrderByStationAscNameAsc("nowhere");
+  }
+}
@@ -0,0 +1,98 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+class HelpRequestClaimServiceTests {
+
+  private HelpRequestClaimService service;
+  private PlatformTransactionManager transactionManager;
+
+  @BeforeEach
+  void setup() {
+    transactionManager = mock(PlatformTransactionManager.class);
+    service = new HelpRequestClaimService();
+    service.helpRequestRepository = mock(HelpRequestRepository.class);
+    service.helpRequestEventService = mock(HelpRequestEventService.class);
+    service.transactionTemplate = new TransactionTemplate(transactionManager);
+    service.clock = Clock.fixed(Instant.parse("2022-04-20T18:05:00Z"), ZoneOffset.UTC);
+  }
+
+  private HelpRequest unclaimed() {
+    return HelpRequest.builder()
+        .id(7L)
+        .requesterEmail("cgaucho@ucsb.edu")
+        .teamId("s22-6pm-1")
+        .tableOrBreakoutRoom("table 1")
+        .explanation("merge conflict")
+        .solved(false)
+        .requestTime(LocalDateTime.parse("2022-04-20T18:00:00"))
+        .build();
+  }
+
+  @Test
+  void test_claim_is_published_after_commit() {
+    HelpRequest helpRequest = unclaimed();
+    when(service.helpRequestRepository.findFirstBySolvedFalseAndClaimedByIsNullOrderByRequestTimeAsc())
+        .thenReturn(Optional.of(helpRequest));
+    when(service.helpRequestRepository.save(helpRequest)).thenReturn(helpRequest);
+
+    Optional<HelpRequest> claimed = service.claimNext("ta@ucsb.edu");
+
+    assertTrue(claimed.isPresent());
+    assertEquals("ta@ucsb.edu", claimed.get().getClaimedBy());
+    assertEquals(LocalDateTime.parse("2022-04-20T18:05:00"), claimed.get().getClaimedTime());
+    InOrder order = inOrder(service.helpRequestRepository, transactionManager, service.helpRequestEventService);
+    order.verify(service.helpRequestRepository).save(helpRequest);
+    order.verify(transactionManager).commit(any());
+    order.verify(service.helpRequestEventService).publishUpdated(helpRequest);
+  }
+
+  @Test
+  void test_nothing_is_published_when_the_commit_fails() {
+    HelpRequest helpRequest = unclaimed();
+    when(service.helpRequestRepository.findFirstBySolvedFalseAndClaimedByIsNullOrderByRequestTimeAsc())
+        .thenReturn(Optional.of(helpRequest));
+    when(service.helpRequestRepository.save(helpRequest)).thenReturn(helpRequest);
+    doThrow(new TransactionSystemException("commit failed")).when(transactionManager).commit(any());
+
+    assertThrows(TransactionSystemException.class, () -> service.claimNext("ta@ucsb.edu"));
+
+    verify(service.helpRequestEventService, times(0)).publishUpdated(any());
+  }
+
+  @Test
+  void test_empty_queue() {
+    when(service.helpRequestRepository.findFirstBySolvedFalseAndClaimedByIsNullOrderByRequestTimeAsc())
+        .thenReturn(Optional.empty());
+
+    assertTrue(service.claimNext("ta@ucsb.edu").isEmpty());
+
+    verify(service.helpRequestRepository, times(0)).save(any());
+    verify(service.helpRequestEventService, times(0)).publishUpdated(any());
+  }
+}
@@ -0,0 +1,77 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.repositories.HelpRequestRepository;
+
+class HelpRequestDeleteServiceTests {
+
+  private HelpRequestDeleteService service;
+  private PlatformTransactionManager transactionManager;
+
+  @BeforeEach
+  void setup() {
+    transactionManager = mock(PlatformTransactionManager.class);
+    service = new HelpRequestDeleteService();
+    service.helpRequestRepository = mock(HelpRequestRepository.class);
+    service.helpRequestEventService = mock(HelpRequestEventService.class);
+    service.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  @Test
+  void test_only_locked_rows_are_deleted_and_published_after_commit() {
+    when(service.helpRequestRepository.lockAllByIdIn(Set.of(15L, 16L)))
+        .thenReturn(List.of(HelpRequest.builder().id(15L).build()));
+    when(service.helpRequestRepository.deleteByIdIn(List.of(15L))).thenReturn(1);
+
+    assertEquals(List.of(15L), service.deleteAll(Set.of(15L, 16L)));
+
+    InOrder order = inOrder(service.helpRequestRepository, transactionManager, service.helpRequestEventService);
+    order.verify(service.helpRequestRepository).lockAllByIdIn(Set.of(15L, 16L));
+    order.verify(service.helpRequestRepository).deleteByIdIn(List.of(15L));
+    order.verify(transactionManager).commit(any());
+    order.verify(service.helpRequestEventService).publishDeleted(15L);
+    verify(service.helpRequestEventService, times(0)).publishDeleted(16L);
+  }
+
+  @Test
+  void test_nothing_is_published_when_the_commit_fails() {
+    when(service.helpRequestRepository.lockAllByIdIn(Set.of(15L)))
+        .thenReturn(List.of(HelpRequest.builder().id(15L).build()));
+    doThrow(new TransactionSystemException("commit failed")).when(transactionManager).commit(any());
+
+    assertThrows(TransactionSystemException.class, () -> service.deleteAll(Set.of(15L)));
+
+    verify(service.helpRequestEventService, times(0)).publishDeleted(any(Long.class));
+  }
+
+  @Test
+  void test_ids_already_gone() {
+    when(service.helpRequestRepository.lockAllByIdIn(Set.of(15L))).thenReturn(List.of());
+
+    assertEquals(List.of(), service.deleteAll(Set.of(15L)));
+    assertEquals(List.of(), service.deleteAll(Set.of()));
+
+    verify(service.helpRequestRepository, times(0)).deleteByIdIn(any());
+    verify(service.helpRequestRepository, times(1)).lockAllByIdIn(any());
+  }
+}
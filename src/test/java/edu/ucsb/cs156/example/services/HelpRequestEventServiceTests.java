@@ -0,0 +1,97 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import edu.ucsb.cs156.example.entities.HelpRequest;
+import edu.ucsb.cs156.example.models.HelpRequestEvent;
+
+class HelpRequestEventServiceTests {
+
+  private HelpRequestEventService service;
+  private List<Runnable> pendingTasks;
+
+  @BeforeEach
+  void setup() {
+    pendingTasks = new ArrayList<>();
+    service = new HelpRequestEventService();
+    service.executor = pendingTasks::add;
+    ReflectionTestUtils.setField(service, "bufferSize", 3);
+  }
+
+  private HelpRequest helpRequest(long id) {
+    return HelpRequest.builder()
+        .id(id)
+        .requesterEmail("cgaucho@ucsb.edu")
+        .teamId("s22-6pm-1")
+        .tableOrBreakoutRoom("table 1")
+        .explanation("merge conflict")
+        .solved(false)
+        .requestTime(LocalDateTime.parse("2022-04-20T18:00:00"))
+        .build();
+  }
+
+  @Test
+  void test_events_are_queued_for_each_subscriber() {
+    HelpRequestEventService.Subscriber s1 = service.register(new SseEmitter());
+    HelpRequestEventService.Subscriber s2 = service.register(new SseEmitter());
+
+    service.publishCreated(helpRequest(1L));
+    service.publishDeleted(2L);
+
+    assertEquals(2, service.getSubscriberCount());
+    assertEquals(2, s1.queue.size());
+    assertEquals(2, s2.queue.size());
+    assertEquals(HelpRequestEvent.CREATED, s1.queue.peek().getType());
+    assertEquals(1L, s1.queue.peek().getId());
+    // one drain task per subscriber, no matter how many events are queued
+    assertEquals(2, pendingTasks.size());
+  }
+
+  @Test
+  void test_draining_empties_the_queue() {
+    HelpRequestEventService.Subscriber s = service.register(new SseEmitter());
+
+    service.publishCreated(helpRequest(1L));
+    service.publishUpdated(helpRequest(1L));
+    pendingTasks.remove(0).run();
+
+    assertEquals(0, s.queue.size());
+    assertEquals(false, s.draining.get());
+  }
+
+  @Test
+  void test_slow_subscriber_gets_resync_instead_of_unbounded_backlog() {
+    HelpRequestEventService.Subscriber s = service.register(new SseEmitter());
+
+    for (long id = 1; id <= 4; id++) {
+      service.publishUpdated(helpRequest(id));
+    }
+
+    assertEquals(1, s.queue.size());
+    assertEquals(HelpRequestEvent.RESYNC, s.queue.peek().getType());
+
+    service.publishDeleted(5L);
+    assertEquals(2, s.queue.size());
+  }
+
+  @Test
+  void test_completed_subscriber_is_dropped() {
+    HelpRequestEventService.Subscriber s = service.register(new SseEmitter());
+    s.emitter.complete();
+
+    service.publishCreated(helpRequest(1L));
+    pendingTasks.remove(0).run();
+
+    assertEquals(0, service.getSubscriberCount());
+    assertEquals(0, s.queue.size());
+  }
+}
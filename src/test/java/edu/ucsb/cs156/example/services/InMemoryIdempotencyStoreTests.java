@@ -0,0 +1,85 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.IdempotencyKey;
+
+class InMemoryIdempotencyStoreTests {
+
+  private InMemoryIdempotencyStore store;
+
+  private final Instant t0 = Instant.parse("2022-05-01T12:00:00Z");
+
+  private void setTime(Instant instant) {
+    store.clock = Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  private IdempotencyKey key(String id, Instant createdAt) {
+    return IdempotencyKey.builder().id(id).fingerprint("POST /api/x").createdAt(createdAt).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    store = new InMemoryIdempotencyStore(Duration.ofMinutes(60), 3);
+    setTime(t0);
+  }
+
+  @Test
+  void test_claim_complete_and_replay() {
+    IdempotencyKey first = key("u:a", t0);
+
+    assertNull(store.claim(first));
+    assertFalse(store.claim(key("u:a", t0)).completed());
+
+    first.setStatus(200);
+    first.setBody("{}".getBytes());
+    store.complete(first);
+
+    IdempotencyKey replay = store.claim(key("u:a", t0));
+    assertTrue(replay.completed());
+    assertEquals(200, replay.getStatus());
+  }
+
+  @Test
+  void test_released_keys_can_be_claimed_again() {
+    assertNull(store.claim(key("u:a", t0)));
+
+    store.release("u:a");
+
+    assertNull(store.claim(key("u:a", t0)));
+  }
+
+  @Test
+  void test_keys_expire_after_the_ttl() {
+    IdempotencyKey first = key("u:a", t0);
+    store.claim(first);
+
+    setTime(t0.plusSeconds(3599));
+    assertSame(first, store.claim(key("u:a", t0.plusSeconds(3599))));
+
+    setTime(t0.plusSeconds(3600));
+    assertNull(store.claim(key("u:a", t0.plusSeconds(3600))));
+  }
+
+  @Test
+  void test_oldest_keys_are_dropped_beyond_max_entries() {
+    for (String id : new String[] { "u:a", "u:b", "u:c", "u:d" }) {
+      store.claim(key(id, t0));
+    }
+
+    assertEquals(3, store.size());
+    assertNull(store.claim(key("u:a", t0)));
+  }
+}
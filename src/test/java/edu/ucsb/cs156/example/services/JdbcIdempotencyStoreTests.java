@@ -0,0 +1,125 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import edu.ucsb.cs156.example.entities.IdempotencyKey;
+
+// Runs against an in-memory H2 database so the SQL itself is exercised.
+class JdbcIdempotencyStoreTests {
+
+  private EmbeddedDatabase db;
+  private NamedParameterJdbcTemplate jdbc;
+  private JdbcIdempotencyStore store;
+
+  private final Instant t0 = Instant.parse("2022-05-01T12:00:00Z");
+
+  @BeforeEach
+  void setup() {
+    db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+    jdbc = new NamedParameterJdbcTemplate(db);
+    jdbc.getJdbcTemplate().execute("create table idempotencykey (id varchar(64) primary key, "
+        + "fingerprint varchar(64), status integer, content_type varchar(255), headers varchar(4000), body varbinary(1000000), "
+        + "created_at timestamp)");
+    store = new JdbcIdempotencyStore(jdbc, Duration.ofMinutes(60));
+    setTime(t0);
+  }
+
+  @AfterEach
+  void teardown() {
+    db.shutdown();
+  }
+
+  private void setTime(Instant instant) {
+    store.clock = Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  private IdempotencyKey key(String id, Instant createdAt) {
+    return IdempotencyKey.builder().id(id).fingerprint("POST /api/x?a=1").createdAt(createdAt).build();
+  }
+
+  private int rows() {
+    return jdbc.getJdbcTemplate().queryForObject("select count(*) from idempotencykey", Integer.class);
+  }
+
+  @Test
+  void test_claim_complete_and_replay() {
+    IdempotencyKey first = key("u:a", t0);
+
+    assertNull(store.claim(first));
+    IdempotencyKey inProgress = store.claim(key("u:a", t0));
+    assertFalse(inProgress.completed());
+    assertEquals("POST /api/x?a=1", inProgress.getFingerprint());
+    assertEquals(t0, inProgress.getCreatedAt());
+
+    first.setStatus(200);
+    first.setContentType("application/json");
+    first.setBody("{\"id\":1}".getBytes());
+    store.complete(first);
+
+    IdempotencyKey replay = store.claim(key("u:a", t0));
+    assertTrue(replay.completed());
+    assertEquals(200, replay.getStatus());
+    assertEquals("application/json", replay.getContentType());
+    assertArrayEquals("{\"id\":1}".getBytes(), replay.getBody());
+  }
+
+  @Test
+  void test_response_headers_are_kept_for_replay() {
+    IdempotencyKey first = key("u:h", t0);
+    store.claim(first);
+    first.setStatus(200);
+    first.setHeaders("ETag:\"0\"\nLocation:/api/x?id=1");
+    first.setBody(new byte[0]);
+    store.complete(first);
+
+    assertEquals("ETag:\"0\"\nLocation:/api/x?id=1", store.claim(key("u:h", t0)).getHeaders());
+  }
+
+  @Test
+  void test_release_only_forgets_unfinished_requests() {
+    IdempotencyKey done = key("u:done", t0);
+    store.claim(done);
+    done.setStatus(201);
+    done.setBody(new byte[0]);
+    store.complete(done);
+    store.claim(key("u:running", t0));
+
+    store.release("u:done");
+    store.release("u:running");
+
+    assertTrue(store.claim(key("u:done", t0)).completed());
+    assertNull(store.claim(key("u:running", t0)));
+  }
+
+  @Test
+  void test_expired_keys_are_taken_over_and_cleaned_up() {
+    store.claim(key("u:a", t0));
+    store.claim(key("u:b", t0.plusSeconds(600)));
+
+    setTime(t0.plusSeconds(3600));
+    assertNull(store.claim(key("u:a", t0.plusSeconds(3600))));
+
+    setTime(t0.plusSeconds(4200));
+    store.deleteExpired();
+
+    assertEquals(1, rows());
+    assertFalse(store.claim(key("u:a", t0.plusSeconds(4200))).completed());
+  }
+}
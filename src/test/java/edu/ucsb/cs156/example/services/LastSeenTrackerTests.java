@@ -0,0 +1,109 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.sql.Timestamp;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+// Runs against an in-memory H2 database so the UPDATE itself is exercised.
+class LastSeenTrackerTests {
+
+  private EmbeddedDatabase db;
+  private NamedParameterJdbcTemplate jdbc;
+  private LastSeenTracker tracker;
+
+  private final Instant t0 = Instant.parse("2022-05-01T12:00:00Z");
+
+  @BeforeEach
+  void setup() {
+    db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+    jdbc = new NamedParameterJdbcTemplate(db);
+    jdbc.getJdbcTemplate().execute("create table users (id bigint primary key, email varchar(255), "
+        + "last_seen timestamp, last_login timestamp)");
+    jdbc.getJdbcTemplate().update("insert into users (id, email) values (1, 'pconrad@ucsb.edu'), (2, 'ziad@ucsb.edu')");
+
+    tracker = new LastSeenTracker();
+    tracker.jdbcTemplate = jdbc;
+    setTime(t0);
+  }
+
+  @AfterEach
+  void teardown() {
+    db.shutdown();
+  }
+
+  private void setTime(Instant instant) {
+    tracker.clock = Clock.fixed(instant, ZoneOffset.UTC);
+  }
+
+  private Map<String, Object> row(long id) {
+    return jdbc.queryForMap("select last_seen, last_login from users where id = :id", Map.of("id", id));
+  }
+
+  private static Instant instant(Object timestamp) {
+    return timestamp == null ? null : ((Timestamp) timestamp).toInstant();
+  }
+
+  @Test
+  void test_nothing_is_written_until_flush() {
+    tracker.loggedIn(1L);
+
+    assertNull(row(1L).get("last_seen"));
+
+    tracker.flush();
+
+    assertEquals(t0, instant(row(1L).get("last_seen")));
+    assertEquals(t0, instant(row(1L).get("last_login")));
+    assertNull(row(2L).get("last_seen"));
+  }
+
+  @Test
+  void test_many_sightings_coalesce_to_the_latest() {
+    tracker.loggedIn(1L);
+    setTime(t0.plusSeconds(3));
+    tracker.seen(1L);
+    tracker.seen(2L);
+
+    tracker.flush();
+
+    assertEquals(t0.plusSeconds(3), instant(row(1L).get("last_seen")));
+    assertEquals(t0, instant(row(1L).get("last_login")));
+    assertEquals(t0.plusSeconds(3), instant(row(2L).get("last_seen")));
+    assertNull(row(2L).get("last_login"));
+  }
+
+  @Test
+  void test_times_never_move_backwards() {
+    jdbc.update("update users set last_seen = :seen, last_login = :login where id = 1",
+        Map.of("seen", Timestamp.from(t0.plusSeconds(600)), "login", Timestamp.from(t0.plusSeconds(500))));
+
+    tracker.loggedIn(1L);
+    tracker.flush();
+
+    assertEquals(t0.plusSeconds(600), instant(row(1L).get("last_seen")));
+    assertEquals(t0.plusSeconds(500), instant(row(1L).get("last_login")));
+  }
+
+  @Test
+  void test_each_sighting_is_flushed_once() {
+    tracker.seen(1L);
+    tracker.flush();
+    jdbc.getJdbcTemplate().update("update users set last_seen = null where id = 1");
+
+    tracker.flush();
+
+    assertNull(row(1L).get("last_seen"));
+  }
+}
@@ -0,0 +1,78 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsMenuItemRepository;
+
+class MenuItemAutocompleteServiceTests {
+
+  private MenuItemAutocompleteService service;
+  private UCSBDiningCommonsMenuItemRepository repo;
+
+  private final UCSBDiningCommonsMenuItem burger = item("Burger");
+  private final UCSBDiningCommonsMenuItem burrito = item("Burrito");
+
+  private static UCSBDiningCommonsMenuItem item(String name) {
+    return UCSBDiningCommonsMenuItem.builder().diningCommonsCode("ortega").station("Grill").name(name).build();
+  }
+
+  @BeforeEach
+  void setup() {
+    repo = mock(UCSBDiningCommonsMenuItemRepository.class);
+    service = new MenuItemAutocompleteService();
+    service.ucsbDiningCommonsMenuItemRepository = repo;
+    service.cacheVersionService = mock(CacheVersionService.class);
+  }
+
+  @Test
+  void test_index_is_kept_until_invalidated() {
+    when(repo.findAll()).thenReturn(List.of(burger)).thenReturn(List.of(burger, burrito));
+
+    assertEquals(List.of("Burger"), service.complete("bu", null, 10));
+    assertEquals(List.of("Burger"), service.complete("bu", null, 10));
+
+    service.invalidate();
+
+    assertEquals(List.of("Burger", "Burrito"), service.complete("bu", null, 10));
+    verify(repo, times(2)).findAll();
+    verify(service.cacheVersionService).bump("menu-item-names");
+  }
+
+  @Test
+  void test_index_is_rebuilt_after_a_write_on_another_instance() {
+    when(repo.findAll()).thenReturn(List.of(burger)).thenReturn(List.of(burger, burrito));
+
+    assertEquals(List.of("Burger"), service.complete("bu", null, 10));
+    when(service.cacheVersionService.changedElsewhere("menu-item-names")).thenReturn(true, false);
+
+    assertEquals(List.of("Burger", "Burrito"), service.complete("bu", null, 10));
+    assertEquals(List.of("Burger", "Burrito"), service.complete("bu", null, 10));
+    verify(repo, times(2)).findAll();
+  }
+
+  @Test
+  void test_index_built_across_an_invalidate_is_not_kept() {
+    // a write commits and invalidates while the menu items are being read
+    when(repo.findAll())
+        .thenAnswer(invocation -> {
+          service.invalidate();
+          return List.of(burger);
+        })
+        .thenReturn(List.of(burger, burrito));
+
+    assertEquals(List.of("Burger"), service.complete("bu", null, 10));
+    assertEquals(List.of("Burger", "Burrito"), service.complete("bu", null, 10));
+    assertEquals(List.of("Burger", "Burrito"), service.complete("bu", null, 10));
+    verify(repo, times(2)).findAll();
+  }
+}
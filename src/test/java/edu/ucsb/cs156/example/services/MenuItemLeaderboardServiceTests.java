@@ -0,0 +1,138 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.MenuItemReview;
+import edu.ucsb.cs156.example.models.MenuItemRating;
+import edu.ucsb.cs156.example.repositories.MenuItemReviewRepository;
+
+class MenuItemLeaderboardServiceTests {
+
+  private MenuItemLeaderboardService service;
+  private MenuItemReviewRepository repo;
+
+  private final LocalDateTime now = LocalDateTime.parse("2022-05-10T12:00:00");
+
+  private static MenuItemReview review(long id, long itemId, int stars, LocalDateTime dateReviewed) {
+    return MenuItemReview.builder().id(id).itemId(itemId).stars(stars).dateReviewed(dateReviewed)
+        .reviewerEmail("cgaucho@ucsb.edu").build();
+  }
+
+  @BeforeEach
+  void setup() {
+    repo = mock(MenuItemReviewRepository.class);
+    service = new MenuItemLeaderboardService();
+    service.menuItemReviewRepository = repo;
+    service.cacheVersionService = mock(CacheVersionService.class);
+    service.clock = Clock.fixed(now.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    when(repo.findAll()).thenReturn(List.of(
+        review(1, 10, 5, now.minusDays(1)),
+        review(2, 10, 3, now.minusDays(20)),
+        review(3, 20, 4, now),
+        review(4, 20, 4, now.minusDays(2)),
+        review(5, 30, 2, null)));
+  }
+
+  @Test
+  void test_all_time_ranking_loads_once() {
+    List<MenuItemRating> expected = List.of(
+        new MenuItemRating(10, 4.0, 2),
+        new MenuItemRating(20, 4.0, 2),
+        new MenuItemRating(30, 2.0, 1));
+
+    assertEquals(expected, service.top(null, 10, 1));
+    assertEquals(expected.subList(0, 2), service.top(null, 2, 1));
+    verify(repo, times(1)).findAll();
+  }
+
+  @Test
+  void test_window_only_counts_recent_days() {
+    assertEquals(List.of(
+        new MenuItemRating(10, 5.0, 1),
+        new MenuItemRating(20, 4.0, 2)), service.top(7, 10, 1));
+    assertEquals(List.of(new MenuItemRating(20, 4.0, 1)), service.top(1, 10, 1));
+  }
+
+  @Test
+  void test_min_reviews_leaves_out_thinly_reviewed_items() {
+    assertEquals(List.of(new MenuItemRating(20, 4.0, 2)), service.top(7, 10, 2));
+  }
+
+  @Test
+  void test_updates_move_a_review_between_items_and_days() {
+    service.rebuild();
+
+    service.record(review(1, 20, 1, now.minusDays(30)));
+
+    assertEquals(List.of(new MenuItemRating(20, 4.0, 2)), service.top(7, 10, 1));
+    assertEquals(List.of(
+        new MenuItemRating(20, 3.0, 3),
+        new MenuItemRating(10, 3.0, 1),
+        new MenuItemRating(30, 2.0, 1)), service.top(null, 10, 1));
+  }
+
+  @Test
+  void test_recording_the_same_review_twice_counts_it_once() {
+    service.rebuild();
+
+    service.record(review(6, 30, 4, now));
+    service.record(review(6, 30, 4, now));
+
+    assertEquals(List.of(
+        new MenuItemRating(10, 4.0, 2),
+        new MenuItemRating(20, 4.0, 2),
+        new MenuItemRating(30, 3.0, 2)), service.top(null, 10, 2));
+  }
+
+  @Test
+  void test_an_older_version_of_a_review_is_ignored() {
+    service.rebuild();
+    MenuItemReview second = review(6, 30, 4, now);
+    second.setVersion(2);
+    MenuItemReview first = review(6, 30, 1, now);
+    first.setVersion(1);
+
+    service.record(second);
+    service.record(first);
+
+    assertEquals(List.of(
+        new MenuItemRating(10, 4.0, 2),
+        new MenuItemRating(20, 4.0, 2),
+        new MenuItemRating(30, 3.0, 2)), service.top(null, 10, 2));
+  }
+
+  @Test
+  void test_removed_reviews_no_longer_count() {
+    service.rebuild();
+
+    service.remove(5L);
+    service.removeAll(List.of(3L, 4L, 99L));
+
+    assertEquals(List.of(new MenuItemRating(10, 4.0, 2)), service.top(null, 10, 1));
+    assertEquals(List.of(new MenuItemRating(10, 5.0, 1)), service.top(7, 10, 1));
+    verify(service.cacheVersionService, times(2)).bump("menu-item-leaderboard");
+  }
+
+  @Test
+  void test_reloads_after_a_write_on_another_instance() {
+    service.rebuild();
+    when(repo.findAll()).thenReturn(List.of(review(1, 10, 5, now)));
+    when(service.cacheVersionService.changedElsewhere("menu-item-leaderboard")).thenReturn(true, false);
+
+    assertEquals(List.of(new MenuItemRating(10, 5.0, 1)), service.top(null, 10, 1));
+    assertEquals(List.of(new MenuItemRating(10, 5.0, 1)), service.top(null, 10, 1));
+    verify(repo, times(2)).findAll();
+  }
+}
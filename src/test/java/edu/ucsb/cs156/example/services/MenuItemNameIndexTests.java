@@ -0,0 +1,141 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommonsMenuItem;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class MenuItemNameIndexTests {
+
+  private static UCSBDiningCommonsMenuItem item(String commons, String name) {
+    return UCSBDiningCommonsMenuItem.builder().diningCommonsCode(commons).station("Grill").name(name).build();
+  }
+
+  private final MenuItemNameIndex index = new MenuItemNameIndex(List.of(
+      item("ortega", "Crème Brûlée"),
+      item("ortega", "Burger"),
+      item("carrillo", "burger"),
+      item("carrillo", "Burrito"),
+      item("carrillo", "Bún Chả"),
+      item("portola", "Jalapeño Poppers"),
+      item("portola", "  "),
+      item("portola", null)));
+
+  @Test
+  void test_prefix_ignores_case_and_accents() {
+    assertEquals(List.of("Crème Brûlée"), index.complete("CREME B", null, 10));
+    assertEquals(List.of("Crème Brûlée"), index.complete("crème", null, 10));
+    assertEquals(List.of("Jalapeño Poppers"), index.complete("jalapen", null, 10));
+  }
+
+  @Test
+  void test_names_are_distinct_and_in_order() {
+    assertEquals(List.of("Bún Chả", "Burger", "Burrito"), index.complete("bu", null, 10));
+    assertEquals(List.of("Bún Chả", "Burger"), index.complete("bu", null, 2));
+    assertEquals(5, index.size());
+  }
+
+  @Test
+  void test_filter_by_commons() {
+    assertEquals(List.of("Burger"), index.complete("bu", "ortega", 10));
+    assertEquals(List.of("Bún Chả", "burger", "Burrito"), index.complete("bu", "carrillo", 10));
+    assertEquals(List.of(), index.complete("bu", "portola", 10));
+    assertEquals(List.of(), index.complete("bu", "nowhere", 10));
+  }
+
+  @Test
+  void test_no_matches() {
+    assertEquals(List.of(), index.complete("zzz", null, 10));
+    assertEquals(List.of(), index.complete("bu", null, 0));
+  }
+
+  @Test
+  void test_empty_prefix_lists_from_the_start() {
+    assertEquals(List.of("Bún Chả", "Burger"), index.complete("", null, 2));
+  }
+
+  private static final String[] SYLLABLES = { "ba", "be", "bo", "ca", "ché", "do", "fa", "gu", "ké", "la", "mi", "nö", "pa", "ra", "sü", "ta" };
+  private static final String[] COMMONS_CODES = { "carrillo", "de-la-guerra", "ortega", "portola" };
+
+  private static List<UCSBDiningCommonsMenuItem> generatedItems(int count, Random random) {
+    List<UCSBDiningCommonsMenuItem> items = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      StringBuilder name = new StringBuilder();
+      for (int s = 2 + random.nextInt(4); s > 0; s--) {
+        name.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+      }
+      name.append(' ').append(i);
+      items.add(item(COMMONS_CODES[random.nextInt(COMMONS_CODES.length)], name.toString()));
+    }
+    return items;
+  }
+
+  private static List<String> randomPrefixes(List<UCSBDiningCommonsMenuItem> items, int count, Random random) {
+    List<String> prefixes = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      String name = items.get(random.nextInt(items.size())).getName();
+      prefixes.add(name.substring(0, 1 + random.nextInt(Math.min(6, name.length()))));
+    }
+    return prefixes;
+  }
+
+  @Test
+  void test_lookups_agree_with_a_linear_scan() {
+    Random random = new Random(156);
+    List<UCSBDiningCommonsMenuItem> items = generatedItems(10_000, random);
+    MenuItemNameIndex big = new MenuItemNameIndex(items);
+
+    for (String prefix : randomPrefixes(items, 20, random)) {
+      String key = SearchText.fold(prefix);
+      List<String> expected = items.stream()
+          .map(UCSBDiningCommonsMenuItem::getName)
+          .filter(n -> SearchText.fold(n).startsWith(key))
+          .collect(Collectors.toCollection(() -> new TreeSet<>((a, b) ->
+              SearchText.fold(a).compareTo(SearchText.fold(b)))))
+          .stream().limit(10).collect(Collectors.toList());
+      assertEquals(expected, big.complete(prefix, null, 10));
+    }
+  }
+
+  // Excluded from the default build; run with -Pbenchmark. Each round
+  // looks a prefix up both across all commons and within one.
+  @Test
+  @Tag("benchmark")
+  void benchmark_latency_at_100k_items() {
+    Random random = new Random(156);
+    List<UCSBDiningCommonsMenuItem> items = generatedItems(100_000, random);
+
+    long buildStart = System.nanoTime();
+    MenuItemNameIndex big = new MenuItemNameIndex(items);
+    long buildMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - buildStart);
+
+    List<String> prefixes = randomPrefixes(items, 2_000, random);
+
+    // warm up, then time
+    for (String prefix : prefixes) {
+      big.complete(prefix, null, 10);
+    }
+    long start = System.nanoTime();
+    int rounds = 5;
+    for (int r = 0; r < rounds; r++) {
+      for (String prefix : prefixes) {
+        big.complete(prefix, COMMONS_CODES[r % COMMONS_CODES.length], 10);
+        big.complete(prefix, null, 10);
+      }
+    }
+    double microsPerLookup = (System.nanoTime() - start) / 1_000.0 / (rounds * prefixes.size() * 2);
+    log.info("menu item name index: built 100k items in {} ms, {} us per lookup", buildMillis,
+        String.format("%.1f", microsPerLookup));
+  }
+}
@@ -0,0 +1,107 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class OrganizationSearchIndexTests {
+
+  private static UCSBOrganization org(String code, String shortName, String name, boolean inactive) {
+    return UCSBOrganization.builder().orgCode(code).orgTranslationShort(shortName).orgTranslation(name)
+        .inactive(inactive).build();
+  }
+
+  private final UCSBOrganization zpr = org("ZPR", "ZETA PHI RHO", "ZETA PHI RHO", false);
+  private final UCSBOrganization sky = org("SKY", "SKYDIVING CLUB", "SKYDIVING CLUB AT UCSB", false);
+  private final UCSBOrganization osli = org("OSLI", "STUDENT LIFE", "OFFICE OF STUDENT LIFE", false);
+  private final UCSBOrganization krc = org("KRC", "KOREAN RADIO CL", "KOREAN RADIO CLUB", true);
+  private final UCSBOrganization cafe = org("CAFE", "Café Société", "Société du Café", false);
+
+  private final OrganizationSearchIndex index = new OrganizationSearchIndex(List.of(zpr, sky, osli, krc, cafe));
+
+  private static List<String> codes(List<UCSBOrganization> orgs) {
+    return orgs.stream().map(UCSBOrganization::getOrgCode).collect(Collectors.toList());
+  }
+
+  @Test
+  void test_every_word_must_prefix_a_word_of_the_organization() {
+    assertEquals(List.of("ZPR"), codes(index.search("zeta rh", false, 10)));
+    assertEquals(List.of("SKY"), codes(index.search("club ucsb", false, 10)));
+    assertEquals(List.of(), codes(index.search("zeta club", false, 10)));
+    assertEquals(List.of(), codes(index.search("xylophone", false, 10)));
+    assertEquals(List.of(), codes(index.search("  ", false, 10)));
+  }
+
+  @Test
+  void test_codes_and_full_names_are_searched() {
+    assertEquals(List.of("OSLI"), codes(index.search("osl", false, 10)));
+    assertEquals(List.of("OSLI"), codes(index.search("office", false, 10)));
+  }
+
+  @Test
+  void test_case_and_accents_are_ignored() {
+    assertEquals(List.of("CAFE"), codes(index.search("CAFE SOCIETE", false, 10)));
+    assertEquals(List.of("CAFE"), codes(index.search("société", false, 10)));
+  }
+
+  @Test
+  void test_inactive_organizations_are_left_out_unless_asked_for() {
+    assertEquals(List.of(), codes(index.search("korean", false, 10)));
+    assertEquals(List.of("KRC"), codes(index.search("korean", true, 10)));
+  }
+
+  @Test
+  void test_short_name_prefix_matches_come_first() {
+    // "Café Société" sorts first but only its second word starts with "s"
+    assertEquals(List.of("SKY", "OSLI", "CAFE"), codes(index.search("s", false, 10)));
+    assertEquals(List.of("SKY", "OSLI"), codes(index.search("s", false, 2)));
+    assertEquals(List.of("CAFE", "SKY"), codes(index.search("c", false, 10)));
+  }
+
+  // Excluded from the default build; run with -Pbenchmark. Queries are two
+  // word prefixes, the usual shape of a typeahead request.
+  @Test
+  @Tag("benchmark")
+  void benchmark_latency_at_5000_organizations() {
+    String[] words = { "ASSOCIATION", "BIOLOGY", "CHESS", "CLUB", "DANCE", "ENGINEERING", "FILM", "GAMING",
+        "HIKING", "MUSIC", "RADIO", "SOCIETY", "STUDENT", "SURF", "THEATRE", "UCSB", "WOMEN", "YOGA" };
+    Random random = new Random(156);
+    List<UCSBOrganization> orgs = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      StringBuilder name = new StringBuilder();
+      for (int w = 2 + random.nextInt(3); w > 0; w--) {
+        name.append(words[random.nextInt(words.length)]).append(' ');
+      }
+      name.append(i);
+      orgs.add(org("ORG" + i, name.toString(), name.toString(), random.nextInt(10) == 0));
+    }
+    OrganizationSearchIndex big = new OrganizationSearchIndex(orgs);
+
+    List<String> queries = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      String word = words[random.nextInt(words.length)];
+      String other = words[random.nextInt(words.length)];
+      queries.add(word.substring(0, 1 + random.nextInt(word.length())) + " " + other.substring(0, 2));
+    }
+    for (String query : queries) {
+      big.search(query, false, 10);
+    }
+    long start = System.nanoTime();
+    for (String query : queries) {
+      big.search(query, false, 10);
+    }
+    double microsPerSearch = (System.nanoTime() - start) / 1_000.0 / queries.size();
+    log.info("organization search index: {} us per search over 5000 organizations",
+        String.format("%.1f", microsPerSearch));
+  }
+}
@@ -0,0 +1,142 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+class PersonalAccessTokenCodecTests {
+
+  private PersonalAccessTokenCodec codec;
+
+  private final Instant now = Instant.parse("2022-05-01T12:00:00Z");
+
+  private final AccessTokenClaims claims = AccessTokenClaims.builder()
+      .tokenId(5).userId(7).email("cgaucho:test@ucsb.edu").admin(true).expiresAt(now.plusSeconds(3600)).build();
+
+  private static PersonalAccessTokenCodec codec(String secret, Instant now) {
+    PersonalAccessTokenCodec codec = new PersonalAccessTokenCodec();
+    codec.secret = secret;
+    codec.clock = Clock.fixed(now, ZoneOffset.UTC);
+    codec.setAdmins(List.of(7L));
+    return codec;
+  }
+
+  @BeforeEach
+  void setup() {
+    codec = codec("a shared secret", now);
+  }
+
+  @Test
+  void test_round_trip() {
+    String token = codec.encode(claims);
+
+    assertTrue(token.startsWith("pat_"));
+    assertEquals(claims, codec.decode(token));
+    assertEquals(claims, codec("a shared secret", now).decode(token));
+  }
+
+  @Test
+  void test_other_secrets_and_tampering_are_rejected() {
+    String token = codec.encode(claims);
+    String otherPayload = codec("another secret", now)
+        .encode(AccessTokenClaims.builder().tokenId(5).userId(1).email("x@ucsb.edu").admin(true)
+            .expiresAt(now.plusSeconds(3600)).build());
+    String forged = otherPayload.substring(0, otherPayload.lastIndexOf('.')) + token.substring(token.lastIndexOf('.'));
+
+    assertNull(codec("another secret", now).decode(token));
+    assertNull(codec.decode(forged));
+    assertNull(codec.decode(token.substring(0, token.length() - 2)));
+    assertNull(codec.decode("pat_!!!.???"));
+    assertNull(codec.decode("not-a-token"));
+    assertNull(codec.decode(null));
+  }
+
+  @Test
+  void test_expired_tokens_are_rejected() {
+    String token = codec.encode(claims);
+
+    assertEquals(claims, codec("a shared secret", now.plusSeconds(3599)).decode(token));
+    assertNull(codec("a shared secret", now.plusSeconds(3600)).decode(token));
+  }
+
+  @Test
+  void test_revoked_tokens_are_rejected() {
+    String token = codec.encode(claims);
+
+    codec.revoke(5);
+    assertNull(codec.decode(token));
+
+    codec.setRevoked(List.of(6L));
+    assertEquals(claims, codec.decode(token));
+  }
+
+  @Test
+  void test_admin_claim_only_holds_while_the_user_is_an_admin() {
+    String token = codec.encode(claims);
+
+    codec.setAdmins(List.of(8L));
+
+    assertEquals(false, codec.decode(token).getAdmin());
+    assertEquals(7, codec.decode(token).getUserId());
+  }
+
+  @Test
+  void test_a_missing_secret_fails_startup_outside_development_and_tests() {
+    PersonalAccessTokenCodec unset = codec("", now);
+    MockEnvironment environment = new MockEnvironment();
+    unset.environment = environment;
+
+    environment.setActiveProfiles("production");
+    assertThrows(IllegalStateException.class, unset::checkSecret);
+
+    environment.setActiveProfiles("development");
+    unset.checkSecret();
+
+    codec.environment = new MockEnvironment();
+    codec.checkSecret();
+  }
+
+  @Test
+  void test_without_a_secret_tokens_only_work_on_this_instance() {
+    PersonalAccessTokenCodec first = codec("", now);
+
+    String token = first.encode(claims);
+
+    assertEquals(claims, first.decode(token));
+    assertNull(codec("", now).decode(token));
+  }
+
+  // Excluded from the default build; run with -Pbenchmark. This is the
+  // per-request cost a token adds on top of the filter chain.
+  @Test
+  @Tag("benchmark")
+  void benchmark_decode() {
+    String token = codec.encode(claims);
+    for (int i = 0; i < 20_000; i++) {
+      codec.decode(token);
+    }
+
+    int rounds = 100_000;
+    long start = System.nanoTime();
+    for (int i = 0; i < rounds; i++) {
+      codec.decode(token);
+    }
+    double microsPerDecode = (System.nanoTime() - start) / 1_000.0 / rounds;
+    log.info("personal access tokens: {} us to check a token", String.format("%.2f", microsPerDecode));
+  }
+}
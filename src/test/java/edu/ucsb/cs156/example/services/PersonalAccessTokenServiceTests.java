@@ -0,0 +1,128 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.PersonalAccessToken;
+import edu.ucsb.cs156.example.entities.User;
+import edu.ucsb.cs156.example.errors.EntityNotFoundException;
+import edu.ucsb.cs156.example.models.AccessTokenClaims;
+import edu.ucsb.cs156.example.models.IssuedAccessToken;
+import edu.ucsb.cs156.example.repositories.PersonalAccessTokenRepository;
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+class PersonalAccessTokenServiceTests {
+
+  private PersonalAccessTokenService service;
+  private PersonalAccessTokenRepository tokens;
+  private UserRepository users;
+  private PersonalAccessTokenCodec codec;
+
+  private final Instant now = Instant.parse("2022-05-01T12:00:00Z");
+
+  @BeforeEach
+  void setup() {
+    tokens = mock(PersonalAccessTokenRepository.class);
+    users = mock(UserRepository.class);
+    codec = new PersonalAccessTokenCodec();
+    codec.secret = "a shared secret";
+    codec.clock = Clock.fixed(now, ZoneOffset.UTC);
+
+    service = new PersonalAccessTokenService();
+    service.personalAccessTokenRepository = tokens;
+    service.userRepository = users;
+    service.personalAccessTokenCodec = codec;
+    service.clock = Clock.fixed(now, ZoneOffset.UTC);
+
+    when(users.findById(7L)).thenReturn(Optional.of(User.builder().id(7).email("cgaucho@ucsb.edu").admin(true).build()));
+    when(users.findAdminIds()).thenReturn(List.of(7L));
+    when(tokens.save(any())).thenAnswer(invocation -> {
+      PersonalAccessToken saved = invocation.getArgument(0);
+      if (saved.getId() == 0) {
+        saved.setId(42);
+      }
+      return saved;
+    });
+  }
+
+  @Test
+  void test_issue_signs_the_users_current_details() {
+    IssuedAccessToken issued = service.issue(7, "grading script", 30, "admin@ucsb.edu");
+
+    PersonalAccessToken expected = PersonalAccessToken.builder().id(42).userId(7).name("grading script")
+        .createdBy("admin@ucsb.edu").createdAt(now).expiresAt(now.plus(30, ChronoUnit.DAYS)).build();
+    assertEquals(expected, issued.getDetails());
+    assertEquals(AccessTokenClaims.builder().tokenId(42).userId(7).email("cgaucho@ucsb.edu").admin(true)
+        .expiresAt(now.plus(30, ChronoUnit.DAYS)).build(), codec.decode(issued.getToken()));
+  }
+
+  @Test
+  void test_issue_clamps_the_lifetime() {
+    assertEquals(now.plus(365, ChronoUnit.DAYS), service.issue(7, "a", 5000, "admin@ucsb.edu").getDetails().getExpiresAt());
+    assertEquals(now.plus(1, ChronoUnit.DAYS), service.issue(7, "b", -3, "admin@ucsb.edu").getDetails().getExpiresAt());
+  }
+
+  @Test
+  void test_issue_for_an_unknown_user() {
+    when(users.findById(8L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> service.issue(8, "x", 30, "admin@ucsb.edu"));
+    verify(tokens, never()).save(any());
+  }
+
+  @Test
+  void test_revoke_takes_effect_immediately() {
+    String token = service.issue(7, "grading script", 30, "admin@ucsb.edu").getToken();
+    PersonalAccessToken stored = PersonalAccessToken.builder().id(42).userId(7).expiresAt(now.plus(30, ChronoUnit.DAYS)).build();
+    when(tokens.findById(42L)).thenReturn(Optional.of(stored));
+
+    PersonalAccessToken revoked = service.revoke(42);
+
+    assertEquals(now, revoked.getRevokedAt());
+    assertNull(codec.decode(token));
+  }
+
+  @Test
+  void test_revoke_unknown_token() {
+    when(tokens.findById(43L)).thenReturn(Optional.empty());
+
+    assertThrows(EntityNotFoundException.class, () -> service.revoke(43));
+  }
+
+  @Test
+  void test_refresh_loads_revocations_from_the_database() {
+    String token = service.issue(7, "grading script", 30, "admin@ucsb.edu").getToken();
+    when(tokens.findRevokedIdsExpiringAfter(now)).thenReturn(List.of(42L));
+
+    service.refresh();
+
+    assertNull(codec.decode(token));
+  }
+
+  @Test
+  void test_refresh_takes_admin_away_from_a_demoted_users_tokens() {
+    String token = service.issue(7, "grading script", 30, "admin@ucsb.edu").getToken();
+    assertEquals(true, codec.decode(token).getAdmin());
+    when(users.findAdminIds()).thenReturn(List.of());
+
+    service.refresh();
+
+    assertEquals(false, codec.decode(token).getAdmin());
+  }
+}
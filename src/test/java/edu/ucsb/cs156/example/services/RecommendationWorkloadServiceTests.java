@@ -0,0 +1,130 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.models.ProfessorWorkload;
+import edu.ucsb.cs156.example.repositories.RecommendationRepository;
+
+class RecommendationWorkloadServiceTests {
+
+  private RecommendationWorkloadService service;
+  private RecommendationRepository repo;
+
+  private final LocalDateTime now = LocalDateTime.parse("2022-05-01T12:00:00");
+
+  private final ProfessorWorkload phtcon = ProfessorWorkload.builder()
+      .professorEmail("phtcon@ucsb.edu").pending(2L).overdue(0L).done(5L).build();
+  private final ProfessorWorkload ziad = ProfessorWorkload.builder()
+      .professorEmail("ziad@ucsb.edu").pending(1L).overdue(1L).done(0L).build();
+
+  @BeforeEach
+  void setup() {
+    repo = mock(RecommendationRepository.class);
+    service = new RecommendationWorkloadService();
+    service.recommendationRepository = repo;
+    service.cacheVersionService = mock(CacheVersionService.class);
+    setTime(now);
+    when(repo.countWorkloads(any())).thenReturn(List.of(ziad, phtcon));
+    when(repo.findNextDeadlineAfter(any())).thenReturn(Optional.of(now.plusDays(1)));
+  }
+
+  private void setTime(LocalDateTime time) {
+    service.clock = Clock.fixed(time.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+  }
+
+  @Test
+  void test_counts_are_loaded_once_and_sorted_by_email() {
+    assertEquals(List.of(phtcon, ziad), service.getWorkloads());
+    assertEquals(List.of(phtcon, ziad), service.getWorkloads());
+
+    verify(repo, times(1)).countWorkloads(now);
+  }
+
+  @Test
+  void test_refresh_only_recounts_the_given_professor() {
+    service.getWorkloads();
+    ProfessorWorkload phtconAfter = ProfessorWorkload.builder()
+        .professorEmail("phtcon@ucsb.edu").pending(3L).overdue(0L).done(5L).build();
+    when(repo.countWorkload(eq("phtcon@ucsb.edu"), any())).thenReturn(List.of(phtconAfter));
+
+    service.refresh("phtcon@ucsb.edu", null);
+
+    assertEquals(List.of(phtconAfter, ziad), service.getWorkloads());
+    verify(repo, times(1)).countWorkloads(any());
+    verify(repo, times(1)).countWorkload(eq("phtcon@ucsb.edu"), any());
+  }
+
+  @Test
+  void test_professor_with_no_requests_left_is_removed() {
+    service.getWorkloads();
+    when(repo.countWorkload(eq("ziad@ucsb.edu"), any())).thenReturn(List.of());
+
+    service.refresh("ziad@ucsb.edu");
+
+    assertEquals(List.of(phtcon), service.getWorkloads());
+  }
+
+  @Test
+  void test_refresh_before_first_read_does_nothing() {
+    service.refresh("phtcon@ucsb.edu");
+
+    verify(repo, times(0)).countWorkload(any(), any());
+  }
+
+  @Test
+  void test_invalidate_all_reloads_on_next_read() {
+    service.getWorkloads();
+    service.invalidateAll();
+    service.getWorkloads();
+
+    verify(repo, times(2)).countWorkloads(any());
+  }
+
+  @Test
+  void test_writes_are_announced_to_other_instances() {
+    service.getWorkloads();
+    service.refresh("phtcon@ucsb.edu");
+    service.invalidateAll();
+
+    verify(service.cacheVersionService, times(2)).bump("recommendation-workloads");
+  }
+
+  @Test
+  void test_reloads_after_a_write_on_another_instance() {
+    service.getWorkloads();
+    when(service.cacheVersionService.changedElsewhere("recommendation-workloads")).thenReturn(true, false);
+    service.getWorkloads();
+    service.getWorkloads();
+
+    verify(repo, times(2)).countWorkloads(any());
+  }
+
+  @Test
+  void test_reloads_after_a_pending_request_becomes_overdue() {
+    service.getWorkloads();
+
+    setTime(now.plusDays(1));
+    service.getWorkloads();
+    verify(repo, times(1)).countWorkloads(any());
+
+    setTime(now.plusDays(1).plusSeconds(1));
+    service.getWorkloads();
+    verify(repo, times(2)).countWorkloads(any());
+  }
+}
@@ -0,0 +1,160 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDate;
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+class UCSBDateCalendarServiceTests {
+
+  private UCSBDateCalendarService service;
+  private UCSBDateRepository repo;
+
+  private final Instant now = Instant.parse("2022-03-20T17:00:00Z");
+
+  private final UCSBDate firstDay = UCSBDate.builder()
+      .id(1L)
+      .quarterYYYYQ("20222")
+      .name("firstDayOfClasses")
+      .localDateTime(LocalDateTime.parse("2022-03-28T00:00:00"))
+      .build();
+
+  private final UCSBDate finals = UCSBDate.builder()
+      .id(2L)
+      .quarterYYYYQ("20222")
+      .name("Finals; room 1, Phelps")
+      .localDateTime(LocalDateTime.parse("2022-06-06T08:00:00"))
+      .build();
+
+  @BeforeEach
+  void setup() {
+    repo = mock(UCSBDateRepository.class);
+    service = new UCSBDateCalendarService();
+    service.ucsbDateRepository = repo;
+    service.cacheVersionService = mock(CacheVersionService.class);
+    service.clock = Clock.fixed(now, ZoneOffset.UTC);
+    when(repo.findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(any(), any())).thenReturn(List.of(firstDay, finals));
+  }
+
+  @Test
+  void test_renders_all_day_and_timed_events() {
+    String ics = service.getFeed().getBody();
+
+    assertTrue(ics.startsWith("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n"));
+    assertTrue(ics.endsWith("END:VCALENDAR\r\n"));
+    assertTrue(ics.contains("UID:ucsbdate-1@ucsb-cs156\r\nDTSTAMP:20220320T170000Z\r\nDTSTART;VALUE=DATE:20220328\r\n"));
+    assertTrue(ics.contains("DTSTART:20220606T080000\r\nSUMMARY:Finals\\; room 1\\, Phelps\r\n"));
+    verify(repo, times(1)).findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(
+        eq(LocalDateTime.parse("2022-02-18T17:00:00")), eq(LocalDateTime.parse("2023-03-20T17:00:00")));
+  }
+
+  @Test
+  void test_feed_is_cached_until_invalidated() {
+    UCSBDateCalendarService.Feed first = service.getFeed();
+    assertSame(first, service.getFeed());
+
+    service.invalidate();
+
+    assertNotSame(first, service.getFeed());
+    verify(repo, times(2)).findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(any(), any());
+    verify(service.cacheVersionService).bump("ucsbdate-calendar");
+  }
+
+  @Test
+  void test_feed_is_rendered_again_after_a_write_on_another_instance() {
+    UCSBDateCalendarService.Feed first = service.getFeed();
+    when(service.cacheVersionService.changedElsewhere("ucsbdate-calendar")).thenReturn(true, false);
+
+    UCSBDateCalendarService.Feed second = service.getFeed();
+
+    assertNotSame(first, second);
+    assertSame(second, service.getFeed());
+  }
+
+  @Test
+  void test_feed_rendered_across_an_invalidate_is_not_served_again() {
+    // a write commits and invalidates while the dates are being read
+    when(repo.findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(any(), any()))
+        .thenAnswer(invocation -> {
+          service.invalidate();
+          return List.of(firstDay);
+        })
+        .thenReturn(List.of(firstDay, finals));
+
+    UCSBDateCalendarService.Feed stale = service.getFeed();
+    UCSBDateCalendarService.Feed fresh = service.getFeed();
+
+    assertNotSame(stale, fresh);
+    assertTrue(fresh.getBody().contains("SUMMARY:Finals"));
+    assertSame(fresh, service.getFeed());
+    verify(repo, times(2)).findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(any(), any());
+  }
+
+  @Test
+  void test_feed_expires_after_ttl() {
+    service.getFeed();
+
+    service.clock = Clock.fixed(now.plusSeconds(59 * 60), ZoneOffset.UTC);
+    service.getFeed();
+    verify(repo, times(1)).findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(any(), any());
+
+    service.clock = Clock.fixed(now.plusSeconds(60 * 60), ZoneOffset.UTC);
+    service.getFeed();
+    verify(repo, times(2)).findAllByLocalDateTimeBetweenOrderByLocalDateTimeAsc(any(), any());
+  }
+
+  @Test
+  void test_long_lines_are_folded() {
+    UCSBDate longName = UCSBDate.builder()
+        .id(3L)
+        .quarterYYYYQ("20222")
+        .name("x".repeat(100))
+        .localDateTime(LocalDateTime.parse("2022-04-01T00:00:00"))
+        .build();
+
+    String ics = UCSBDateCalendarService.toICalendar(List.of(longName), now);
+
+    String summary = "SUMMARY:" + "x".repeat(100);
+    assertTrue(ics.contains(summary.substring(0, 75) + "\r\n " + summary.substring(75) + "\r\n"));
+    assertEquals(-1, ics.replace("\r\n", "").indexOf('\n'));
+  }
+
+  @Test
+  void test_lines_are_folded_by_octets_without_splitting_characters() {
+    UCSBDate accented = UCSBDate.builder()
+        .id(3L)
+        .quarterYYYYQ("20222")
+        .name("\u00e9".repeat(50) + "\ud83c\udf89".repeat(20))
+        .localDateTime(LocalDateTime.parse("2022-04-01T00:00:00"))
+        .build();
+
+    String ics = UCSBDateCalendarService.toICalendar(List.of(accented), now);
+
+    // "SUMMARY:" is 8 octets and each e-acute is 2, so 33 of them fill the first line to 74
+    assertTrue(ics.contains("SUMMARY:" + "\u00e9".repeat(33) + "\r\n " + "\u00e9".repeat(17)));
+    for (String line : ics.split("\r\n")) {
+      assertTrue(line.getBytes(StandardCharsets.UTF_8).length <= 75, line);
+      assertEquals(line, new String(line.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+    }
+    assertTrue(ics.replace("\r\n ", "").contains("SUMMARY:" + accented.getName() + "\r\n"));
+  }
+}
@@ -0,0 +1,42 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.repositories.UCSBDateRepository;
+
+class UCSBDateQuarterBackfillTests {
+
+  @Test
+  void test_one_update_per_valid_quarter() {
+    UCSBDateQuarterBackfill backfill = new UCSBDateQuarterBackfill();
+    backfill.ucsbDateRepository = mock(UCSBDateRepository.class);
+    when(backfill.ucsbDateRepository.findQuarterCodesMissingQuarter()).thenReturn(List.of("20214", "W22", "20222"));
+
+    backfill.run(null);
+
+    verify(backfill.ucsbDateRepository, times(1)).backfillQuarter("20214", 20214);
+    verify(backfill.ucsbDateRepository, times(1)).backfillQuarter("20222", 20222);
+    verify(backfill.ucsbDateRepository, times(0)).backfillQuarter(eq("W22"), anyInt());
+  }
+
+  @Test
+  void test_nothing_to_backfill() {
+    UCSBDateQuarterBackfill backfill = new UCSBDateQuarterBackfill();
+    backfill.ucsbDateRepository = mock(UCSBDateRepository.class);
+    when(backfill.ucsbDateRepository.findQuarterCodesMissingQuarter()).thenReturn(List.of());
+
+    backfill.run(null);
+
+    verify(backfill.ucsbDateRepository, times(0)).backfillQuarter(any(), anyInt());
+  }
+}
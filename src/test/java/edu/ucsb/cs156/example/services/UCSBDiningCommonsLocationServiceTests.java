@@ -0,0 +1,84 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBDiningCommons;
+import edu.ucsb.cs156.example.models.CommonsDistance;
+import edu.ucsb.cs156.example.repositories.UCSBDiningCommonsRepository;
+
+class UCSBDiningCommonsLocationServiceTests {
+
+  private UCSBDiningCommonsLocationService service;
+  private UCSBDiningCommonsRepository repo;
+
+  private final UCSBDiningCommons carrillo = commons("carrillo", 34.409953, -119.85277);
+  private final UCSBDiningCommons ortega = commons("ortega", 34.410987, -119.84709);
+
+  private static UCSBDiningCommons commons(String code, Double latitude, Double longitude) {
+    return UCSBDiningCommons.builder().code(code).name(code).latitude(latitude).longitude(longitude).build();
+  }
+
+  private static List<String> codes(List<CommonsDistance> results) {
+    return results.stream().map(r -> r.getCommons().getCode()).collect(Collectors.toList());
+  }
+
+  @BeforeEach
+  void setup() {
+    repo = mock(UCSBDiningCommonsRepository.class);
+    service = new UCSBDiningCommonsLocationService();
+    service.ucsbDiningCommonsRepository = repo;
+    service.cacheVersionService = mock(CacheVersionService.class);
+  }
+
+  @Test
+  void test_tree_is_kept_until_invalidated() {
+    when(repo.findAll()).thenReturn(List.of(carrillo)).thenReturn(List.of(carrillo, ortega));
+
+    assertEquals(List.of("carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    assertEquals(List.of("carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+
+    service.invalidate();
+
+    assertEquals(List.of("ortega", "carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    verify(repo, times(2)).findAll();
+    verify(service.cacheVersionService).bump("dining-commons-locations");
+  }
+
+  @Test
+  void test_tree_is_rebuilt_after_a_write_on_another_instance() {
+    when(repo.findAll()).thenReturn(List.of(carrillo)).thenReturn(List.of(carrillo, ortega));
+
+    assertEquals(List.of("carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    when(service.cacheVersionService.changedElsewhere("dining-commons-locations")).thenReturn(true, false);
+
+    assertEquals(List.of("ortega", "carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    assertEquals(List.of("ortega", "carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    verify(repo, times(2)).findAll();
+  }
+
+  @Test
+  void test_tree_built_across_an_invalidate_is_not_kept() {
+    // a write commits and invalidates while the commons are being read
+    when(repo.findAll())
+        .thenAnswer(invocation -> {
+          service.invalidate();
+          return List.of(carrillo);
+        })
+        .thenReturn(List.of(carrillo, ortega));
+
+    assertEquals(List.of("carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    assertEquals(List.of("ortega", "carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    assertEquals(List.of("ortega", "carrillo"), codes(service.nearest(34.412603, -119.848371, 5)));
+    verify(repo, times(2)).findAll();
+  }
+}
@@ -0,0 +1,103 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import edu.ucsb.cs156.example.errors.CsvFormatException;
+import edu.ucsb.cs156.example.models.BulkWriteResult;
+
+// Runs against an in-memory H2 database so the MERGE statement itself is exercised.
+class UCSBOrganizationImportServiceTests {
+
+  private EmbeddedDatabase db;
+  private NamedParameterJdbcTemplate jdbc;
+  private UCSBOrganizationImportService service;
+
+  @BeforeEach
+  void setup() {
+    db = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2).generateUniqueName(true).build();
+    jdbc = new NamedParameterJdbcTemplate(db);
+    jdbc.getJdbcTemplate().execute("create table ucsborganization (org_code varchar(255) primary key, "
+        + "org_translation_short varchar(255), org_translation varchar(255), inactive boolean not null, "
+        + "version bigint default 0)");
+    jdbc.getJdbcTemplate().update("insert into ucsborganization values ('ZPR', 'ZETA PHI RHO', 'ZETA PHI RHO', false, 3)");
+    jdbc.getJdbcTemplate().update("insert into ucsborganization values ('SKY', 'SKYDIVING CLUB', 'SKYDIVING CLUB AT UCSB', false, 0)");
+
+    service = new UCSBOrganizationImportService();
+    service.jdbcTemplate = jdbc;
+    service.batchSize = 2;
+  }
+
+  @AfterEach
+  void teardown() {
+    db.shutdown();
+  }
+
+  private List<Map<String, Object>> rows() {
+    return jdbc.getJdbcTemplate().queryForList(
+        "select org_code, org_translation_short, inactive, version from ucsborganization order by org_code");
+  }
+
+  @Test
+  void test_inserts_updates_and_skips_unchanged_rows() {
+    String csv = "orgCode,orgTranslationShort,orgTranslation,inactive\n"
+        + "ZPR,ZETA PHI RHO,ZETA PHI RHO,false\n"
+        + "SKY,SKYDIVING,SKYDIVING CLUB AT UCSB,true\n"
+        + "KRC,KOREAN RADIO CL,KOREAN RADIO CLUB,false\n"
+        + "OSLI,STUDENT LIFE,OFFICE OF STUDENT LIFE,\n";
+
+    BulkWriteResult result = service.importCsv(new StringReader(csv));
+
+    assertEquals(new BulkWriteResult(2, 1, 1, 0), result);
+    assertEquals(List.of(
+        Map.of("ORG_CODE", "KRC", "ORG_TRANSLATION_SHORT", "KOREAN RADIO CL", "INACTIVE", false, "VERSION", 0L),
+        Map.of("ORG_CODE", "OSLI", "ORG_TRANSLATION_SHORT", "STUDENT LIFE", "INACTIVE", false, "VERSION", 0L),
+        Map.of("ORG_CODE", "SKY", "ORG_TRANSLATION_SHORT", "SKYDIVING", "INACTIVE", true, "VERSION", 1L),
+        Map.of("ORG_CODE", "ZPR", "ORG_TRANSLATION_SHORT", "ZETA PHI RHO", "INACTIVE", false, "VERSION", 3L)),
+        rows());
+  }
+
+  @Test
+  void test_code_listed_twice_keeps_the_last_values() {
+    String csv = "orgCode,orgTranslationShort,orgTranslation,inactive\n"
+        + "KRC,KOREAN RADIO,KOREAN RADIO CLUB,false\n"
+        + "KRC,KOREAN RADIO CL,KOREAN RADIO CLUB,false\n"
+        + "KRC,KOREAN RADIO CL,KOREAN RADIO CLUB,true\n";
+
+    BulkWriteResult result = service.importCsv(new StringReader(csv));
+
+    assertEquals(new BulkWriteResult(1, 0, 0, 0), result);
+    assertEquals(Map.of("ORG_CODE", "KRC", "ORG_TRANSLATION_SHORT", "KOREAN RADIO CL", "INACTIVE", true, "VERSION", 0L),
+        rows().get(0));
+  }
+
+  @Test
+  void test_bad_inactive_value_names_the_line() {
+    String csv = "orgCode,orgTranslationShort,orgTranslation,inactive\n"
+        + "KRC,KOREAN RADIO CL,KOREAN RADIO CLUB,false\n"
+        + "OSLI,STUDENT LIFE,OFFICE OF STUDENT LIFE,maybe\n";
+
+    CsvFormatException e = assertThrows(CsvFormatException.class, () -> service.importCsv(new StringReader(csv)));
+    assertEquals("CSV line 3: inactive must be true or false, not maybe", e.getMessage());
+  }
+
+  @Test
+  void test_empty_org_code_is_rejected() {
+    String csv = "orgCode,orgTranslationShort,orgTranslation,inactive\n , , ,false\n";
+
+    CsvFormatException e = assertThrows(CsvFormatException.class, () -> service.importCsv(new StringReader(csv)));
+    assertEquals("CSV line 2: orgCode is empty", e.getMessage());
+  }
+}
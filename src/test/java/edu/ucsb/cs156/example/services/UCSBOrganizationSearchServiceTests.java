@@ -0,0 +1,64 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import edu.ucsb.cs156.example.entities.UCSBOrganization;
+import edu.ucsb.cs156.example.repositories.UCSBOrganizationRepository;
+
+class UCSBOrganizationSearchServiceTests {
+
+  private UCSBOrganizationSearchService service;
+  private UCSBOrganizationRepository repo;
+
+  private final UCSBOrganization zpr = org("ZPR", "ZETA PHI RHO");
+  private final UCSBOrganization zbt = org("ZBT", "ZETA BETA TAU");
+
+  private static UCSBOrganization org(String code, String name) {
+    return UCSBOrganization.builder().orgCode(code).orgTranslationShort(name).orgTranslation(name).build();
+  }
+
+  private List<String> search(String query) {
+    return service.search(query, false, 10).stream().map(UCSBOrganization::getOrgCode).collect(Collectors.toList());
+  }
+
+  @BeforeEach
+  void setup() {
+    repo = mock(UCSBOrganizationRepository.class);
+    service = new UCSBOrganizationSearchService();
+    service.ucsbOrganizationRepository = repo;
+    service.cacheVersionService = mock(CacheVersionService.class);
+    when(repo.findAll()).thenReturn(List.of(zpr)).thenReturn(List.of(zpr, zbt));
+  }
+
+  @Test
+  void test_index_is_kept_until_rebuilt() {
+    assertEquals(List.of("ZPR"), search("zeta"));
+    assertEquals(List.of("ZPR"), search("zeta"));
+
+    service.rebuild();
+
+    assertEquals(List.of("ZBT", "ZPR"), search("zeta"));
+    verify(repo, times(2)).findAll();
+    verify(service.cacheVersionService).bump("organization-search");
+  }
+
+  @Test
+  void test_index_is_rebuilt_after_a_write_on_another_instance() {
+    assertEquals(List.of("ZPR"), search("zeta"));
+    when(service.cacheVersionService.changedElsewhere("organization-search")).thenReturn(true, false);
+
+    assertEquals(List.of("ZBT", "ZPR"), search("zeta"));
+    assertEquals(List.of("ZBT", "ZPR"), search("zeta"));
+    verify(repo, times(2)).findAll();
+  }
+}
@@ -0,0 +1,48 @@
+package edu.ucsb.cs156.example.services;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import edu.ucsb.cs156.example.repositories.UserRepository;
+
+class UserSearchBackfillTests {
+
+  private UserSearchBackfill backfill;
+
+  @BeforeEach
+  void setup() {
+    backfill = spy(new UserSearchBackfill());
+    backfill.userRepository = mock(UserRepository.class);
+    backfill.jdbcTemplate = mock(JdbcTemplate.class);
+  }
+
+  @Test
+  void test_pattern_indexes_on_postgres() {
+    doReturn("PostgreSQL").when(backfill).databaseProduct();
+
+    backfill.run(null);
+
+    verify(backfill.userRepository, times(1)).backfillSearchColumns();
+    for (String ddl : UserSearchBackfill.POSTGRES_PATTERN_INDEXES) {
+      verify(backfill.jdbcTemplate, times(1)).execute(ddl);
+    }
+  }
+
+  @Test
+  void test_no_pattern_indexes_on_h2() {
+    doReturn("H2").when(backfill).databaseProduct();
+
+    backfill.run(null);
+
+    verify(backfill.userRepository, times(1)).backfillSearchColumns();
+    verify(backfill.jdbcTemplate, times(0)).execute(any(String.class));
+  }
+}
@@ -5,6 +5,10 @@ import org.springframework.context.annotation.Bean;
 
 import edu.ucsb.cs156.example.services.CurrentUserService;
 import edu.ucsb.cs156.example.services.GrantedAuthoritiesService;
+import edu.ucsb.cs156.example.services.LastSeenTracker;
+import edu.ucsb.cs156.example.services.PersonalAccessTokenCodec;
+
+import static org.mockito.Mockito.mock;
 
 @TestConfiguration
 public class TestConfig {
@@ -18,4 +22,16 @@ public class TestConfig {
     public GrantedAuthoritiesService grantedAuthoritiesService() {
         return new GrantedAuthoritiesService();
     }
+
+    // CurrentUserServiceImpl reports every lookup to it; controller tests don't care
+    @Bean
+    public LastSeenTracker lastSeenTracker() {
+        return mock(LastSeenTracker.class);
+    }
+
+    // real, so tests can sign tokens and send them through the token filter chain
+    @Bean
+    public PersonalAccessTokenCodec personalAccessTokenCodec() {
+        return new PersonalAccessTokenCodec();
+    }
 }